@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test texts for the benchmarks, taken from
+ * <code>src/test/resources/tatoeba/tatoeba_long.txt</code>.
+ */
+class BenchmarkTexts {
+
+  /** max. length in characters of short texts */
+  static final int SHORT = 64;
+  /** max. length in characters of medium texts */
+  static final int MEDIUM = 256;
+
+  private static final String HTML_HEADER = "<!DOCTYPE html>\n<html>\n<head>\n"
+      + "<meta charset=\"utf-8\">\n</head><body>\n<p>";
+  private static final String HTML_FOOTER = "</p>\n</body></html>";
+
+  /**
+   * Load test texts. The texts are cut at a word boundary to the length
+   * selected: <code>short</code>, <code>medium</code> or <code>long</code> (not
+   * cut).
+   *
+   * @param length
+   *          length class of texts
+   * @param isPlainText
+   *          if false, texts are wrapped into a HTML page
+   */
+  static String[] load(String length, boolean isPlainText) throws IOException {
+    int maxLength;
+    switch (length) {
+    case "short":
+      maxLength = SHORT;
+      break;
+    case "medium":
+      maxLength = MEDIUM;
+      break;
+    case "long":
+      maxLength = Integer.MAX_VALUE;
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown text length: " + length);
+    }
+    List<String> texts = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        BenchmarkTexts.class.getClassLoader()
+            .getResourceAsStream("tatoeba/tatoeba_long.txt"),
+        StandardCharsets.UTF_8))) {
+      reader.readLine(); // header line
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String text = cut(line.split("\t")[3], maxLength);
+        if (!isPlainText) {
+          text = HTML_HEADER + text + HTML_FOOTER;
+        }
+        texts.add(text);
+      }
+    }
+    return texts.toArray(new String[0]);
+  }
+
+  private static String cut(String text, int maxLength) {
+    if (text.length() <= maxLength) {
+      return text;
+    }
+    int end = text.lastIndexOf(' ', maxLength);
+    if (end <= 0) {
+      end = maxLength;
+      if (Character.isHighSurrogate(text.charAt(end - 1))) {
+        end--;
+      }
+    }
+    return text.substring(0, end);
+  }
+
+}
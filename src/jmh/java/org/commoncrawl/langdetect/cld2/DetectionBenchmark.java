@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark language detection: input as String or byte[], short, medium or
+ * long texts, plain text or HTML, with or without hints.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectionBenchmark {
+
+  @Param({ "short", "medium", "long" })
+  public String length;
+
+  @Param({ "true", "false" })
+  public boolean isPlainText;
+
+  @Param({ "false", "true" })
+  public boolean withHints;
+
+  private String[] texts;
+  private byte[][] bytes;
+  private CLDHints hints;
+  private Detector detector;
+  private Result reuse;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    texts = BenchmarkTexts.load(length, isPlainText);
+    bytes = new byte[texts.length][];
+    for (int i = 0; i < texts.length; i++) {
+      bytes[i] = Cld2.encodeNative(texts[i]);
+    }
+    if (withHints) {
+      hints = new CLDHints();
+      hints.setTopLevelDomainHint("com");
+      hints.setContentLanguageHint("en");
+    } else {
+      hints = CLDHints.NO_HINTS;
+    }
+    detector = new Detector();
+    reuse = detector.detect("");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    detector.close();
+  }
+
+  private int next() {
+    if (++next == texts.length) {
+      next = 0;
+    }
+    return next;
+  }
+
+  @Benchmark
+  public Result detectString() {
+    return Cld2.detect(texts[next()], hints, 0, isPlainText);
+  }
+
+  @Benchmark
+  public Result detectBytes() {
+    return Cld2.detect(bytes[next()], hints, 0, isPlainText);
+  }
+
+  @Benchmark
+  public Result detectorString() {
+    return detector.detectInto(reuse, texts[next()], hints, 0, isPlainText);
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmark formatting of detection results. */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormattingBenchmark {
+
+  private Result[] results;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    String[] texts = BenchmarkTexts.load("long", true);
+    results = new Result[texts.length];
+    for (int i = 0; i < texts.length; i++) {
+      results[i] = Cld2.detect(texts[i]);
+    }
+  }
+
+  private Result next() {
+    if (++next == results.length) {
+      next = 0;
+    }
+    return results[next];
+  }
+
+  @Benchmark
+  public String toJSON() {
+    return next().toJSON();
+  }
+
+  @Benchmark
+  public String languageCodesISO639_3() {
+    return next().getLanguageCodesISO639_3(",", true);
+  }
+
+  @Benchmark
+  public String[] languageCodes() {
+    return next().getLanguageCodes();
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous language detection: native calls to CLD2 are run by a bounded
+ * pool of platform threads, by default one thread per available processor.
+ *
+ * A blocking native call pins the carrier thread of a virtual thread. Virtual
+ * threads (or any other threads) should submit detections to this detector and
+ * wait for the returned futures: they only park, the CPU-bound native calls
+ * never exceed the number of pool threads.
+ *
+ * The number of pending detections (queued or running) is limited. If the
+ * limit is reached, submitting blocks until a detection is finished. Blocked
+ * submitters are served in first-in-first-out order.
+ *
+ * Call {@link #close()} to shut down the pool threads.
+ */
+public class AsyncDetector implements Closeable {
+
+  private final ExecutorService pool;
+  private final Semaphore pending;
+  private final int maxPending;
+
+  /**
+   * Detector using one platform thread per available processor and a limit of
+   * 1024 pending detections
+   */
+  public AsyncDetector() {
+    this(Runtime.getRuntime().availableProcessors(), 1024);
+  }
+
+  /**
+   * @param numThreads
+   *          number of platform threads calling CLD2
+   * @param maxPending
+   *          max. number of pending detections, queued or running
+   */
+  public AsyncDetector(int numThreads, int maxPending) {
+    if (numThreads < 1 || maxPending < 1) {
+      throw new IllegalArgumentException(
+          "Number of threads and max. pending detections must be positive");
+    }
+    this.maxPending = maxPending;
+    pending = new Semaphore(maxPending, true);
+    AtomicInteger threadNumber = new AtomicInteger();
+    ThreadFactory threadFactory = (Runnable r) -> {
+      Thread t = new Thread(r, "cld2-async-" + threadNumber.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+    pool = new ThreadPoolExecutor(numThreads, numThreads, 0L,
+        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+  }
+
+  public CompletableFuture<Result> detectAsync(String text) {
+    return detectAsync(text, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language asynchronously, see
+   * {@link Cld2#detect(String, CLDHints, int, boolean)}. Blocks while the max.
+   * number of detections is pending.
+   *
+   * @return future completed with the detection result, or exceptionally if
+   *         the detection failed, the detector is closed or the calling thread
+   *         was interrupted while waiting to submit the detection
+   */
+  public CompletableFuture<Result> detectAsync(String text, CLDHints hints,
+      int flags, boolean isPlainText) {
+    return submit(() -> Cld2.detect(text, hints, flags, isPlainText));
+  }
+
+  public CompletableFuture<Result> detectAsync(byte[] buf, int off, int len) {
+    return detectAsync(buf, off, len, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language asynchronously, see
+   * {@link Cld2#detect(byte[], int, int, CLDHints, int, boolean)}. The bytes
+   * must not be modified until the returned future is completed. Blocks while
+   * the max. number of detections is pending.
+   *
+   * @return future completed with the detection result, see
+   *         {@link #detectAsync(String, CLDHints, int, boolean)}
+   */
+  public CompletableFuture<Result> detectAsync(byte[] buf, int off, int len,
+      CLDHints hints, int flags, boolean isPlainText) {
+    Cld2.checkBounds(off, len, buf.length);
+    return submit(
+        () -> Cld2.detect(buf, off, len, hints, flags, isPlainText));
+  }
+
+  private CompletableFuture<Result> submit(Supplier<Result> detection) {
+    CompletableFuture<Result> future = new CompletableFuture<>();
+    try {
+      pending.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.completeExceptionally(e);
+      return future;
+    }
+    try {
+      pool.execute(() -> {
+        try {
+          future.complete(detection.get());
+        } catch (Throwable t) {
+          future.completeExceptionally(t);
+        } finally {
+          pending.release();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      pending.release();
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /** @return number of detections queued or running */
+  public int getPending() {
+    return maxPending - pending.availablePermits();
+  }
+
+  /**
+   * Shut down the pool threads. Pending detections are finished, further
+   * detections are rejected.
+   */
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * Results of a batch of documents, see
+ * {@link Cld2#detectBatch(java.nio.ByteBuffer, int[], int, CLDHints[], int[], boolean)},
+ * held in columns: the result of document <code>i</code> is at index
+ * <code>i</code> of {@link #languages()}, {@link #textBytes()} and
+ * {@link #reliable()}, and at the indexes <code>3*i</code> to
+ * <code>3*i+2</code> of {@link #languages3()}, {@link #percents3()} and
+ * {@link #normalizedScores3()}.
+ */
+public class BatchResult {
+
+  private final int size;
+  private final int[] language;
+  private final int[] language3;
+  private final int[] percent3;
+  private final double[] normalizedScore3;
+  private final int[] textBytes;
+  private final boolean[] isReliable;
+  private final int[] bytesExamined;
+
+  BatchResult(int size) {
+    this.size = size;
+    language = new int[size];
+    language3 = new int[3 * size];
+    percent3 = new int[3 * size];
+    normalizedScore3 = new double[3 * size];
+    textBytes = new int[size];
+    isReliable = new boolean[size];
+    bytesExamined = new int[size];
+  }
+
+  /** Number of documents */
+  public int size() {
+    return size;
+  }
+
+  /** Best detected {@link Language} of a document */
+  public int getLanguage(int doc) {
+    return language[doc];
+  }
+
+  /** Language code of the best detected language of a document */
+  public String getLanguageCode(int doc) {
+    return Language.getCode(language[doc]);
+  }
+
+  /** Detected language of a document, rank 0-2 */
+  public int getLanguage(int doc, int rank) {
+    return language3[3 * doc + rank];
+  }
+
+  /** Percent of the text covered by the detected language, rank 0-2 */
+  public int getPercent(int doc, int rank) {
+    return percent3[3 * doc + rank];
+  }
+
+  /** Normalized score of the detected language, rank 0-2 */
+  public double getNormalizedScore(int doc, int rank) {
+    return normalizedScore3[3 * doc + rank];
+  }
+
+  /** Number of text bytes of a document seen by CLD2 */
+  public int getTextBytes(int doc) {
+    return textBytes[doc];
+  }
+
+  public boolean isReliable(int doc) {
+    return isReliable[doc];
+  }
+
+  /** @return result of a single document */
+  public Result getResult(int doc) {
+    Result res = new Result();
+    System.arraycopy(language3, 3 * doc, res.language3, 0, 3);
+    System.arraycopy(percent3, 3 * doc, res.percent3, 0, 3);
+    System.arraycopy(normalizedScore3, 3 * doc, res.normalizedScore3, 0, 3);
+    res.textBytes[0] = textBytes[doc];
+    res.isReliable[0] = isReliable[doc];
+    res.setLanguage(language[doc]);
+    res.setBytesExamined(bytesExamined[doc]);
+    return res;
+  }
+
+  /** Column of best detected languages, not copied */
+  public int[] languages() {
+    return language;
+  }
+
+  /** Column of detected languages, three per document, not copied */
+  public int[] languages3() {
+    return language3;
+  }
+
+  /** Column of language percents, three per document, not copied */
+  public int[] percents3() {
+    return percent3;
+  }
+
+  /** Column of normalized scores, three per document, not copied */
+  public double[] normalizedScores3() {
+    return normalizedScore3;
+  }
+
+  /** Column of text bytes, not copied */
+  public int[] textBytes() {
+    return textBytes;
+  }
+
+  /** Column of reliability flags, not copied */
+  public boolean[] reliable() {
+    return isReliable;
+  }
+
+  /**
+   * Detect the languages of all documents in the buffer. If the extension
+   * library {@link Cld2ExtLibrary} is available, the batch is passed to CLD2
+   * by a single native call, otherwise each document is passed separately.
+   *
+   * @param buffer
+   *          native memory holding the documents
+   * @param offsets
+   *          offsets of the documents relative to the buffer, already
+   *          validated
+   * @param hints
+   *          no, shared or per-document hints, already validated
+   * @param flags
+   *          no, shared or per-document flags, already validated
+   */
+  static BatchResult detect(Pointer buffer, int[] offsets, int numDocs,
+      CLDHints[] hints, int[] flags, boolean isPlainText) {
+    BatchResult res = new BatchResult(numDocs);
+    if (numDocs == 0) {
+      return res;
+    }
+    for (int i = 0; i < numDocs; i++) {
+      res.bytesExamined[i] = offsets[i + 1] - offsets[i];
+    }
+    if (Cld2ExtLibrary.AVAILABLE) {
+      Memory nativeHints = new Memory((long) hints.length * Native.POINTER_SIZE);
+      try {
+        for (int i = 0; i < hints.length; i++) {
+          nativeHints.setPointer((long) i * Native.POINTER_SIZE,
+              CLDHints.toNative(hints[i]));
+        }
+        Cld2ExtLibrary.cld2ext_detect_batch(buffer, offsets, numDocs,
+            isPlainText, nativeHints, hints.length, flags, flags.length,
+            res.language, res.language3, res.percent3, res.normalizedScore3,
+            res.textBytes, res.isReliable);
+      } finally {
+        nativeHints.close();
+      }
+      return res;
+    }
+    Result single = new Result();
+    for (int i = 0; i < numDocs; i++) {
+      CLDHints h = hints[hints.length == 1 ? 0 : i];
+      int f = flags.length == 0 ? 0 : flags[flags.length == 1 ? 0 : i];
+      res.language[i] = Cld2.BINDING.detect(buffer.share(offsets[i]),
+          offsets[i + 1] - offsets[i], isPlainText, h, f, single);
+      System.arraycopy(single.language3, 0, res.language3, 3 * i, 3);
+      System.arraycopy(single.percent3, 0, res.percent3, 3 * i, 3);
+      System.arraycopy(single.normalizedScore3, 0, res.normalizedScore3,
+          3 * i, 3);
+      res.textBytes[i] = single.textBytes[0];
+      res.isReliable[i] = single.isReliable[0];
+    }
+    return res;
+  }
+
+}
@@ -26,7 +26,8 @@ import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
-import java.util.regex.Pattern;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * External hints from web page passed to CLD2, see <a href=
@@ -47,22 +48,71 @@ import java.util.regex.Pattern;
  */
 public class CLDHints extends Structure {
 
-  /** "mi,en" boosts Maori and English */
+  /*
+   * The fields are public because JNA maps only public fields of a structure.
+   * Use the setters and getters: fields of shared hints (see isShared()) must
+   * not be written, such writes are not visible to CLD2 and are ignored by
+   * the getters.
+   */
+
+  /** "mi,en" boosts Maori and English, see {@link #getContentLanguageHint()} */
   public String content_language_hint;
 
-  /** "id" boosts Indonesian */
+  /** "id" boosts Indonesian, see {@link #getTopLevelDomainHint()} */
   public String tld_hint;
 
-  /** SJS boosts Japanese */
+  /** SJS boosts Japanese, see {@link #getEncodingHint()} */
   public int encoding_hint = Encoding.UNKNOWN_ENCODING.value();
 
-  /** ITALIAN boosts it */
+  /** ITALIAN boosts it, see {@link #getLanguageHint()} */
   public int language_hint = Language.UNKNOWN_LANGUAGE.value();
 
-  protected static CLDHints NO_HINTS = new CLDHints(null, "",
-  Encoding.UNKNOWN_ENCODING.value(), Language.UNKNOWN_LANGUAGE.value());
+  /** Max. number of interned hints, further hints are not cached */
+  private static final int MAX_INTERNED = 16384;
+
+  private static final ConcurrentHashMap<Key, CLDHints> INTERNED = new ConcurrentHashMap<>();
 
-  private static final Pattern DOTPATTERN = Pattern.compile("\\.");
+  protected static final CLDHints NO_HINTS = intern(null, "",
+      Encoding.UNKNOWN_ENCODING.value(), Language.UNKNOWN_LANGUAGE.value());
+
+  /**
+   * Values of shared hints, immutable and written to native memory, null if
+   * the hints are not shared
+   */
+  private Key key;
+
+  /** Key of interned hints */
+  private static final class Key {
+    final String contentLanguage;
+    final String topLevelDomain;
+    final int encoding;
+    final int language;
+
+    Key(String contentLanguage, String topLevelDomain, int encoding,
+        int language) {
+      this.contentLanguage = contentLanguage;
+      this.topLevelDomain = topLevelDomain;
+      this.encoding = encoding;
+      this.language = language;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) o;
+      return encoding == k.encoding && language == k.language
+          && Objects.equals(contentLanguage, k.contentLanguage)
+          && Objects.equals(topLevelDomain, k.topLevelDomain);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * (31 * Objects.hashCode(contentLanguage)
+          + Objects.hashCode(topLevelDomain)) + encoding) + language;
+    }
+  }
 
 
   public CLDHints() {
@@ -87,12 +137,78 @@ public class CLDHints extends Structure {
     super(peer);
   }
 
+  /**
+   * Get shared hints for a combination of hint values. The returned hints are
+   * immutable and written to native memory once, so they can be passed to
+   * CLD2 from any thread without copying them into native memory on every
+   * call. Hints for recurring combinations are interned.
+   *
+   * @param contentLanguage
+   *          content language hint, see {@link #setContentLanguageHint(String)}
+   * @param topLevelDomain
+   *          top-level domain hint, see {@link #setTopLevelDomainHint(String)}
+   *          and {@link #topLevelDomain(String)}
+   * @param encoding
+   *          encoding hint, see {@link Encoding#value()}
+   * @param language
+   *          language hint, see {@link Language#value()}
+   * @return shared and immutable hints, setters throw an
+   *         {@link UnsupportedOperationException}
+   */
+  public static CLDHints intern(String contentLanguage, String topLevelDomain,
+      int encoding, int language) {
+    Key key = new Key(contentLanguage, topLevelDomain, encoding, language);
+    CLDHints hints = INTERNED.get(key);
+    if (hints != null) {
+      return hints;
+    }
+    hints = new CLDHints(contentLanguage, topLevelDomain, encoding, language);
+    hints.write();
+    hints.setAutoSynch(false);
+    hints.key = key;
+    if (INTERNED.size() >= MAX_INTERNED) {
+      return hints;
+    }
+    CLDHints previous = INTERNED.putIfAbsent(key, hints);
+    return previous == null ? hints : previous;
+  }
+
+  /**
+   * Get shared hints, see {@link #intern(String, String, int, int)}, for a
+   * host name and a content language.
+   *
+   * @param host
+   *          host name to take the top-level domain from, may be null
+   * @param contentLanguage
+   *          value of the HTTP header Content-Language, may be null
+   */
+  public static CLDHints intern(String host, String contentLanguage) {
+    return intern(contentLanguage, topLevelDomain(host),
+        Encoding.UNKNOWN_ENCODING.value(), Language.UNKNOWN_LANGUAGE.value());
+  }
+
+  /**
+   * @return whether the hints are shared and immutable, see
+   *         {@link #intern(String, String, int, int)}. The public fields of
+   *         shared hints must not be written.
+   */
+  public boolean isShared() {
+    return key != null;
+  }
+
+  private void checkMutable() {
+    if (key != null) {
+      throw new UnsupportedOperationException("Shared hints are immutable");
+    }
+  }
+
   /**
    * @param contentLanguage
    *          <cite>intended to come from an HTTP header Content-Language:
    *          field</cite>, e.g. &quot;mi,en&quot; boosts Maori and English
    */
   public void setContentLanguageHint(String contentLanguage) {
+    checkMutable();
     content_language_hint = contentLanguage;
   }
 
@@ -101,6 +217,7 @@ public class CLDHints extends Structure {
    *          top-level domain of the hostname of a URL
    */
   public void setTopLevelDomainHint(String topLevelDomain) {
+    checkMutable();
     tld_hint = topLevelDomain;
   }
 
@@ -109,23 +226,42 @@ public class CLDHints extends Structure {
    *  host name to set top-level domain from
    */
   public void setTopLevelDomainHintFromHostName(String host) {
+    checkMutable();
+    String topLevelDomain = topLevelDomain(host);
+    if (topLevelDomain != null) {
+      tld_hint = topLevelDomain;
+    }
+  }
+
+  /**
+   * Extract the top-level domain from a host name: the last dot-separated
+   * part, ignoring trailing dots, lower-cased.
+   *
+   * @param host
+   *          host name
+   * @return top-level domain or null if the host name has no top-level domain
+   *         or is an IP address
+   */
+  public static String topLevelDomain(String host) {
     if (host == null) {
-      return;
+      return null;
     }
-    String[] hostParts = DOTPATTERN.split(host);
-    if (hostParts.length < 2) {
-      return;
+    int end = host.length();
+    while (end > 0 && host.charAt(end - 1) == '.') {
+      end--;
     }
-    String topLevelDomain = hostParts[hostParts.length - 1];
-    if (topLevelDomain.isEmpty()) {
-      return;
+    int dot = host.lastIndexOf('.', end - 1);
+    if (dot < 0) {
+      return null;
     }
-    topLevelDomain = topLevelDomain.toLowerCase(Locale.ROOT);
+    String topLevelDomain = host.substring(dot + 1, end)
+        .toLowerCase(Locale.ROOT);
     char firstChar = topLevelDomain.charAt(0);
     if (firstChar >= 0x61 && firstChar <= 0x7a) {
       // an ASCII letter => host is not an IP address
-      tld_hint = topLevelDomain;
+      return topLevelDomain;
     }
+    return null;
   }
 
   /**
@@ -152,25 +288,97 @@ public class CLDHints extends Structure {
     setTopLevelDomainHintFromHostName(host);
   }
 
+  /** @return content language hint, may be null */
+  public String getContentLanguageHint() {
+    return key != null ? key.contentLanguage : content_language_hint;
+  }
+
+  /** @return top-level domain hint, may be null */
+  public String getTopLevelDomainHint() {
+    return key != null ? key.topLevelDomain : tld_hint;
+  }
+
+  /** @return encoding hint, see {@link Encoding#value()} */
+  public int getEncodingHint() {
+    return key != null ? key.encoding : encoding_hint;
+  }
+
+  /** @return language hint, see {@link Language#value()} */
+  public int getLanguageHint() {
+    return key != null ? key.language : language_hint;
+  }
+
   public void setEncodingHint(int encoding) {
+    checkMutable();
     encoding_hint = encoding;
   }
 
   public void setEncodingHint(Charset charset) {
+    checkMutable();
     encoding_hint = Encoding.convert(charset).value();
   }
 
   public void setLanguageHint(int language) {
+    checkMutable();
     language_hint = language;
   }
 
+  /**
+   * Get hints with the encoding hint set from the charset of the original
+   * document. The hints are not modified, instead shared hints are returned,
+   * see {@link #intern(String, String, int, int)}.
+   *
+   * @param hints
+   *          hints or null
+   * @param charset
+   *          charset of the original document
+   * @return the hints if they hold already an encoding hint or if the charset
+   *         is not known to CLD2, otherwise shared hints with the encoding
+   *         hint set
+   */
+  static CLDHints withEncodingHint(CLDHints hints, Charset charset) {
+    int encoding = Encoding.convert(charset).value();
+    if (encoding == Encoding.UNKNOWN_ENCODING.value()) {
+      return hints;
+    }
+    if (hints == null) {
+      return intern(null, null, encoding, Language.UNKNOWN_LANGUAGE.value());
+    }
+    if (hints.getEncodingHint() != Encoding.UNKNOWN_ENCODING.value()) {
+      return hints;
+    }
+    return intern(hints.getContentLanguageHint(),
+        hints.getTopLevelDomainHint(), encoding, hints.getLanguageHint());
+  }
+
+  /**
+   * Write hints to native memory, required if the hints are passed as pointer
+   * (JNA direct mapping) and not as structure.
+   *
+   * @param hints
+   *          hints or null
+   * @return pointer to the hints in native memory, null if no hints are given
+   */
+  static Pointer toNative(CLDHints hints) {
+    if (hints == null) {
+      return null;
+    }
+    if (hints.key == null) {
+      hints.write();
+    }
+    return hints.getPointer();
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
-    sb.append("Content-Language: ").append(content_language_hint).append('\n');
-    sb.append("Top-level domain: ").append(tld_hint).append('\n');
-    sb.append("Encoding: ").append(Encoding.get(encoding_hint)).append('\n');
-    sb.append("Language: ").append(Cld2.getLanguageCode(language_hint));
+    sb.append("Content-Language: ").append(getContentLanguageHint())
+        .append('\n');
+    sb.append("Top-level domain: ").append(getTopLevelDomainHint())
+        .append('\n');
+    sb.append("Encoding: ").append(Encoding.get(getEncodingHint()))
+        .append('\n');
+    sb.append("Language: ").append(Language.getCode(getLanguageHint()));
     return sb.toString();
   }
 
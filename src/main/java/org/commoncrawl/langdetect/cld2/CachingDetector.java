@@ -0,0 +1,307 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Language detector caching results keyed by a 128-bit hash
+ * (<a href="https://github.com/aappleby/smhasher/wiki/MurmurHash3">MurmurHash3</a>)
+ * of the UTF-8-encoded input plus hints, flags and plain-text mode. Web
+ * crawls contain many duplicate pages (error pages, parked domains, mirrors),
+ * for all of them CLD2 is called only once as long as the result is held in
+ * the cache.
+ *
+ * The cache is bounded in the number of entries: the least-recently used
+ * entry is evicted when the cache is full. To reduce lock contention, the
+ * cache is split into segments, each segment is guarded by its own lock. The
+ * cache is safe to be used concurrently by many threads.
+ *
+ * Cached results are stored as compact immutable snapshots, every call
+ * returns a new {@link Result}, so that callers may configure pruning
+ * individually.
+ */
+public class CachingDetector {
+
+  private static final long SEED = 0x636c6432L; // "cld2"
+
+  private final Segment[] segments;
+  private final int segmentMask;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /** Cache key: hash of the input and exact values of hints and flags */
+  private static final class Key {
+    final long h1;
+    final long h2;
+    final String contentLanguage;
+    final String tld;
+    final int encoding;
+    final int language;
+    final int flags;
+    final boolean isPlainText;
+
+    Key(byte[] buf, int off, int len, CLDHints hints, int flags,
+        boolean isPlainText) {
+      long[] h = MurmurHash3.hash128(buf, off, len, SEED);
+      h1 = h[0];
+      h2 = h[1];
+      if (hints == null) {
+        contentLanguage = null;
+        tld = null;
+        encoding = Encoding.UNKNOWN_ENCODING.value();
+        language = Language.UNKNOWN_LANGUAGE.value();
+      } else {
+        contentLanguage = hints.getContentLanguageHint();
+        tld = hints.getTopLevelDomainHint();
+        encoding = hints.getEncodingHint();
+        language = hints.getLanguageHint();
+      }
+      this.flags = flags;
+      this.isPlainText = isPlainText;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) h1;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) obj;
+      return h1 == k.h1 && h2 == k.h2 && flags == k.flags
+          && isPlainText == k.isPlainText && encoding == k.encoding
+          && language == k.language
+          && Objects.equals(contentLanguage, k.contentLanguage)
+          && Objects.equals(tld, k.tld);
+    }
+  }
+
+  /** Immutable snapshot of a {@link Result} */
+  private static final class Snapshot {
+    final int language;
+    final int[] language3;
+    final int[] percent3;
+    final double[] normalizedScore3;
+    final int textBytes;
+    final boolean isReliable;
+    final int bytesExamined;
+
+    Snapshot(Result res) {
+      language = res.language;
+      language3 = res.language3.clone();
+      percent3 = res.percent3.clone();
+      normalizedScore3 = res.normalizedScore3.clone();
+      textBytes = res.textBytes[0];
+      isReliable = res.isReliable[0];
+      bytesExamined = res.bytesExamined;
+    }
+
+    Result toResult() {
+      Result res = new Result();
+      System.arraycopy(language3, 0, res.language3, 0, 3);
+      System.arraycopy(percent3, 0, res.percent3, 0, 3);
+      System.arraycopy(normalizedScore3, 0, res.normalizedScore3, 0, 3);
+      res.textBytes[0] = textBytes;
+      res.isReliable[0] = isReliable;
+      res.setLanguage(language);
+      res.setBytesExamined(bytesExamined);
+      return res;
+    }
+  }
+
+  /** Segment of the cache, an LRU map guarded by its own lock */
+  private final class Segment extends LinkedHashMap<Key, Snapshot> {
+    private static final long serialVersionUID = 1L;
+    private final int maxSize;
+
+    Segment(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Snapshot> eldest) {
+      if (size() > maxSize) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * @param maxSize
+   *          max. number of cached results
+   */
+  public CachingDetector(int maxSize) {
+    this(maxSize, Math.min(64,
+        Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors())));
+  }
+
+  /**
+   * @param maxSize
+   *          max. number of cached results
+   * @param numSegments
+   *          number of segments (rounded up to a power of two), the more
+   *          segments the less lock contention if the detector is shared by
+   *          many threads
+   */
+  public CachingDetector(int maxSize, int numSegments) {
+    if (maxSize < 1 || numSegments < 1) {
+      throw new IllegalArgumentException(
+          "Size and number of segments must be positive");
+    }
+    int n = 1;
+    while (n < numSegments && n < maxSize) {
+      n <<= 1;
+    }
+    segments = new Segment[n];
+    segmentMask = n - 1;
+    for (int i = 0; i < n; i++) {
+      // distribute the max. size over all segments
+      segments[i] = new Segment(maxSize / n + (i < (maxSize % n) ? 1 : 0));
+    }
+  }
+
+  public Result detect(String text) {
+    return detect(text, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language, see {@link Cld2#detect(String, CLDHints, int, boolean)},
+   * or return the cached result.
+   */
+  public Result detect(String text, CLDHints hints, int flags,
+      boolean isPlainText) {
+    NativeBuffer buffer = NativeBuffer.local();
+    int length = buffer.putUtf8(text);
+    Key key = new Key(buffer.utf8(), 0, length, hints, flags, isPlainText);
+    Snapshot cached = get(key);
+    if (cached != null) {
+      return cached.toResult();
+    }
+    // text is already encoded in native memory
+    Result res = Cld2.detect(buffer.pointer(), length, hints, flags,
+        isPlainText);
+    put(key, res);
+    return res;
+  }
+
+  public Result detect(byte[] buf, int off, int len) {
+    return detect(buf, off, len, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language of a slice of a byte array, see
+   * {@link Cld2#detect(byte[], int, int, CLDHints, int, boolean)}, or return
+   * the cached result.
+   */
+  public Result detect(byte[] buf, int off, int len, CLDHints hints,
+      int flags, boolean isPlainText) {
+    Cld2.checkBounds(off, len, buf.length);
+    Key key = new Key(buf, off, len, hints, flags, isPlainText);
+    Snapshot cached = get(key);
+    if (cached != null) {
+      return cached.toResult();
+    }
+    Result res = Cld2.detect(buf, off, len, hints, flags, isPlainText);
+    put(key, res);
+    return res;
+  }
+
+  private Segment segment(Key key) {
+    // upper bits of the hash, the lower bits are used by the hash map
+    return segments[(int) (key.h1 >>> 40) & segmentMask];
+  }
+
+  private Snapshot get(Key key) {
+    Segment segment = segment(key);
+    Snapshot cached;
+    synchronized (segment) {
+      cached = segment.get(key);
+    }
+    if (cached == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return cached;
+  }
+
+  private void put(Key key, Result res) {
+    Snapshot snapshot = new Snapshot(res);
+    Segment segment = segment(key);
+    synchronized (segment) {
+      segment.put(key, snapshot);
+    }
+  }
+
+  /** @return number of cached results */
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /** Remove all cached results, counters are not reset */
+  public void clear() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  /** @return number of calls answered from the cache */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /** @return number of calls passed to CLD2 */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /** @return number of results evicted from the cache */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "CachingDetector size = " + size() + ", hits = " + getHitCount()
+        + ", misses = " + getMissCount() + ", evictions = "
+        + getEvictionCount();
+  }
+
+}
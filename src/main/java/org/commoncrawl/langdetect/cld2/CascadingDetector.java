@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Language detector cascading two CLD2 libraries loaded side by side: text is
+ * first passed to the default library (<code>libcld2</code>, 80+ languages),
+ * and only if the result is not reliable or the language is unknown, the same
+ * input is passed to the second library (<code>libcld2_full</code>, 160+
+ * languages, larger and slower tables). Text in high-resource languages takes
+ * the cheaper path.
+ *
+ * The second library must be a complete shared library, as built from the
+ * CLD2 sources. The <code>libcld2_full.so</code> of the Debian package
+ * contains only the tables and cannot be loaded on its own.
+ *
+ * The detector is safe to be used concurrently by many threads.
+ */
+public class CascadingDetector {
+
+  /** Name of the CLD2 library providing the tables for 160+ languages */
+  public static final String FULL_LIBRARY_NAME = "cld2_full";
+
+  private final Cld2Binding fallback;
+
+  private final LongAdder detections = new LongAdder();
+  private final LongAdder fallbacks = new LongAdder();
+
+  /**
+   * Cascade the default library and <code>libcld2_full</code>.
+   *
+   * @throws UnsatisfiedLinkError
+   *           if <code>libcld2_full</code> cannot be loaded
+   */
+  public CascadingDetector() {
+    this(FULL_LIBRARY_NAME);
+  }
+
+  /**
+   * @param fallbackLibrary
+   *          name of the library called if the default library does not
+   *          detect the language reliably
+   * @throws UnsatisfiedLinkError
+   *           if the library cannot be loaded
+   */
+  public CascadingDetector(String fallbackLibrary) {
+    fallback = Cld2Binding.load(fallbackLibrary);
+  }
+
+  public Result detect(String text) {
+    return detect(text, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language, see {@link Cld2#detect(String, CLDHints, int, boolean)},
+   * falling back to the second library if required.
+   */
+  public Result detect(String text, CLDHints hints, int flags,
+      boolean isPlainText) {
+    NativeBuffer buffer = NativeBuffer.local();
+    int length = buffer.putUtf8(text);
+    return detect(buffer.pointer(), length, hints, flags, isPlainText);
+  }
+
+  public Result detect(byte[] buf, int off, int len) {
+    return detect(buf, off, len, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language, see
+   * {@link Cld2#detect(byte[], int, int, CLDHints, int, boolean)}, falling
+   * back to the second library if required.
+   */
+  public Result detect(byte[] buf, int off, int len, CLDHints hints,
+      int flags, boolean isPlainText) {
+    Cld2.checkBounds(off, len, buf.length);
+    return detect(NativeBuffer.local().put(buf, off, len), len, hints, flags,
+        isPlainText);
+  }
+
+  private Result detect(Pointer p, int length, CLDHints hints, int flags,
+      boolean isPlainText) {
+    DetectionMetrics m = Cld2.getMetrics();
+    long start = m == null ? 0 : System.nanoTime();
+    Result res = new Result();
+    res.setLanguage(
+        Cld2.BINDING.detect(p, length, isPlainText, hints, flags, res));
+    detections.increment();
+    if (needsFallback(res)) {
+      // all output arguments are overwritten by the second call
+      fallbacks.increment();
+      res.setLanguage(
+          fallback.detect(p, length, isPlainText, hints, flags, res));
+    }
+    res.setBytesExamined(length);
+    if (m != null) {
+      m.record(length, System.nanoTime() - start, res);
+    }
+    return res;
+  }
+
+  /**
+   * @return whether the result of the default library is passed on to the
+   *         second library: it is not reliable or the language is unknown
+   */
+  static boolean needsFallback(Result res) {
+    return !res.isReliable()
+        || res.getLanguage() == Language.UNKNOWN_LANGUAGE.value();
+  }
+
+  /** @return version of the second library */
+  public String getFallbackVersion() {
+    return fallback.version();
+  }
+
+  /** @return number of detections */
+  public long getDetectionCount() {
+    return detections.sum();
+  }
+
+  /** @return number of detections passed on to the second library */
+  public long getFallbackCount() {
+    return fallbacks.sum();
+  }
+
+}
@@ -16,40 +16,86 @@
 
 package org.commoncrawl.langdetect.cld2;
 
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
 
 /**
  * Public interface for the CLD2 library.
  */
 public class Cld2 {
 
+  /**
+   * Binding to the native library, see {@link Cld2Binding} how to select the
+   * binding
+   */
+  static final Cld2Binding BINDING = Cld2Binding.load();
+
+  /**
+   * Capacity for result chunks passed to the extension library, see
+   * {@link #detectChunks(byte[], int, int, CLDHints, int, boolean)}. Pages
+   * with more chunks are copied by a second call without detecting again.
+   */
+  private static final int LOCAL_CHUNKS = 16;
+
+  /** Per-thread array receiving the result chunks */
+  private static final ThreadLocal<int[]> CHUNKS = ThreadLocal
+      .withInitial(() -> new int[3 * LOCAL_CHUNKS]);
+
+  /** Metrics recorded for every call to CLD2, null if disabled */
+  private static volatile DetectionMetrics metrics;
+
+  /**
+   * Enable or disable metrics. Once enabled, every call to CLD2 by the detect
+   * methods of this class and by {@link Detector} is measured and recorded.
+   * Batch detection is not recorded.
+   *
+   * @param m
+   *          metrics to record, e.g., {@link DetectionStats}, null to disable
+   *          recording
+   */
+  public static void setMetrics(DetectionMetrics m) {
+    metrics = m;
+  }
+
+  /** @return metrics recorded, null if disabled */
+  public static DetectionMetrics getMetrics() {
+    return metrics;
+  }
+
   public static int getLanguageFromName(String name) {
-    return Cld2Library.INSTANCE._ZN4CLD219GetLanguageFromNameEPKc(name);
+    return BINDING.languageFromName(name);
   }
 
   public static String getLanguageName(int language) {
-    return Cld2Library.INSTANCE._ZN4CLD212LanguageNameENS_8LanguageE(language);
+    return BINDING.languageName(language);
   }
 
   public static String getLanguageCode(int language) {
-    return Cld2Library.INSTANCE._ZN4CLD212LanguageCodeENS_8LanguageE(language);
+    return BINDING.languageCode(language);
   }
 
   public static String version() {
-    return Cld2Library.INSTANCE._ZN4CLD221DetectLanguageVersionEv();
+    return BINDING.version();
   }
 
   /**
    * Encode input as native (null-terminated) bytes using UTF-8 as character
-   * encoding.
+   * encoding. Unpaired surrogates are replaced by U+FFFD.
    * 
    * @param text
    *          input string
    * @return null-terminated UTF-8-encoded bytes
    */
   public static byte[] encodeNative(String text) {
-    byte[] jbytes = text.getBytes(StandardCharsets.UTF_8);
-    return bytesToNative(jbytes);
+    char[] chars = text.toCharArray();
+    byte[] cbytes = new byte[Math.toIntExact(
+        Utf8.encodedLength(chars, chars.length) + 1)];
+    Utf8.encode(chars, chars.length, cbytes, 0);
+    return cbytes;
   }
 
   /**
@@ -66,7 +112,7 @@ public class Cld2 {
   }
 
   public static Result detect(String text) {
-    return detect(encodeNative(text));
+    return detect(text, CLDHints.NO_HINTS, 0, true);
   }
 
   /**
@@ -83,11 +129,11 @@ public class Cld2 {
   }
 
   public static Result detect(String text, CLDHints hints) {
-    return detect(encodeNative(text), hints);
+    return detect(text, hints, 0, true);
   }
 
   public static Result detect(String text, boolean isPlainText) {
-    return detect(encodeNative(text), CLDHints.NO_HINTS, 0, isPlainText);
+    return detect(text, CLDHints.NO_HINTS, 0, isPlainText);
   }
 
   public static Result detect(byte[] bytes, CLDHints hints) {
@@ -101,12 +147,44 @@ public class Cld2 {
 
   public static Result detect(String text, CLDHints hints, Flags flags,
       boolean isPlainText) {
-    return detect(encodeNative(text), hints, flags, isPlainText);
+    return detect(text, hints, flags.get(), isPlainText);
   }
 
+  /**
+   * Detect language. The text is encoded as UTF-8 directly into native memory
+   * reused by the current thread, unpaired surrogates are replaced by U+FFFD.
+   *
+   * @param text
+   *          input text
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @return detection result
+   */
   public static Result detect(String text, CLDHints hints, int flags,
       boolean isPlainText) {
-    return detect(encodeNative(text), hints, flags, isPlainText);
+    NativeBuffer buffer = NativeBuffer.local();
+    int length = buffer.putUtf8(text);
+    return detect(buffer.pointer(), length, hints, flags, isPlainText);
+  }
+
+  /**
+   * Detect language of a sample of the text within a byte budget, see
+   * {@link #detect(byte[], int, int, CLDHints, int, boolean, Sampling)}. The
+   * text is encoded entirely before it is sampled.
+   */
+  public static Result detect(String text, CLDHints hints, int flags,
+      boolean isPlainText, Sampling sampling) {
+    NativeBuffer buffer = NativeBuffer.local();
+    int length = buffer.putUtf8(text);
+    if (length <= sampling.getMaxBytes()) {
+      return detect(buffer.pointer(), length, hints, flags, isPlainText);
+    }
+    return detect(buffer.utf8(), 0, length, hints, flags, isPlainText,
+        sampling);
   }
 
   /**
@@ -126,21 +204,461 @@ public class Cld2 {
    */
   public static Result detect(byte[] bytes, CLDHints hints, int flags,
       boolean isPlainText) {
+    return detectArray(bytes, 0, bytes.length, hints, flags, isPlainText);
+  }
+
+  public static Result detect(byte[] buf, int off, int len) {
+    return detect(buf, off, len, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language of a slice of a byte array. JNA cannot pass a pointer into
+   * a Java array, the slice is copied into native memory reused by the
+   * current thread, but no copy is made on the Java heap.
+   * 
+   * @param buf
+   *          input bytes holding UTF-8-encoded text
+   * @param off
+   *          offset of the text in the byte array
+   * @param len
+   *          length of the text in bytes<br/>
+   *          Note that CLD2 may raise a segmentation fault if the bytes are
+   *          not proper UTF-8.
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @return detection result
+   */
+  public static Result detect(byte[] buf, int off, int len, CLDHints hints,
+      int flags, boolean isPlainText) {
+    checkBounds(off, len, buf.length);
+    return detectArray(buf, off, len, hints, flags, isPlainText);
+  }
+
+  /**
+   * Detect language of a slice of a byte array within a byte budget: if the
+   * slice is longer than the budget, only a prefix or evenly spaced samples
+   * are passed to CLD2, see {@link Sampling}. The number of bytes passed to
+   * CLD2 is reported by {@link Result#getBytesExamined()}.
+   *
+   * @param buf
+   *          input bytes holding UTF-8-encoded text
+   * @param off
+   *          offset of the text in the byte array
+   * @param len
+   *          length of the text in bytes<br/>
+   *          Note that CLD2 may raise a segmentation fault if the bytes are
+   *          not proper UTF-8.
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @param sampling
+   *          byte budget and sampling method
+   * @return detection result
+   */
+  public static Result detect(byte[] buf, int off, int len, CLDHints hints,
+      int flags, boolean isPlainText, Sampling sampling) {
+    checkBounds(off, len, buf.length);
+    NativeBuffer buffer = NativeBuffer.local();
+    int length = sampling.sample(buf, off, len, buffer);
+    return detect(buffer.pointer(), length, hints, flags, isPlainText);
+  }
+
+  public static Result detect(ByteBuffer buffer, int offset, int length) {
+    return detect(buffer, offset, length, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language of a slice of a byte buffer. If the buffer is direct, the
+   * text is passed in place to CLD2, no copy is made. Buffers backed by an
+   * array are passed as slice of the array, see
+   * {@link #detect(byte[], int, int, CLDHints, int, boolean)}.
+   * 
+   * @param buffer
+   *          buffer holding UTF-8-encoded text. Position and limit of the
+   *          buffer are not modified.
+   * @param offset
+   *          absolute offset of the text in the buffer
+   * @param length
+   *          length of the text in bytes<br/>
+   *          Note that CLD2 may raise a segmentation fault if the bytes are
+   *          not proper UTF-8.
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @return detection result
+   * @throws IllegalArgumentException
+   *           if the buffer is neither direct nor backed by an array
+   */
+  public static Result detect(ByteBuffer buffer, int offset, int length,
+      CLDHints hints, int flags, boolean isPlainText) {
+    checkBounds(offset, length, buffer.limit());
+    if (!buffer.isDirect()) {
+      if (!buffer.hasArray()) {
+        throw new IllegalArgumentException(
+            "Buffer is neither direct nor backed by an accessible array");
+      }
+      return detect(buffer.array(), buffer.arrayOffset() + offset, length,
+          hints, flags, isPlainText);
+    }
+    Pointer p = Native.getDirectBufferPointer(buffer).share(offset);
+    return detect(p, length, hints, flags, isPlainText);
+  }
+
+  /**
+   * Detect language of a slice of a byte array which may not be well-formed
+   * UTF-8, see {@link #detectSafe(ByteBuffer, int, int, CLDHints, int, boolean)}.
+   */
+  public static Result detectSafe(byte[] buf, int off, int len,
+      CLDHints hints, int flags, boolean isPlainText) {
+    checkBounds(off, len, buf.length);
+    return detectSafe(ByteBuffer.wrap(buf), off, len, hints, flags,
+        isPlainText);
+  }
+
+  /**
+   * Detect language of a slice of a byte buffer (direct or backed by an
+   * array) which may not be well-formed UTF-8. The input is validated and
+   * copied into native memory in a single pass: ill-formed sequences are
+   * replaced by U+FFFD, null bytes are removed and the copy is
+   * null-terminated. CLD2 is guaranteed to see only well-formed,
+   * null-terminated UTF-8.
+   *
+   * @param buffer
+   *          buffer holding UTF-8-encoded text. Position and limit of the
+   *          buffer are not modified.
+   * @param offset
+   *          absolute offset of the text in the buffer
+   * @param length
+   *          length of the text in bytes
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @return detection result, {@link Result#getBytesExamined()} is the length
+   *         of the sanitized input
+   */
+  public static Result detectSafe(ByteBuffer buffer, int offset, int length,
+      CLDHints hints, int flags, boolean isPlainText) {
+    checkBounds(offset, length, buffer.limit());
+    NativeBuffer nativeBuffer = NativeBuffer.local();
+    int n = nativeBuffer.putSanitized(buffer, offset, length);
+    return detect(nativeBuffer.pointer(), n, hints, flags, isPlainText);
+  }
+
+  /**
+   * Detect language of text in a legacy charset, see
+   * {@link #detect(byte[], int, int, Charset, CLDHints, int, boolean)}. Not
+   * named <code>detect</code>, because <code>detect(bytes, null)</code> would
+   * be ambiguous with {@link #detect(byte[], CLDHints)}.
+   */
+  public static Result detectCharset(byte[] raw, Charset charset) {
+    return detect(raw, 0, raw.length, charset, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language of text in a legacy (non-UTF-8) charset. The text is
+   * transcoded directly into native memory reused by the current thread,
+   * without creating a string. Malformed input and unmappable characters are
+   * replaced by U+FFFD. If the charset is known to CLD2 and the hints do not
+   * hold an encoding hint, the encoding hint is set from the charset, see
+   * {@link Encoding#convert(Charset)}.
+   *
+   * @param raw
+   *          input bytes holding text encoded in the given charset
+   * @param off
+   *          offset of the text in the byte array
+   * @param len
+   *          length of the text in bytes
+   * @param charset
+   *          charset of the input bytes
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @return detection result, {@link Result#getBytesExamined()} is the length
+   *         of the transcoded input
+   */
+  public static Result detect(byte[] raw, int off, int len, Charset charset,
+      CLDHints hints, int flags, boolean isPlainText) {
+    checkBounds(off, len, raw.length);
+    NativeBuffer buffer = NativeBuffer.local();
+    int length = buffer.putDecoded(raw, off, len, charset);
+    return detect(buffer.pointer(), length,
+        CLDHints.withEncodingHint(hints, charset), flags, isPlainText);
+  }
+
+  /** Call CLD2 on input text in native memory and record metrics */
+  static Result detect(Pointer p, int length, CLDHints hints,
+      int flags, boolean isPlainText) {
+    DetectionMetrics m = metrics;
+    long start = m == null ? 0 : System.nanoTime();
     Result res = new Result();
-    int language = Cld2Library.INSTANCE._ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
-        bytes,
-        bytes.length,
-        isPlainText,
-        hints,
-        flags,
-        res.language3,
-        res.percent3,
-        res.normalizedScore3,
-        null, // Supposed to be a vector of ResultChunks, but it is not direct to pass vectors.
-        res.textBytes,
-        res.isReliable);
-    res.setLanguage(language);
+    res.setLanguage(BINDING.detect(p, length, isPlainText, hints, flags, res));
+    res.setBytesExamined(length);
+    if (m != null) {
+      m.record(length, System.nanoTime() - start, res);
+    }
+    return res;
+  }
+
+  /** Call CLD2 on input text in a byte array and record metrics */
+  private static Result detectArray(byte[] buf, int off, int len,
+      CLDHints hints, int flags, boolean isPlainText) {
+    DetectionMetrics m = metrics;
+    long start = m == null ? 0 : System.nanoTime();
+    Result res = new Result();
+    res.setLanguage(
+        BINDING.detect(buf, off, len, isPlainText, hints, flags, res));
+    res.setBytesExamined(len);
+    if (m != null) {
+      m.record(len, System.nanoTime() - start, res);
+    }
+    return res;
+  }
+
+  /**
+   * Detect language and return the chunks of the input, see
+   * {@link #detectChunks(byte[], int, int, CLDHints, int, boolean)}. Chunk
+   * offsets refer to the UTF-8 encoding of the text.
+   */
+  public static Result detectChunks(String text) {
+    NativeBuffer buffer = NativeBuffer.local();
+    int length = buffer.putUtf8(text);
+    return detectChunks(buffer.pointer(), length, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language and return the chunks of the input labeled with the
+   * detected language, see {@link Result#getChunks()}. The chunks are
+   * obtained from the same call of CLD2, no extra detection work is required
+   * to segment mixed-language documents. Requires the CLD2 extension library
+   * <code>cld2ext</code>, see README.md.
+   *
+   * @param buf
+   *          input bytes holding UTF-8-encoded text
+   * @param off
+   *          offset of the text in the byte array
+   * @param len
+   *          length of the text in bytes<br/>
+   *          Note that CLD2 may raise a segmentation fault if the bytes are
+   *          not proper UTF-8.
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @return detection result including chunks, chunk offsets are relative to
+   *         <code>off</code>
+   * @throws UnsupportedOperationException
+   *           if the extension library is not available
+   */
+  public static Result detectChunks(byte[] buf, int off, int len,
+      CLDHints hints, int flags, boolean isPlainText) {
+    checkBounds(off, len, buf.length);
+    return detectChunks(NativeBuffer.local().put(buf, off, len), len, hints,
+        flags, isPlainText);
+  }
 
+  private static Result detectChunks(Pointer p, int len, CLDHints hints,
+      int flags, boolean isPlainText) {
+    if (!Cld2ExtLibrary.AVAILABLE) {
+      throw new UnsupportedOperationException(
+          "Chunk-level results require the CLD2 extension library "
+              + Cld2ExtLibrary.JNA_LIBRARY_NAME);
+    }
+    Pointer h = CLDHints.toNative(hints);
+    Result res = new Result();
+    int[] numChunks = new int[1];
+    int[] buf = CHUNKS.get();
+    int language = Cld2ExtLibrary.cld2ext_detect_chunks(p, len, isPlainText,
+        h, flags, res.language3, res.percent3, res.normalizedScore3,
+        res.textBytes, res.isReliable, buf, LOCAL_CHUNKS, numChunks);
+    int n = numChunks[0];
+    if (n <= LOCAL_CHUNKS) {
+      res.chunks = Arrays.copyOf(buf, 3 * n);
+    } else {
+      res.chunks = new int[3 * n];
+      n = Cld2ExtLibrary.cld2ext_copy_chunks(res.chunks, n);
+    }
+    res.setLanguage(language);
+    res.setBytesExamined(len);
+    res.numChunks = n;
     return res;
   }
+
+  public static BatchResult detectBatch(String[] texts) {
+    return detectBatch(texts, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language of many documents. The documents are encoded as UTF-8 and
+   * packed into one native buffer reused by the current thread, see
+   * {@link #detectBatch(ByteBuffer, int[], int, CLDHints[], int[], boolean)}.
+   *
+   * @param texts
+   *          input documents
+   * @param hints
+   *          external hints shared by all documents
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text documents or HTML pages
+   * @return columnar detection results
+   */
+  public static BatchResult detectBatch(String[] texts, CLDHints hints,
+      int flags, boolean isPlainText) {
+    int[] offsets = new int[texts.length + 1];
+    NativeBuffer buffer = NativeBuffer.local();
+    for (int i = 0; i < texts.length; i++) {
+      // the terminating null is overwritten by the next document
+      offsets[i + 1] = Math.addExact(offsets[i],
+          buffer.putUtf8(texts[i], offsets[i]) - 1);
+    }
+    return BatchResult.detect(buffer.ensureCapacity(1), offsets, texts.length,
+        batchHints(new CLDHints[] { hints }), new int[] { flags },
+        isPlainText);
+  }
+
+  /**
+   * Detect language of many documents packed into a byte array. The documents
+   * are copied into one native buffer reused by the current thread, see
+   * {@link #detectBatch(ByteBuffer, int[], int, CLDHints[], int[], boolean)}.
+   */
+  public static BatchResult detectBatch(byte[] buf, int[] offsets,
+      int numDocs, CLDHints[] hints, int[] flags, boolean isPlainText) {
+    checkBatch(offsets, numDocs, buf.length, hints, flags);
+    int start = offsets[0];
+    int length = offsets[numDocs] - start;
+    Pointer p = NativeBuffer.local().put(buf, start, length);
+    if (start != 0) {
+      int[] rebased = new int[numDocs + 1];
+      for (int i = 0; i <= numDocs; i++) {
+        rebased[i] = offsets[i] - start;
+      }
+      offsets = rebased;
+    }
+    return BatchResult.detect(p, offsets, numDocs, batchHints(hints),
+        batchFlags(flags), isPlainText);
+  }
+
+  /**
+   * Detect language of many documents packed into one buffer. If the CLD2
+   * extension library <code>cld2ext</code> is installed, see README.md, the
+   * whole batch is passed to CLD2 by a single native call, which amortizes
+   * the cost of the Java-to-native transition over all documents. Otherwise
+   * the documents are passed one by one.
+   *
+   * @param buffer
+   *          buffer holding the UTF-8-encoded documents. A direct buffer is
+   *          passed in place, a buffer backed by an array is passed as array,
+   *          see {@link #detectBatch(byte[], int[], int, CLDHints[], int[], boolean)}.
+   *          Position and limit of the buffer are not modified.
+   * @param offsets
+   *          absolute offsets of the documents in the buffer, at least
+   *          <code>numDocs + 1</code> ascending values: document
+   *          <code>i</code> spans the bytes from <code>offsets[i]</code>
+   *          (inclusive) to <code>offsets[i+1]</code> (exclusive)<br/>
+   *          Note that CLD2 may raise a segmentation fault if the documents
+   *          are not proper UTF-8.
+   * @param numDocs
+   *          number of documents
+   * @param hints
+   *          external hints, either null (no hints), one element shared by
+   *          all documents or one element per document
+   * @param flags
+   *          flags to modify behavior of CLD2, either null or empty (no
+   *          flags), one element shared by all documents or one element per
+   *          document
+   * @param isPlainText
+   *          whether to detect language of plain-text documents or HTML pages
+   * @return columnar detection results
+   * @throws IllegalArgumentException
+   *           if the buffer is neither direct nor backed by an array, or the
+   *           number of hints or flags does not match
+   */
+  public static BatchResult detectBatch(ByteBuffer buffer, int[] offsets,
+      int numDocs, CLDHints[] hints, int[] flags, boolean isPlainText) {
+    if (!buffer.isDirect()) {
+      if (!buffer.hasArray()) {
+        throw new IllegalArgumentException(
+            "Buffer is neither direct nor backed by an accessible array");
+      }
+      checkBatch(offsets, numDocs, buffer.limit(), hints, flags);
+      int[] shifted = offsets;
+      if (buffer.arrayOffset() != 0) {
+        shifted = new int[numDocs + 1];
+        for (int i = 0; i <= numDocs; i++) {
+          shifted[i] = buffer.arrayOffset() + offsets[i];
+        }
+      }
+      return detectBatch(buffer.array(), shifted, numDocs, hints, flags,
+          isPlainText);
+    }
+    checkBatch(offsets, numDocs, buffer.limit(), hints, flags);
+    return BatchResult.detect(Native.getDirectBufferPointer(buffer), offsets,
+        numDocs, batchHints(hints), batchFlags(flags), isPlainText);
+  }
+
+  private static void checkBatch(int[] offsets, int numDocs, int size,
+      CLDHints[] hints, int[] flags) {
+    if (numDocs < 0 || offsets.length <= numDocs) {
+      throw new IllegalArgumentException("Expected " + (numDocs + 1)
+          + " offsets for " + numDocs + " documents, got " + offsets.length);
+    }
+    checkBounds(offsets[0], 0, size);
+    for (int i = 0; i < numDocs; i++) {
+      checkBounds(offsets[i], offsets[i + 1] - offsets[i], size);
+    }
+    if (hints != null && hints.length > 1 && hints.length != numDocs) {
+      throw new IllegalArgumentException("Expected 1 or " + numDocs
+          + " hints, got " + hints.length);
+    }
+    if (flags != null && flags.length > 1 && flags.length != numDocs) {
+      throw new IllegalArgumentException("Expected 1 or " + numDocs
+          + " flags, got " + flags.length);
+    }
+  }
+
+  private static CLDHints[] batchHints(CLDHints[] hints) {
+    if (hints == null || hints.length == 0) {
+      return new CLDHints[] { CLDHints.NO_HINTS };
+    }
+    for (int i = 0; i < hints.length; i++) {
+      if (hints[i] == null) {
+        hints = hints.clone();
+        for (; i < hints.length; i++) {
+          if (hints[i] == null) {
+            hints[i] = CLDHints.NO_HINTS;
+          }
+        }
+      }
+    }
+    return hints;
+  }
+
+  private static int[] batchFlags(int[] flags) {
+    return flags == null ? new int[0] : flags;
+  }
+
+  static void checkBounds(int offset, int length, int size) {
+    if (offset < 0 || length < 0 || offset > size - length) {
+      throw new IndexOutOfBoundsException("offset = " + offset
+          + ", length = " + length + ", size = " + size);
+    }
+  }
 }
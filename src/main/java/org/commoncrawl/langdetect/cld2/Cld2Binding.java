@@ -0,0 +1,337 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binding used by {@link Cld2} to call the functions of the native CLD2
+ * library. The binding is selected at startup by the system property
+ * <code>cld2.binding</code>:
+ * <ul>
+ * <li><code>auto</code> (default): the fastest binding available, in this
+ * order: <code>ffm</code>, <code>direct</code>, <code>interface</code></li>
+ * <li><code>ffm</code>: Foreign Function &amp; Memory API, requires Java 22
+ * or newer, see {@link ForeignBinding}</li>
+ * <li><code>direct</code>: JNA direct mapping, see {@link Cld2DirectLibrary},
+ * which avoids the per-call overhead of the proxy dispatch and of
+ * reading back the CLDHints structure</li>
+ * <li><code>interface</code>: JNA interface mapping, see
+ * {@link Cld2Library}</li>
+ * </ul>
+ * All bindings call the same native functions and return the same results.
+ */
+interface Cld2Binding {
+
+  /** System property to select the binding */
+  String PROPERTY = "cld2.binding";
+
+  String languageName(int language);
+
+  String languageCode(int language);
+
+  int languageFromName(String name);
+
+  String version();
+
+  /**
+   * Call <code>ExtDetectLanguageSummary</code> and fill the result
+   *
+   * @param bytes
+   *          input text as UTF-8-encoded bytes
+   * @param offset
+   *          offset of the input text in the byte array
+   * @param length
+   *          number of bytes passed to CLD2
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @param hints
+   *          external hints
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param res
+   *          result to fill with detected languages, percents, scores, text
+   *          bytes and reliability
+   * @return top language
+   */
+  int detect(byte[] bytes, int offset, int length, boolean isPlainText,
+      CLDHints hints, int flags, Result res);
+
+  /**
+   * Call <code>ExtDetectLanguageSummary</code> on input text in native memory
+   * and fill the result, see
+   * {@link #detect(byte[], int, int, boolean, CLDHints, int, Result)}
+   */
+  int detect(Pointer buffer, int length, boolean isPlainText, CLDHints hints,
+      int flags, Result res);
+
+  /**
+   * Call <code>ExtDetectLanguageSummary</code> with all arguments in native
+   * memory: input text, hints (a <code>CLDHints</code> struct) and the output
+   * arguments. Used by {@link Detector} to avoid any allocation on the Java
+   * heap.
+   */
+  int detect(Pointer buffer, int length, boolean isPlainText, Pointer hints,
+      int flags, Pointer language3, Pointer percent3,
+      Pointer normalizedScore3, Pointer textBytes, Pointer isReliable);
+
+  static Cld2Binding load() {
+    Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    String binding = System.getProperty(PROPERTY, "auto")
+        .toLowerCase(Locale.ROOT);
+    try {
+      switch (binding) {
+      case "ffm":
+        return ForeignBinding.create();
+      case "direct":
+        return new Direct();
+      case "interface":
+        return new Interface();
+      case "auto":
+        break;
+      default:
+        log.warn("Unknown CLD2 binding <{}>, selecting fastest available",
+            binding);
+      }
+    } catch (UnsupportedOperationException | LinkageError e) {
+      log.warn("CLD2 binding <{}> not available, selecting fastest available: {}",
+          binding, e.toString());
+    }
+    try {
+      Cld2Binding ffm = ForeignBinding.create();
+      log.debug("Using Foreign Function & Memory API to call CLD2");
+      return ffm;
+    } catch (UnsupportedOperationException | LinkageError e) {
+      log.debug("Foreign Function & Memory API not available: {}", e.toString());
+    }
+    try {
+      Cld2Binding direct = new Direct();
+      log.debug("Using JNA direct mapping to call CLD2");
+      return direct;
+    } catch (LinkageError e) {
+      log.debug("JNA direct mapping not available: {}", e.toString());
+    }
+    log.debug("Using JNA interface mapping to call CLD2");
+    return new Interface();
+  }
+
+  /**
+   * Load a CLD2 library by name side by side with the library loaded by
+   * {@link #load()}, e.g., <code>cld2_full</code> next to <code>cld2</code>.
+   * The library is called by the JNA interface mapping, direct mapping binds
+   * native methods to a single library per class. On Linux the library is
+   * opened with <code>RTLD_DEEPBIND</code>, so that its code uses its own
+   * tables and not those of a library already loaded with the same symbols.
+   *
+   * @param libraryName
+   *          name of the library, without prefix "lib" and suffix ".so"
+   * @return binding calling the given library
+   * @throws UnsatisfiedLinkError
+   *           if the library cannot be loaded
+   */
+  static Cld2Binding load(String libraryName) {
+    int openFlags = 0x1; // RTLD_LAZY, RTLD_LOCAL
+    if (Platform.isLinux()) {
+      openFlags |= 0x8; // RTLD_DEEPBIND (glibc)
+    }
+    Map<String, Object> options = new HashMap<>();
+    options.put(Library.OPTION_OPEN_FLAGS, openFlags);
+    return new Interface(
+        Native.load(libraryName, Cld2Library.class, options));
+  }
+
+  /**
+   * Whether the input spans the entire array except a terminating null, so
+   * that the array can be passed to CLD2 without copying
+   */
+  static boolean isTerminated(byte[] bytes, int offset, int length) {
+    return offset == 0 && length == (bytes.length - 1) && bytes[length] == 0;
+  }
+
+  /** JNA interface mapping */
+  static class Interface implements Cld2Binding {
+
+    private final Cld2Library library;
+
+    Interface() {
+      this(Cld2Library.INSTANCE);
+    }
+
+    Interface(Cld2Library library) {
+      this.library = library;
+    }
+
+    @Override
+    public String languageName(int language) {
+      return library._ZN4CLD212LanguageNameENS_8LanguageE(language);
+    }
+
+    @Override
+    public String languageCode(int language) {
+      return library._ZN4CLD212LanguageCodeENS_8LanguageE(language);
+    }
+
+    @Override
+    public int languageFromName(String name) {
+      return library._ZN4CLD219GetLanguageFromNameEPKc(name);
+    }
+
+    @Override
+    public String version() {
+      return library._ZN4CLD221DetectLanguageVersionEv();
+    }
+
+    @Override
+    public int detect(byte[] bytes, int offset, int length,
+        boolean isPlainText, CLDHints hints, int flags, Result res) {
+      if (!isTerminated(bytes, offset, length)) {
+        // JNA cannot pass a pointer into a Java array and would copy the
+        // entire array, also CLD2 requires a terminating null
+        return detect(NativeBuffer.local().put(bytes, offset, length), length,
+            isPlainText, hints, flags, res);
+      }
+      return library._ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
+          bytes,
+          length,
+          isPlainText,
+          hints,
+          flags,
+          res.language3,
+          res.percent3,
+          res.normalizedScore3,
+          null, // Supposed to be a vector of ResultChunks, but it is not direct to pass vectors.
+          res.textBytes,
+          res.isReliable);
+    }
+
+    @Override
+    public int detect(Pointer buffer, int length, boolean isPlainText,
+        CLDHints hints, int flags, Result res) {
+      return library._ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
+          buffer,
+          length,
+          isPlainText,
+          hints,
+          flags,
+          res.language3,
+          res.percent3,
+          res.normalizedScore3,
+          null,
+          res.textBytes,
+          res.isReliable);
+    }
+
+    @Override
+    public int detect(Pointer buffer, int length, boolean isPlainText,
+        Pointer hints, int flags, Pointer language3, Pointer percent3,
+        Pointer normalizedScore3, Pointer textBytes, Pointer isReliable) {
+      return library._ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
+          buffer, length, isPlainText, hints, flags, language3, percent3,
+          normalizedScore3, null, textBytes, isReliable);
+    }
+  }
+
+  /** JNA direct mapping */
+  static class Direct implements Cld2Binding {
+
+    Direct() {
+      // register native methods now to fail early if not available
+      Cld2DirectLibrary.register();
+    }
+
+    @Override
+    public String languageName(int language) {
+      return Cld2DirectLibrary._ZN4CLD212LanguageNameENS_8LanguageE(language);
+    }
+
+    @Override
+    public String languageCode(int language) {
+      return Cld2DirectLibrary._ZN4CLD212LanguageCodeENS_8LanguageE(language);
+    }
+
+    @Override
+    public int languageFromName(String name) {
+      return Cld2DirectLibrary._ZN4CLD219GetLanguageFromNameEPKc(name);
+    }
+
+    @Override
+    public String version() {
+      return Cld2DirectLibrary._ZN4CLD221DetectLanguageVersionEv();
+    }
+
+    @Override
+    public int detect(byte[] bytes, int offset, int length,
+        boolean isPlainText, CLDHints hints, int flags, Result res) {
+      if (!isTerminated(bytes, offset, length)) {
+        // JNA cannot pass a pointer into a Java array and would copy the
+        // entire array, also CLD2 requires a terminating null
+        return detect(NativeBuffer.local().put(bytes, offset, length), length,
+            isPlainText, hints, flags, res);
+      }
+      return Cld2DirectLibrary._ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
+          bytes,
+          length,
+          isPlainText,
+          CLDHints.toNative(hints),
+          flags,
+          res.language3,
+          res.percent3,
+          res.normalizedScore3,
+          null,
+          res.textBytes,
+          res.isReliable);
+    }
+
+    @Override
+    public int detect(Pointer buffer, int length, boolean isPlainText,
+        CLDHints hints, int flags, Result res) {
+      return Cld2DirectLibrary._ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
+          buffer,
+          length,
+          isPlainText,
+          CLDHints.toNative(hints),
+          flags,
+          res.language3,
+          res.percent3,
+          res.normalizedScore3,
+          null,
+          res.textBytes,
+          res.isReliable);
+    }
+
+    @Override
+    public int detect(Pointer buffer, int length, boolean isPlainText,
+        Pointer hints, int flags, Pointer language3, Pointer percent3,
+        Pointer normalizedScore3, Pointer textBytes, Pointer isReliable) {
+      return Cld2DirectLibrary._ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
+          buffer, length, isPlainText, hints, flags, language3, percent3,
+          normalizedScore3, null, textBytes, isReliable);
+    }
+  }
+
+}
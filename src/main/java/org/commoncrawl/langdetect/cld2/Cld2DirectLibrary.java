@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * JNA <a href=
+ * "https://github.com/java-native-access/jna/blob/master/www/DirectMapping.md">direct
+ * mapping</a> of library <b>Cld2</b>. The native methods are bound once when
+ * the class is loaded, calls do not go through the reflection-based proxy of
+ * {@link Cld2Library}.
+ *
+ * The CLDHints are passed as pointer, the caller needs to write the structure
+ * to native memory before the call. Because the hints are constant for CLD2,
+ * there is no need to read them back after the call.
+ */
+final class Cld2DirectLibrary {
+
+  static {
+    Native.register(Cld2Library.JNA_LIBRARY_NAME);
+  }
+
+  private Cld2DirectLibrary() {
+  }
+
+  /** Called to initialize the class and register the native methods */
+  static void register() {
+  }
+
+  //String LanguageName(int lang);
+  static native String _ZN4CLD212LanguageNameENS_8LanguageE(int lang);
+
+  //String LanguageCode(int lang);
+  static native String _ZN4CLD212LanguageCodeENS_8LanguageE(int lang);
+
+  //int GetLanguageFromName(String src);
+  static native int _ZN4CLD219GetLanguageFromNameEPKc(String src);
+
+  //int ExtDetectLanguageSummary(...), see Cld2Library
+  static native int _ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
+      byte[] buffer, int bufferLength, boolean isPlainText, Pointer cldHints, int flags,
+      int[] language3, int[] percent3, double[] normalizedScore3,
+      Pointer resultchunkvector, int[] textBytes, boolean[] isReliable);
+
+  //int ExtDetectLanguageSummary(...) with input text in native memory
+  static native int _ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
+      Pointer buffer, int bufferLength, boolean isPlainText, Pointer cldHints, int flags,
+      int[] language3, int[] percent3, double[] normalizedScore3,
+      Pointer resultchunkvector, int[] textBytes, boolean[] isReliable);
+
+  //int ExtDetectLanguageSummary(...) with all arguments in native memory
+  static native int _ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
+      Pointer buffer, int bufferLength, boolean isPlainText, Pointer cldHints, int flags,
+      Pointer language3, Pointer percent3, Pointer normalizedScore3,
+      Pointer resultchunkvector, Pointer textBytes, Pointer isReliable);
+
+  //String DetectLanguageVersion();
+  static native String _ZN4CLD221DetectLanguageVersionEv();
+
+}
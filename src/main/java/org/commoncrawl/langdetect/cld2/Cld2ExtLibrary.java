@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.lang.invoke.MethodHandles;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JNA direct mapping of the optional extension library <b>cld2ext</b>, built
+ * from <code>src/main/native/</code>, see README.md. The extension library
+ * holds functions which call CLD2 repeatedly within a single call from Java.
+ *
+ * The library is optional, check {@link #AVAILABLE} before calling any of the
+ * native methods.
+ */
+final class Cld2ExtLibrary {
+
+  static final String JNA_LIBRARY_NAME = "cld2ext";
+
+  /** Whether the extension library is loaded and the methods are bound */
+  static final boolean AVAILABLE = register();
+
+  private Cld2ExtLibrary() {
+  }
+
+  private static boolean register() {
+    try {
+      Native.register(Cld2ExtLibrary.class,
+          NativeLibrary.getInstance(JNA_LIBRARY_NAME));
+      return true;
+    } catch (LinkageError e) {
+      Logger log = LoggerFactory
+          .getLogger(MethodHandles.lookup().lookupClass());
+      log.debug("CLD2 extension library not available: {}", e.toString());
+      return false;
+    }
+  }
+
+  /**
+   * Detect the language of many documents packed into one buffer, see
+   * <code>cld2ext_detect_batch</code> in
+   * <code>src/main/native/cld2ext.cc</code>
+   */
+  static native void cld2ext_detect_batch(Pointer buffer, int[] offsets,
+      int numDocs, boolean isPlainText, Pointer hints, int numHints,
+      int[] flags, int numFlags, int[] language, int[] language3,
+      int[] percent3, double[] normalizedScore3, int[] textBytes,
+      boolean[] isReliable);
+
+  /**
+   * Detect the language of a document and return the result chunks, see
+   * <code>cld2ext_detect_chunks</code> in
+   * <code>src/main/native/cld2ext.cc</code>
+   */
+  static native int cld2ext_detect_chunks(Pointer buffer, int bufferLength,
+      boolean isPlainText, Pointer hints, int flags, int[] language3,
+      int[] percent3, double[] normalizedScore3, int[] textBytes,
+      boolean[] isReliable, int[] chunks, int maxChunks, int[] numChunks);
+
+  /**
+   * Copy the result chunks kept by the last call of
+   * {@link #cld2ext_detect_chunks} on the current thread, see
+   * <code>cld2ext_copy_chunks</code> in
+   * <code>src/main/native/cld2ext.cc</code>
+   */
+  static native int cld2ext_copy_chunks(int[] chunks, int maxChunks);
+
+}
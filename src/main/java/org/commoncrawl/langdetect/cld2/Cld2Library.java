@@ -19,6 +19,7 @@ package org.commoncrawl.langdetect.cld2;
 import com.sun.jna.Library;
 import com.sun.jna.Native;
 import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
 import com.sun.jna.ptr.PointerByReference;
 
 
@@ -50,6 +51,18 @@ public interface Cld2Library extends Library {
     int[] language3, int[] percent3, double[] normalizedScore3,
     PointerByReference resultchunkvector, int[] textBytes, boolean[] isReliable);
 
+  //int ExtDetectLanguageSummary(...) with input text in native memory
+  int _ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
+    Pointer buffer, int bufferLength, boolean isPlainText, CLDHints cldHints, int flags,
+    int[] language3, int[] percent3, double[] normalizedScore3,
+    PointerByReference resultchunkvector, int[] textBytes, boolean[] isReliable);
+
+  //int ExtDetectLanguageSummary(...) with all arguments in native memory
+  int _ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb(
+    Pointer buffer, int bufferLength, boolean isPlainText, Pointer cldHints, int flags,
+    Pointer language3, Pointer percent3, Pointer normalizedScore3,
+    Pointer resultchunkvector, Pointer textBytes, Pointer isReliable);
+
   //String DetectLanguageVersion();
   String _ZN4CLD221DetectLanguageVersionEv();
 
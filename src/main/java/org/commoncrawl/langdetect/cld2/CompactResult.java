@@ -0,0 +1,278 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+/**
+ * Immutable compact form of a {@link Result} packed into two
+ * <code>long</code>s, e.g., to store or shuffle large numbers of results.
+ *
+ * The first word holds the best detected language, the three detected
+ * languages (10 bits each), their percentages (7 bits each) and the
+ * reliability bit. The second word holds the number of text bytes (31 bits)
+ * and the three normalized scores, quantized to 11-bit floating-point
+ * numbers (5 bits exponent, 6 bits mantissa, relative error below 1%).
+ * Chunks, the number of bytes examined and the pruning configuration are not
+ * kept.
+ *
+ * The static methods pack and unpack the words without creating objects, see
+ * also {@link CompactResultColumn}.
+ */
+public final class CompactResult {
+
+  /** enough for all languages, see {@link Language#NUM_LANGUAGES} */
+  private static final int LANGUAGE_BITS = 10;
+  private static final int LANGUAGE_MASK = (1 << LANGUAGE_BITS) - 1;
+  private static final int PERCENT_BITS = 7;
+  private static final int PERCENT_MASK = (1 << PERCENT_BITS) - 1;
+  private static final int LANGUAGE3_SHIFT = LANGUAGE_BITS;
+  private static final int PERCENT3_SHIFT = 4 * LANGUAGE_BITS;
+  private static final int RELIABLE_SHIFT = PERCENT3_SHIFT + 3 * PERCENT_BITS;
+
+  private static final int TEXT_BYTES_BITS = 31;
+  private static final long TEXT_BYTES_MASK = (1L << TEXT_BYTES_BITS) - 1;
+  private static final int SCORE_BITS = 11;
+  private static final int SCORE_MASK = (1 << SCORE_BITS) - 1;
+  private static final int SCORE_MANTISSA_BITS = 6;
+  /** smallest exponent (base 2) of a score not quantized to zero */
+  private static final int SCORE_MIN_EXPONENT = -9;
+
+  private final long high;
+  private final long low;
+
+  /** Wrap the two packed words, see {@link #getHigh()} and {@link #getLow()} */
+  public CompactResult(long high, long low) {
+    this.high = high;
+    this.low = low;
+  }
+
+  /** Pack a result */
+  public static CompactResult of(Result res) {
+    return new CompactResult(packHigh(res), packLow(res));
+  }
+
+  /** @return first word: languages, percentages and reliability */
+  public long getHigh() {
+    return high;
+  }
+
+  /** @return second word: text bytes and normalized scores */
+  public long getLow() {
+    return low;
+  }
+
+  /** Best detected {@link Language} */
+  public int getLanguage() {
+    return language(high);
+  }
+
+  /** {@link Language} detected at rank 0, 1 or 2 */
+  public int getLanguage(int rank) {
+    return language(high, rank);
+  }
+
+  /** Percentage of the text covered by the language at rank 0, 1 or 2 */
+  public int getPercent(int rank) {
+    return percent(high, rank);
+  }
+
+  /** Normalized score of the language at rank 0, 1 or 2 (quantized) */
+  public double getNormalizedScore(int rank) {
+    return normalizedScore(low, rank);
+  }
+
+  public int getTextBytes() {
+    return textBytes(low);
+  }
+
+  public boolean isReliable() {
+    return isReliable(high);
+  }
+
+  /** Language code of best detected language, see {@link Language#getCode()} */
+  public String getLanguageCode() {
+    return Language.getCode(getLanguage());
+  }
+
+  /** @return a new result holding the unpacked values */
+  public Result toResult() {
+    return toResult(high, low);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof CompactResult)) {
+      return false;
+    }
+    CompactResult other = (CompactResult) o;
+    return high == other.high && low == other.low;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(high) * 31 + Long.hashCode(low);
+  }
+
+  @Override
+  public String toString() {
+    return toResult().toString();
+  }
+
+  /** Pack languages, percentages and reliability of a result */
+  public static long packHigh(Result res) {
+    return packHigh(res.language, res.language3[0], res.language3[1],
+        res.language3[2], res.percent3[0], res.percent3[1], res.percent3[2],
+        res.isReliable[0]);
+  }
+
+  /** Pack text bytes and normalized scores of a result */
+  public static long packLow(Result res) {
+    return packLow(res.textBytes[0], res.normalizedScore3[0],
+        res.normalizedScore3[1], res.normalizedScore3[2]);
+  }
+
+  /** Pack languages, percentages and reliability */
+  public static long packHigh(int language, int language0, int language1,
+      int language2, int percent0, int percent1, int percent2,
+      boolean reliable) {
+    long w = packLanguage(language);
+    w |= (long) packLanguage(language0) << LANGUAGE3_SHIFT;
+    w |= (long) packLanguage(language1) << (LANGUAGE3_SHIFT + LANGUAGE_BITS);
+    w |= (long) packLanguage(language2)
+        << (LANGUAGE3_SHIFT + 2 * LANGUAGE_BITS);
+    w |= (long) packPercent(percent0) << PERCENT3_SHIFT;
+    w |= (long) packPercent(percent1) << (PERCENT3_SHIFT + PERCENT_BITS);
+    w |= (long) packPercent(percent2) << (PERCENT3_SHIFT + 2 * PERCENT_BITS);
+    if (reliable) {
+      w |= 1L << RELIABLE_SHIFT;
+    }
+    return w;
+  }
+
+  /** Pack text bytes and normalized scores */
+  public static long packLow(int textBytes, double score0, double score1,
+      double score2) {
+    long w = Math.max(0, textBytes) & TEXT_BYTES_MASK;
+    w |= (long) quantizeScore(score0) << TEXT_BYTES_BITS;
+    w |= (long) quantizeScore(score1) << (TEXT_BYTES_BITS + SCORE_BITS);
+    w |= (long) quantizeScore(score2) << (TEXT_BYTES_BITS + 2 * SCORE_BITS);
+    return w;
+  }
+
+  private static int packLanguage(int language) {
+    if (language < 0 || language > LANGUAGE_MASK) {
+      return Language.UNKNOWN_LANGUAGE.value();
+    }
+    return language;
+  }
+
+  private static int packPercent(int percent) {
+    return Math.min(Math.max(0, percent), 100);
+  }
+
+  /** @return best detected language of the first word */
+  public static int language(long high) {
+    return (int) high & LANGUAGE_MASK;
+  }
+
+  /** @return language at rank 0, 1 or 2 of the first word */
+  public static int language(long high, int rank) {
+    checkRank(rank);
+    return (int) (high >>> (LANGUAGE3_SHIFT + rank * LANGUAGE_BITS))
+        & LANGUAGE_MASK;
+  }
+
+  /** @return percentage at rank 0, 1 or 2 of the first word */
+  public static int percent(long high, int rank) {
+    checkRank(rank);
+    return (int) (high >>> (PERCENT3_SHIFT + rank * PERCENT_BITS))
+        & PERCENT_MASK;
+  }
+
+  /** @return reliability of the first word */
+  public static boolean isReliable(long high) {
+    return ((high >>> RELIABLE_SHIFT) & 1) != 0;
+  }
+
+  /** @return text bytes of the second word */
+  public static int textBytes(long low) {
+    return (int) (low & TEXT_BYTES_MASK);
+  }
+
+  /** @return normalized score at rank 0, 1 or 2 of the second word */
+  public static double normalizedScore(long low, int rank) {
+    checkRank(rank);
+    return dequantizeScore(
+        (int) (low >>> (TEXT_BYTES_BITS + rank * SCORE_BITS)) & SCORE_MASK);
+  }
+
+  /** @return a new result holding the values unpacked from the two words */
+  public static Result toResult(long high, long low) {
+    Result res = new Result();
+    res.setLanguage(language(high));
+    for (int i = 0; i < 3; i++) {
+      res.language3[i] = language(high, i);
+      res.percent3[i] = percent(high, i);
+      res.normalizedScore3[i] = normalizedScore(low, i);
+    }
+    res.textBytes[0] = textBytes(low);
+    res.isReliable[0] = isReliable(high);
+    return res;
+  }
+
+  private static void checkRank(int rank) {
+    if (rank < 0 || rank > 2) {
+      throw new IndexOutOfBoundsException("Rank must be 0, 1 or 2: " + rank);
+    }
+  }
+
+  /**
+   * Quantize a non-negative score to an 11-bit floating-point number: the
+   * exponent (5 bits) covers the range 2^-9 to 2^22, the mantissa (6 bits) is
+   * rounded. Smaller scores are quantized to zero, larger scores are
+   * saturated.
+   */
+  static int quantizeScore(double score) {
+    if (!(score > 0)) {
+      // also NaN
+      return 0;
+    }
+    int bits = Float.floatToIntBits((float) score);
+    // round to nearest, a carry into the exponent is correct
+    bits += 1 << (22 - SCORE_MANTISSA_BITS);
+    int exponent = ((bits >>> 23) & 0xff) - 127 - SCORE_MIN_EXPONENT + 1;
+    if (exponent < 1) {
+      return 0;
+    }
+    if (exponent > (SCORE_MASK >>> SCORE_MANTISSA_BITS)) {
+      return SCORE_MASK;
+    }
+    return (exponent << SCORE_MANTISSA_BITS)
+        | ((bits >>> (23 - SCORE_MANTISSA_BITS))
+            & ((1 << SCORE_MANTISSA_BITS) - 1));
+  }
+
+  static double dequantizeScore(int q) {
+    if (q == 0) {
+      return 0.0;
+    }
+    int exponent = (q >>> SCORE_MANTISSA_BITS) + SCORE_MIN_EXPONENT - 1;
+    int mantissa = q & ((1 << SCORE_MANTISSA_BITS) - 1);
+    return Float.intBitsToFloat(((exponent + 127) << 23)
+        | (mantissa << (23 - SCORE_MANTISSA_BITS)));
+  }
+
+}
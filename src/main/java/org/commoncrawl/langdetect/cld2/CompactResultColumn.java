@@ -0,0 +1,218 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Column of results in compact form, see {@link CompactResult}, backed by a
+ * single <code>long[]</code> array holding two words per result: the result
+ * at index <code>i</code> is stored at the array indexes <code>2*i</code>
+ * and <code>2*i+1</code>. Values are accessed without creating objects. The
+ * column can be transferred in bulk from and to a {@link LongBuffer}, e.g., a
+ * view of a direct or memory-mapped byte buffer. Not thread-safe.
+ */
+public class CompactResultColumn {
+
+  private long[] words;
+  private int size;
+
+  public CompactResultColumn() {
+    this(16);
+  }
+
+  /** @param capacity initial number of results the column can hold */
+  public CompactResultColumn(int capacity) {
+    words = new long[2 * capacity];
+  }
+
+  /**
+   * Wrap an array of packed results.
+   *
+   * @param words
+   *          array holding two words per result, not copied
+   * @param size
+   *          number of results in the array
+   */
+  public CompactResultColumn(long[] words, int size) {
+    if (size < 0 || 2L * size > words.length) {
+      throw new IllegalArgumentException(
+          "Array does not hold " + size + " results");
+    }
+    this.words = words;
+    this.size = size;
+  }
+
+  /** @return number of results in the column */
+  public int size() {
+    return size;
+  }
+
+  private void ensureCapacity(int numResults) {
+    if (2L * numResults > words.length) {
+      long newLength = Math.max(2L * numResults, 2L * words.length);
+      words = Arrays.copyOf(words,
+          (int) Math.min(newLength, Integer.MAX_VALUE - 9) & ~1);
+    }
+  }
+
+  /** Append the result, packed into two words */
+  public void add(Result res) {
+    add(CompactResult.packHigh(res), CompactResult.packLow(res));
+  }
+
+  public void add(CompactResult res) {
+    add(res.getHigh(), res.getLow());
+  }
+
+  /** Append a result given as packed words */
+  public void add(long high, long low) {
+    ensureCapacity(size + 1);
+    words[2 * size] = high;
+    words[2 * size + 1] = low;
+    size++;
+  }
+
+  /** Append all results of a batch */
+  public void add(BatchResult batch) {
+    int n = batch.size();
+    ensureCapacity(size + n);
+    int[] language = batch.languages();
+    int[] language3 = batch.languages3();
+    int[] percent3 = batch.percents3();
+    double[] score3 = batch.normalizedScores3();
+    int[] textBytes = batch.textBytes();
+    boolean[] reliable = batch.reliable();
+    for (int i = 0; i < n; i++) {
+      int j = 3 * i;
+      words[2 * size] = CompactResult.packHigh(language[i], language3[j],
+          language3[j + 1], language3[j + 2], percent3[j], percent3[j + 1],
+          percent3[j + 2], reliable[i]);
+      words[2 * size + 1] = CompactResult.packLow(textBytes[i], score3[j],
+          score3[j + 1], score3[j + 2]);
+      size++;
+    }
+  }
+
+  /** Replace the result at index i */
+  public void set(int i, Result res) {
+    checkIndex(i);
+    words[2 * i] = CompactResult.packHigh(res);
+    words[2 * i + 1] = CompactResult.packLow(res);
+  }
+
+  private void checkIndex(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException(
+          "Index " + i + " out of bounds for size " + size);
+    }
+  }
+
+  public CompactResult get(int i) {
+    checkIndex(i);
+    return new CompactResult(words[2 * i], words[2 * i + 1]);
+  }
+
+  /** @return a new result holding the values of the result at index i */
+  public Result getResult(int i) {
+    checkIndex(i);
+    return CompactResult.toResult(words[2 * i], words[2 * i + 1]);
+  }
+
+  /** @return first word of the result at index i */
+  public long getHigh(int i) {
+    checkIndex(i);
+    return words[2 * i];
+  }
+
+  /** @return second word of the result at index i */
+  public long getLow(int i) {
+    checkIndex(i);
+    return words[2 * i + 1];
+  }
+
+  public int getLanguage(int i) {
+    return CompactResult.language(getHigh(i));
+  }
+
+  public int getLanguage(int i, int rank) {
+    return CompactResult.language(getHigh(i), rank);
+  }
+
+  public int getPercent(int i, int rank) {
+    return CompactResult.percent(getHigh(i), rank);
+  }
+
+  public double getNormalizedScore(int i, int rank) {
+    return CompactResult.normalizedScore(getLow(i), rank);
+  }
+
+  public int getTextBytes(int i) {
+    return CompactResult.textBytes(getLow(i));
+  }
+
+  public boolean isReliable(int i) {
+    return CompactResult.isReliable(getHigh(i));
+  }
+
+  /**
+   * Swap two results, e.g., to sort the column along with an array of keys
+   */
+  public void swap(int i, int j) {
+    checkIndex(i);
+    checkIndex(j);
+    long high = words[2 * i], low = words[2 * i + 1];
+    words[2 * i] = words[2 * j];
+    words[2 * i + 1] = words[2 * j + 1];
+    words[2 * j] = high;
+    words[2 * j + 1] = low;
+  }
+
+  /**
+   * @return the array backing the column, holding <code>2 * size()</code>
+   *         words, valid until results are added
+   */
+  public long[] words() {
+    return words;
+  }
+
+  /** Write all results (two words per result) to the buffer */
+  public void writeTo(LongBuffer buffer) {
+    buffer.put(words, 0, 2 * size);
+  }
+
+  /**
+   * Append results read from the buffer
+   *
+   * @param buffer
+   *          buffer holding two words per result
+   * @param numResults
+   *          number of results to read
+   */
+  public void readFrom(LongBuffer buffer, int numResults) {
+    ensureCapacity(size + numResults);
+    buffer.get(words, 2 * size, 2 * numResults);
+    size += numResults;
+  }
+
+  /** Remove all results, the capacity is kept */
+  public void clear() {
+    size = 0;
+  }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+/**
+ * Receives measurements of calls to CLD2, see
+ * {@link Cld2#setMetrics(DetectionMetrics)}. {@link DetectionStats} is a
+ * ready-to-use implementation, other implementations may forward the
+ * measurements to a metrics registry, e.g., Micrometer.
+ *
+ * Implementations must be thread-safe. The method is called after every call
+ * to CLD2 on the detecting thread and should neither block nor allocate
+ * memory.
+ */
+public interface DetectionMetrics {
+
+  /**
+   * Record one call to CLD2.
+   *
+   * @param bytes
+   *          number of input bytes passed to CLD2
+   * @param nanos
+   *          duration of the call in nanoseconds
+   * @param res
+   *          detection result, must not be retained
+   */
+  void record(int bytes, long nanos, Result res);
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detection metrics held in memory: call counts, bytes processed, latency
+ * histograms bucketed by input size, a histogram of the ratio of text bytes
+ * (as reported by CLD2) to input bytes, the number of unreliable results and
+ * of results with unknown language, and the number of results per language.
+ *
+ * All counters are {@link LongAdder}s and all histograms have fixed buckets,
+ * recording is thread-safe, scales with the number of threads and does not
+ * allocate memory.
+ */
+public class DetectionStats implements DetectionMetrics {
+
+  /** Upper limits (exclusive) of the input size buckets in bytes */
+  private static final int[] SIZE_LIMITS = { 1 << 8, 1 << 10, 1 << 12,
+      1 << 14, 1 << 16, 1 << 18, Integer.MAX_VALUE };
+
+  /**
+   * Number of latency buckets, bucket <code>i</code> holds calls which took
+   * less than <code>2^i</code> microseconds, the last bucket all longer calls
+   */
+  private static final int LATENCY_BUCKETS = 24;
+
+  /** Buckets of the text bytes ratio in steps of 10% */
+  private static final int RATIO_BUCKETS = 11;
+
+  private static final int NUM_LANGUAGES = Language.values().length;
+
+  private final LongAdder count = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder textBytes = new LongAdder();
+  private final LongAdder nanos = new LongAdder();
+  private final LongAdder unreliable = new LongAdder();
+  private final LongAdder unknown = new LongAdder();
+  private final LongAdder[][] latency = new LongAdder[SIZE_LIMITS.length][LATENCY_BUCKETS];
+  private final LongAdder[] textBytesRatio = new LongAdder[RATIO_BUCKETS];
+  /** results per language, the last element counts unlisted languages */
+  private final LongAdder[] languages = new LongAdder[NUM_LANGUAGES + 1];
+
+  public DetectionStats() {
+    for (LongAdder[] l : latency) {
+      fill(l);
+    }
+    fill(textBytesRatio);
+    fill(languages);
+  }
+
+  private static void fill(LongAdder[] adders) {
+    for (int i = 0; i < adders.length; i++) {
+      adders[i] = new LongAdder();
+    }
+  }
+
+  @Override
+  public void record(int bytes, long nanos, Result res) {
+    count.increment();
+    this.bytes.add(bytes);
+    this.nanos.add(nanos);
+    int text = res.getTextBytes();
+    textBytes.add(text);
+    latency[sizeBucket(bytes)][latencyBucket(nanos)].increment();
+    int ratio = bytes > 0 ? (int) (10L * text / bytes) : 0;
+    textBytesRatio[Math.max(0, Math.min(ratio, RATIO_BUCKETS - 1))]
+        .increment();
+    if (!res.isReliable()) {
+      unreliable.increment();
+    }
+    int lang = res.getLanguage();
+    if (lang == Language.UNKNOWN_LANGUAGE.value()) {
+      unknown.increment();
+    }
+    languages[lang >= 0 && lang < NUM_LANGUAGES ? lang : NUM_LANGUAGES]
+        .increment();
+  }
+
+  private static int sizeBucket(int bytes) {
+    int i = 0;
+    while (bytes >= SIZE_LIMITS[i] && i < SIZE_LIMITS.length - 1) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int latencyBucket(long nanos) {
+    long micros = nanos / 1000;
+    int i = 64 - Long.numberOfLeadingZeros(micros);
+    return Math.min(i, LATENCY_BUCKETS - 1);
+  }
+
+  /** @return number of calls to CLD2 */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /** @return number of input bytes passed to CLD2 */
+  public long getBytes() {
+    return bytes.sum();
+  }
+
+  /** @return sum of text bytes reported by CLD2, see {@link Result#getTextBytes()} */
+  public long getTextBytes() {
+    return textBytes.sum();
+  }
+
+  /** @return total duration of all calls to CLD2 in nanoseconds */
+  public long getNanos() {
+    return nanos.sum();
+  }
+
+  /** @return number of results not reliable, see {@link Result#isReliable()} */
+  public long getUnreliableCount() {
+    return unreliable.sum();
+  }
+
+  /** @return number of results with unknown language */
+  public long getUnknownCount() {
+    return unknown.sum();
+  }
+
+  /** @return number of results with the given best language */
+  public long getLanguageCount(Language language) {
+    return languages[language.value()].sum();
+  }
+
+  /**
+   * @return up to <code>n</code> best languages most often detected, most
+   *         frequent first
+   */
+  public Language[] getTopLanguages(int n) {
+    long[] counts = new long[NUM_LANGUAGES];
+    for (int i = 0; i < NUM_LANGUAGES; i++) {
+      counts[i] = languages[i].sum();
+    }
+    return Arrays.stream(Language.values()).filter(l -> counts[l.value()] > 0)
+        .sorted(Comparator.comparingLong((Language l) -> counts[l.value()])
+            .reversed())
+        .limit(n).toArray(Language[]::new);
+  }
+
+  /** @return number of input size buckets of the latency histograms */
+  public static int getNumSizeBuckets() {
+    return SIZE_LIMITS.length;
+  }
+
+  /**
+   * @return upper limit (exclusive) in bytes of an input size bucket, the last
+   *         bucket is unbounded
+   */
+  public static int getSizeBucketLimit(int sizeBucket) {
+    return SIZE_LIMITS[sizeBucket];
+  }
+
+  /**
+   * Latency histogram of calls with input size in the given bucket. Element
+   * <code>i</code> counts calls which took less than <code>2^i</code>
+   * microseconds (and not less than <code>2^(i-1)</code>), the last element
+   * counts all longer calls.
+   *
+   * @param sizeBucket
+   *          input size bucket, see {@link #getSizeBucketLimit(int)}
+   * @return latency histogram
+   */
+  public long[] getLatencyHistogram(int sizeBucket) {
+    return sums(latency[sizeBucket]);
+  }
+
+  /**
+   * Histogram of the ratio of text bytes to input bytes, element
+   * <code>i</code> counts calls with a ratio of <code>i*10</code> up to
+   * (excluding) <code>(i+1)*10</code> percent
+   */
+  public long[] getTextBytesRatioHistogram() {
+    return sums(textBytesRatio);
+  }
+
+  private static long[] sums(LongAdder[] adders) {
+    long[] res = new long[adders.length];
+    for (int i = 0; i < adders.length; i++) {
+      res[i] = adders[i].sum();
+    }
+    return res;
+  }
+
+  /**
+   * Reset all counters. Not atomic, calls recorded concurrently may be
+   * partially lost.
+   */
+  public void reset() {
+    for (LongAdder a : new LongAdder[] { count, bytes, textBytes, nanos,
+        unreliable, unknown }) {
+      a.reset();
+    }
+    for (LongAdder[] l : latency) {
+      for (LongAdder a : l) {
+        a.reset();
+      }
+    }
+    for (LongAdder a : textBytesRatio) {
+      a.reset();
+    }
+    for (LongAdder a : languages) {
+      a.reset();
+    }
+  }
+
+  @Override
+  public String toString() {
+    long n = getCount();
+    StringBuilder sb = new StringBuilder();
+    sb.append("calls: ").append(n);
+    sb.append(", bytes: ").append(getBytes());
+    sb.append(", text bytes: ").append(getTextBytes());
+    sb.append(", mean latency (us): ")
+        .append(n == 0 ? 0 : getNanos() / n / 1000);
+    sb.append(", unreliable: ").append(getUnreliableCount());
+    sb.append(", unknown: ").append(getUnknownCount());
+    sb.append(", top languages:");
+    for (Language lang : getTopLanguages(5)) {
+      sb.append(' ').append(lang.getCode()).append('=')
+          .append(getLanguageCount(lang));
+    }
+    return sb.toString();
+  }
+
+}
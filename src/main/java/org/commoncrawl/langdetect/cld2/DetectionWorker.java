@@ -0,0 +1,202 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Detection worker running in a child process of {@link IsolatedDetector}.
+ * Requests are read from stdin and results written to stdout, both in a
+ * compact binary protocol:
+ *
+ * <pre>
+ * request:  byte    opcode (1 = detect)
+ *           int     flags
+ *           boolean isPlainText
+ *           hints   boolean present, if true: string content language,
+ *                   string top-level domain, int encoding, int language
+ *           int     length, followed by the UTF-8-encoded input bytes
+ * response: int     language
+ *           int[3]  language3
+ *           int[3]  percent3
+ *           double[3] normalizedScore3
+ *           int     textBytes
+ *           boolean isReliable
+ * string:   int     length (-1 if null), followed by UTF-8 bytes
+ * </pre>
+ *
+ * Requests are processed in order. The results of all previous requests are
+ * flushed before a request is processed, so that a request crashing the
+ * worker can be identified as the first one without result. The worker exits
+ * when stdin is closed.
+ */
+class DetectionWorker {
+
+  static final byte DETECT = 1;
+
+  public static void main(String[] args) throws IOException {
+    OutputStream out = new FileOutputStream(FileDescriptor.out);
+    // stdout is the protocol channel, redirect any other output
+    System.setOut(System.err);
+    new DetectionWorker().serve(System.in, out);
+  }
+
+  void serve(InputStream in, OutputStream out) throws IOException {
+    DataInputStream din = new DataInputStream(
+        new BufferedInputStream(in, 1 << 16));
+    DataOutputStream dout = new DataOutputStream(
+        new BufferedOutputStream(out, 1 << 16));
+    byte[] buf = new byte[4096];
+    Result res = new Result();
+    try (Detector detector = new Detector()) {
+      int opcode;
+      while ((opcode = din.read()) != -1) {
+        if (opcode != DETECT) {
+          throw new IOException("Unknown request: " + opcode);
+        }
+        int flags = din.readInt();
+        boolean isPlainText = din.readBoolean();
+        CLDHints hints = readHints(din);
+        int len = din.readInt();
+        if (buf.length < len) {
+          buf = new byte[Math.max(len, 2 * buf.length)];
+        }
+        din.readFully(buf, 0, len);
+        // results of all previous requests must be sent before calling CLD2
+        // which may crash
+        dout.flush();
+        writeResult(dout,
+            detect(detector, res, buf, len, hints, flags, isPlainText));
+        if (din.available() == 0) {
+          dout.flush();
+        }
+      }
+    }
+    dout.flush();
+  }
+
+  /** Detect the language of one request */
+  protected Result detect(Detector detector, Result reuse, byte[] buf,
+      int len, CLDHints hints, int flags, boolean isPlainText) {
+    return detector.detectInto(reuse, buf, 0, len, hints, flags,
+        isPlainText);
+  }
+
+  /** @return encoded hints, see {@link #writeRequest(DataOutputStream, byte[], byte[], int, int, int, boolean)} */
+  static byte[] encodeHints(CLDHints hints) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeBoolean(hints != null);
+      if (hints != null) {
+        writeString(out, hints.getContentLanguageHint());
+        writeString(out, hints.getTopLevelDomainHint());
+        out.writeInt(hints.getEncodingHint());
+        out.writeInt(hints.getLanguageHint());
+      }
+    } catch (IOException e) {
+      // not thrown by ByteArrayOutputStream
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  static void writeRequest(DataOutputStream out, byte[] hints, byte[] buf,
+      int off, int len, int flags, boolean isPlainText) throws IOException {
+    out.writeByte(DETECT);
+    out.writeInt(flags);
+    out.writeBoolean(isPlainText);
+    out.write(hints);
+    out.writeInt(len);
+    out.write(buf, off, len);
+  }
+
+  private static CLDHints readHints(DataInputStream in) throws IOException {
+    if (!in.readBoolean()) {
+      return null;
+    }
+    String contentLanguage = readString(in);
+    String tld = readString(in);
+    int encoding = in.readInt();
+    int language = in.readInt();
+    return CLDHints.intern(contentLanguage, tld, encoding, language);
+  }
+
+  private static void writeString(DataOutputStream out, String s)
+      throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int len = in.readInt();
+    if (len < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[len];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static void writeResult(DataOutputStream out, Result res)
+      throws IOException {
+    out.writeInt(res.language);
+    for (int i = 0; i < 3; i++) {
+      out.writeInt(res.language3[i]);
+    }
+    for (int i = 0; i < 3; i++) {
+      out.writeInt(res.percent3[i]);
+    }
+    for (int i = 0; i < 3; i++) {
+      out.writeDouble(res.normalizedScore3[i]);
+    }
+    out.writeInt(res.textBytes[0]);
+    out.writeBoolean(res.isReliable[0]);
+  }
+
+  static Result readResult(DataInputStream in) throws IOException {
+    Result res = new Result();
+    res.setLanguage(in.readInt());
+    for (int i = 0; i < 3; i++) {
+      res.language3[i] = in.readInt();
+    }
+    for (int i = 0; i < 3; i++) {
+      res.percent3[i] = in.readInt();
+    }
+    for (int i = 0; i < 3; i++) {
+      res.normalizedScore3[i] = in.readDouble();
+    }
+    res.textBytes[0] = in.readInt();
+    res.isReliable[0] = in.readBoolean();
+    return res;
+  }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * Language detector holding all memory required to call CLD2: a growable
+ * native buffer for the input text, the native output arguments and the
+ * native hints structure. All memory is reused, and together with a reused
+ * {@link Result}, see {@link #detectInto(Result, byte[], int, int, CLDHints, int, boolean)},
+ * detecting the language of many documents does not allocate memory on the
+ * Java heap once the buffers have grown to the size of the largest document.
+ * This holds for the direct mapping and the Foreign Function &amp; Memory
+ * binding, see {@link Cld2Binding}. The JNA interface mapping still allocates
+ * the arguments of the proxy call.
+ *
+ * A detector is not thread-safe, use one detector per thread. Call
+ * {@link #close()} to free the native memory.
+ */
+public class Detector implements Closeable {
+
+  // layout of the native output arguments
+  private static final int LANGUAGE3 = 0;
+  private static final int PERCENT3 = 12;
+  private static final int TEXT_BYTES = 24;
+  private static final int IS_RELIABLE = 28;
+  private static final int NORMALIZED_SCORE3 = 32;
+  private static final int OUTPUT_SIZE = 56;
+
+  // layout of the native CLDHints struct
+  private static final int HINTS_CONTENT_LANGUAGE = 0;
+  private static final int HINTS_TLD = Native.POINTER_SIZE;
+  private static final int HINTS_ENCODING = 2 * Native.POINTER_SIZE;
+  private static final int HINTS_LANGUAGE = HINTS_ENCODING + 4;
+  private static final int HINTS_SIZE = HINTS_LANGUAGE + 4;
+
+  private final Cld2Binding binding;
+
+  private final NativeBuffer input = new NativeBuffer();
+  /** points into the last direct buffer, reused to avoid allocations */
+  private final Pointer inputPointer = new Pointer(0);
+  private ByteBuffer lastDirectBuffer;
+  private long lastDirectBufferAddress;
+
+  private Memory output = new Memory(OUTPUT_SIZE);
+  private final Pointer language3 = output.share(LANGUAGE3, 12);
+  private final Pointer percent3 = output.share(PERCENT3, 12);
+  private final Pointer textBytes = output.share(TEXT_BYTES, 4);
+  private final Pointer isReliable = output.share(IS_RELIABLE, 1);
+  private final Pointer normalizedScore3 = output.share(NORMALIZED_SCORE3, 24);
+
+  private Memory hints = new Memory(HINTS_SIZE);
+  private final HintString contentLanguageHint = new HintString(
+      HINTS_CONTENT_LANGUAGE);
+  private final HintString tldHint = new HintString(HINTS_TLD);
+
+  /** Native string referenced by the native hints, rewritten only if changed */
+  private class HintString {
+    private final int offset;
+    private String value;
+    private Memory memory;
+
+    HintString(int offset) {
+      this.offset = offset;
+      hints.setPointer(offset, null);
+    }
+
+    void set(String s) {
+      if (s == null ? value == null : s.equals(value)) {
+        return;
+      }
+      if (memory != null) {
+        memory.close();
+        memory = null;
+      }
+      if (s != null) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        memory = new Memory(bytes.length + 1);
+        memory.write(0, bytes, 0, bytes.length);
+        memory.setByte(bytes.length, (byte) 0);
+      }
+      hints.setPointer(offset, memory);
+      value = s;
+    }
+
+    void close() {
+      if (memory != null) {
+        memory.close();
+        memory = null;
+      }
+      value = null;
+    }
+  }
+
+  public Detector() {
+    this.binding = Cld2.BINDING;
+  }
+
+  /**
+   * Detect language of a string, the string is encoded as UTF-8 directly into
+   * the native input buffer. Unpaired surrogates are replaced by U+FFFD.
+   *
+   * @param reuse
+   *          result to be filled, if null a new result is created
+   * @param text
+   *          input text
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @return detection result, either the reused or a new result
+   */
+  public Result detectInto(Result reuse, String text, CLDHints hints,
+      int flags, boolean isPlainText) {
+    int len = input.putUtf8(text);
+    return detect(reuse, input.pointer(), len, hints, flags, isPlainText);
+  }
+
+  /**
+   * Detect language of a slice of a byte array. The slice is copied into the
+   * native input buffer.
+   *
+   * @param reuse
+   *          result to be filled, if null a new result is created
+   * @param buf
+   *          input bytes holding UTF-8-encoded text
+   * @param off
+   *          offset of the text in the byte array
+   * @param len
+   *          length of the text in bytes<br/>
+   *          Note that CLD2 may raise a segmentation fault if the bytes are
+   *          not proper UTF-8.
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @return detection result, either the reused or a new result
+   */
+  public Result detectInto(Result reuse, byte[] buf, int off, int len,
+      CLDHints hints, int flags, boolean isPlainText) {
+    Cld2.checkBounds(off, len, buf.length);
+    return detect(reuse, input.put(buf, off, len), len, hints, flags,
+        isPlainText);
+  }
+
+  /**
+   * Detect language of a slice of a byte buffer. A direct buffer is passed in
+   * place to CLD2, otherwise the slice is copied into the native input
+   * buffer.
+   *
+   * @param reuse
+   *          result to be filled, if null a new result is created
+   * @param buffer
+   *          buffer holding UTF-8-encoded text. Position and limit of the
+   *          buffer are not modified.
+   * @param offset
+   *          absolute offset of the text in the buffer
+   * @param length
+   *          length of the text in bytes<br/>
+   *          Note that CLD2 may raise a segmentation fault if the bytes are
+   *          not proper UTF-8.
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @return detection result, either the reused or a new result
+   */
+  public Result detectInto(Result reuse, ByteBuffer buffer, int offset,
+      int length, CLDHints hints, int flags, boolean isPlainText) {
+    Cld2.checkBounds(offset, length, buffer.limit());
+    if (!buffer.isDirect()) {
+      if (!buffer.hasArray()) {
+        throw new IllegalArgumentException(
+            "Buffer is neither direct nor backed by an accessible array");
+      }
+      return detectInto(reuse, buffer.array(), buffer.arrayOffset() + offset,
+          length, hints, flags, isPlainText);
+    }
+    if (buffer != lastDirectBuffer) {
+      lastDirectBufferAddress = Pointer
+          .nativeValue(Native.getDirectBufferPointer(buffer));
+      lastDirectBuffer = buffer;
+    }
+    Pointer.nativeValue(inputPointer, lastDirectBufferAddress + offset);
+    return detect(reuse, inputPointer, length, hints, flags, isPlainText);
+  }
+
+  /**
+   * Detect language of text in a legacy (non-UTF-8) charset. The text is
+   * transcoded directly into the native input buffer, see
+   * {@link Cld2#detect(byte[], int, int, Charset, CLDHints, int, boolean)}.
+   *
+   * @param reuse
+   *          result to be filled, if null a new result is created
+   * @param raw
+   *          input bytes holding text encoded in the given charset
+   * @param off
+   *          offset of the text in the byte array
+   * @param len
+   *          length of the text in bytes
+   * @param charset
+   *          charset of the input bytes, also used to set the encoding hint
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text document or HTML page
+   * @return detection result, either the reused or a new result
+   */
+  public Result detectInto(Result reuse, byte[] raw, int off, int len,
+      Charset charset, CLDHints hints, int flags, boolean isPlainText) {
+    Cld2.checkBounds(off, len, raw.length);
+    int length = input.putDecoded(raw, off, len, charset);
+    return detect(reuse, input.pointer(), length,
+        CLDHints.withEncodingHint(hints, charset), flags, isPlainText);
+  }
+
+  public Result detect(String text) {
+    return detectInto(null, text, CLDHints.NO_HINTS, 0, true);
+  }
+
+  public Result detect(byte[] buf, int off, int len) {
+    return detectInto(null, buf, off, len, CLDHints.NO_HINTS, 0, true);
+  }
+
+  public Result detect(ByteBuffer buffer, int offset, int length) {
+    return detectInto(null, buffer, offset, length, CLDHints.NO_HINTS, 0,
+        true);
+  }
+
+  private Pointer writeHints(CLDHints h) {
+    if (h == null) {
+      return null;
+    }
+    if (h.isShared()) {
+      // already in native memory
+      return h.getPointer();
+    }
+    contentLanguageHint.set(h.getContentLanguageHint());
+    tldHint.set(h.getTopLevelDomainHint());
+    hints.setInt(HINTS_ENCODING, h.getEncodingHint());
+    hints.setInt(HINTS_LANGUAGE, h.getLanguageHint());
+    return hints;
+  }
+
+  private Result detect(Result reuse, Pointer buffer, int length,
+      CLDHints h, int flags, boolean isPlainText) {
+    if (output == null) {
+      throw new IllegalStateException("Detector is closed");
+    }
+    DetectionMetrics m = Cld2.getMetrics();
+    long start = m == null ? 0 : System.nanoTime();
+    Result res = reuse;
+    if (res == null) {
+      res = new Result();
+    }
+    int language = binding.detect(buffer, length, isPlainText, writeHints(h),
+        flags, language3, percent3, normalizedScore3, textBytes, isReliable);
+    output.read(LANGUAGE3, res.language3, 0, 3);
+    output.read(PERCENT3, res.percent3, 0, 3);
+    output.read(NORMALIZED_SCORE3, res.normalizedScore3, 0, 3);
+    res.textBytes[0] = output.getInt(TEXT_BYTES);
+    res.isReliable[0] = output.getByte(IS_RELIABLE) != 0;
+    res.setLanguage(language);
+    res.setBytesExamined(length);
+    if (m != null) {
+      m.record(length, System.nanoTime() - start, res);
+    }
+    return res;
+  }
+
+  /** Free the native memory held by this detector. */
+  @Override
+  public void close() {
+    input.close();
+    contentLanguageHint.close();
+    tldHint.close();
+    if (hints != null) {
+      hints.close();
+      hints = null;
+    }
+    if (output != null) {
+      output.close();
+      output = null;
+    }
+    lastDirectBuffer = null;
+  }
+
+}
@@ -178,73 +178,94 @@ public enum Encoding {
   protected static final Logger LOG = LoggerFactory
       .getLogger(MethodHandles.lookup().lookupClass());
 
-  /** Map Java charsets to CLD2 encodings */
-  private static Map<Charset, Encoding> charset2encoding = new HashMap<>();
-
-  static {
-
-    // fix mappings
-    charset2encoding.put(StandardCharsets.US_ASCII, Encoding.ASCII_7BIT);
-    charset2encoding.put(Charset.forName("GB2312"), Encoding.CHINESE_GB);
-    charset2encoding.put(Charset.forName("x-windows-950"), Encoding.CHINESE_BIG5_CP950);
-    charset2encoding.put(Charset.forName("windows-31j"), Encoding.JAPANESE_CP932);
-
-    // try to match every Charset to one Encoding by Charset name or alias
-    Map<String, Charset> charsetNames = new HashMap<>();
-    Map<Encoding, Charset> knownEncodings = new HashMap<>();
-    Pattern languagePrefix = Pattern
-        .compile("(?i)^(?:chinese|czech|japanese|korean|msft|russian|tam(?:il)?)_");
-    for (Entry<String, Charset> c : Charset.availableCharsets().entrySet()) {
-      String name = c.getKey();
-      Charset cs = c.getValue();
-      if (charset2encoding.containsKey(cs)) {
-        knownEncodings.put(charset2encoding.get(cs), cs);
-        continue;
-      }
-      charsetNames.put(name, cs);
-      for (String alias : cs.aliases()) {
-        charsetNames.put(alias, cs);
-      }
-      String alias = name.replaceAll("[_-]", "")
-          .toLowerCase(Locale.ROOT);
-      if (charsetNames.containsKey(alias) && cs != charsetNames.get(alias)) {
-        LOG.debug("Clash charset alias: {}", alias);
-      } else {
-        charsetNames.put(alias, cs);
-      }
-    }
-    for (Encoding enc : Encoding.values()) {
-      if (enc == NUM_ENCODINGS || enc == UNKNOWN_ENCODING
-          || knownEncodings.containsKey(enc)) {
-        continue;
+  /** All encodings, indexed by value (same as ordinal) */
+  private static final Encoding[] VALUES = values();
+
+  /**
+   * Map Java charsets to CLD2 encodings. Matching all available charsets and
+   * their aliases is expensive, the map is built on first use of
+   * {@link Encoding#convert(Charset)}.
+   */
+  private static class CharsetMapping {
+
+    private static final Map<Charset, Encoding> charset2encoding = new HashMap<>();
+
+    static {
+      // fix mappings
+      charset2encoding.put(StandardCharsets.US_ASCII, Encoding.ASCII_7BIT);
+      charset2encoding.put(Charset.forName("GB2312"), Encoding.CHINESE_GB);
+      charset2encoding.put(Charset.forName("x-windows-950"), Encoding.CHINESE_BIG5_CP950);
+      charset2encoding.put(Charset.forName("windows-31j"), Encoding.JAPANESE_CP932);
+
+      // try to match every Charset to one Encoding by Charset name or alias
+      Map<String, Charset> charsetNames = new HashMap<>();
+      Map<Encoding, Charset> knownEncodings = new HashMap<>();
+      Pattern languagePrefix = Pattern
+          .compile("(?i)^(?:chinese|czech|japanese|korean|msft|russian|tam(?:il)?)_");
+      for (Entry<String, Charset> c : Charset.availableCharsets().entrySet()) {
+        String name = c.getKey();
+        Charset cs = c.getValue();
+        if (charset2encoding.containsKey(cs)) {
+          knownEncodings.put(charset2encoding.get(cs), cs);
+          continue;
+        }
+        charsetNames.put(name, cs);
+        for (String alias : cs.aliases()) {
+          charsetNames.put(alias, cs);
+        }
+        String alias = alias(name);
+        if (charsetNames.containsKey(alias) && cs != charsetNames.get(alias)) {
+          LOG.debug("Clash charset alias: {}", alias);
+        } else {
+          charsetNames.put(alias, cs);
+        }
       }
-      String alias = enc.name().replaceAll("_", "").toLowerCase(Locale.ROOT);
-      Charset cs = null;
-      if (charsetNames.containsKey(enc.name())) {
-        cs = charsetNames.get(enc.name());
-      } else if (charsetNames.containsKey(alias)) {
-        cs = charsetNames.get(alias);
-      } else {
-        Matcher m = languagePrefix.matcher(enc.name());
-        if (m.find()) {
-          alias = m.replaceFirst("").replaceAll("[_-]", "")
-              .toLowerCase(Locale.ROOT);
-          if (charsetNames.containsKey(alias)) {
-            cs = charsetNames.get(alias);
+      for (Encoding enc : VALUES) {
+        if (enc == NUM_ENCODINGS || enc == UNKNOWN_ENCODING
+            || knownEncodings.containsKey(enc)) {
+          continue;
+        }
+        String alias = alias(enc.name());
+        Charset cs = null;
+        if (charsetNames.containsKey(enc.name())) {
+          cs = charsetNames.get(enc.name());
+        } else if (charsetNames.containsKey(alias)) {
+          cs = charsetNames.get(alias);
+        } else {
+          Matcher m = languagePrefix.matcher(enc.name());
+          if (m.find()) {
+            alias = alias(m.replaceFirst(""));
+            if (charsetNames.containsKey(alias)) {
+              cs = charsetNames.get(alias);
+            }
           }
         }
-      }
-      if (cs == null) {
-        // last trial, will probably fail
-        try {
-          cs = Charset.forName(enc.name());
-        } catch(Exception e) {
-          LOG.debug("No charset found for {}: {}", enc.name(), e.getMessage());
+        if (cs == null) {
+          // last trial, will probably fail
+          try {
+            cs = Charset.forName(enc.name());
+          } catch(Exception e) {
+            LOG.debug("No charset found for {}: {}", enc.name(), e.getMessage());
+          }
+        }
+        if (cs != null) {
+          charset2encoding.put(cs, enc);
         }
       }
-      if (cs != null) {
-        charset2encoding.put(cs, enc);
+    }
+
+    /**
+     * @return lower-cased charset name with underscores and hyphens removed
+     */
+    private static String alias(String name) {
+      StringBuilder sb = new StringBuilder(name.length());
+      for (int i = 0; i < name.length(); i++) {
+        char c = name.charAt(i);
+        if (c != '_' && c != '-') {
+          sb.append(c);
+        }
       }
+      return sb.toString().toLowerCase(Locale.ROOT);
     }
   }
 
@@ -262,14 +283,15 @@ public enum Encoding {
 
 
   public static Encoding convert(Charset charset) {
-    if (charset2encoding.containsKey(charset)) {
-      return charset2encoding.get(charset);
+    Encoding encoding = CharsetMapping.charset2encoding.get(charset);
+    if (encoding != null) {
+      return encoding;
     }
     return Encoding.UNKNOWN_ENCODING;
   }
 
   public static Encoding get(int enc) {
-    return Encoding.values()[enc];
+    return VALUES[enc];
   }
 
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+/**
+ * Binding to CLD2 using the Foreign Function &amp; Memory API
+ * (<code>java.lang.foreign</code>). The API requires Java 22 or newer, the
+ * binding is shipped in the multi-release JAR as
+ * <code>META-INF/versions/22/org/commoncrawl/langdetect/cld2/ForeignBinding.class</code>,
+ * see <code>src/main/java22/</code>. This class is loaded on older Java
+ * versions and only signals that the binding is not available.
+ */
+final class ForeignBinding {
+
+  private ForeignBinding() {
+  }
+
+  static Cld2Binding create() {
+    throw new UnsupportedOperationException(
+        "Foreign Function & Memory API binding requires Java 22 or newer");
+  }
+
+}
@@ -0,0 +1,773 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Streaming extractor of the text of HTML pages, to pass only the text (and
+ * not the markup) as plain text to CLD2. Tags, comments and declarations are
+ * removed, the content of <code>&lt;script&gt;</code>,
+ * <code>&lt;style&gt;</code> and <code>&lt;svg&gt;</code> elements is
+ * skipped, character references (entities) are decoded and white space is
+ * collapsed. Values of <code>lang</code> attributes are kept as content
+ * language hints, see {@link #getLanguageHints()}.
+ *
+ * The input must be UTF-8. It can be passed in pieces of any size, see
+ * {@link #write(byte[], int, int)}, the extractor keeps its state between
+ * calls. The extracted text is written into a reused byte array, no memory is
+ * allocated per page once the array has grown to the size of the largest
+ * text. An extractor is not thread-safe.
+ */
+public class HtmlTextExtractor {
+
+  // states of the parser
+  private static final int TEXT = 0;
+  private static final int TAG_OPEN = 1;
+  private static final int TAG_NAME = 2;
+  private static final int IN_TAG = 3;
+  private static final int ATTR_NAME = 4;
+  private static final int AFTER_ATTR_NAME = 5;
+  private static final int BEFORE_ATTR_VALUE = 6;
+  private static final int ATTR_VALUE_DOUBLE_QUOTED = 7;
+  private static final int ATTR_VALUE_SINGLE_QUOTED = 8;
+  private static final int ATTR_VALUE_UNQUOTED = 9;
+  private static final int MARKUP_DECLARATION = 10;
+  private static final int COMMENT = 11;
+  private static final int DECLARATION = 12;
+  private static final int RAW_TEXT = 13;
+  private static final int ENTITY = 14;
+
+  /** longer tag and attribute names are not stored, they match nothing */
+  private static final int MAX_NAME = 16;
+  private static final int MAX_ENTITY = 32;
+  private static final int MAX_LANGUAGE = 32;
+  private static final int MAX_LANGUAGES = 4;
+
+  /** elements whose content is skipped */
+  private static final byte[][] SKIPPED = { ascii("script"), ascii("style"),
+      ascii("svg") };
+  private static final byte[] LANG = ascii("lang");
+  private static final byte[] XML_LANG = ascii("xml:lang");
+
+  /** names of character entity references, sorted */
+  private static final byte[][] ENTITY_NAMES;
+  /** code points of the entity references */
+  private static final int[] ENTITY_CODE_POINTS;
+
+  static {
+    // ISO-8859-1 characters (U+00A0 - U+00FF)
+    String[] latin1 = ("nbsp iexcl cent pound curren yen brvbar sect uml copy"
+        + " ordf laquo not shy reg macr deg plusmn sup2 sup3 acute micro para"
+        + " middot cedil sup1 ordm raquo frac14 frac12 frac34 iquest Agrave"
+        + " Aacute Acirc Atilde Auml Aring AElig Ccedil Egrave Eacute Ecirc Euml"
+        + " Igrave Iacute Icirc Iuml ETH Ntilde Ograve Oacute Ocirc Otilde Ouml"
+        + " times Oslash Ugrave Uacute Ucirc Uuml Yacute THORN szlig agrave"
+        + " aacute acirc atilde auml aring aelig ccedil egrave eacute ecirc euml"
+        + " igrave iacute icirc iuml eth ntilde ograve oacute ocirc otilde ouml"
+        + " divide oslash ugrave uacute ucirc uuml yacute thorn yuml").split(" ");
+    // markup-significant and other frequently used characters
+    String[] other = ("quot 34 amp 38 apos 39 lt 60 gt 62 OElig 338 oelig 339"
+        + " Scaron 352 scaron 353 Yuml 376 fnof 402 circ 710 tilde 732"
+        + " ensp 8194 emsp 8195 thinsp 8201 zwnj 8204 zwj 8205 lrm 8206"
+        + " rlm 8207 ndash 8211 mdash 8212 lsquo 8216 rsquo 8217 sbquo 8218"
+        + " ldquo 8220 rdquo 8221 bdquo 8222 dagger 8224 Dagger 8225"
+        + " bull 8226 hellip 8230 permil 8240 prime 8242 Prime 8243"
+        + " lsaquo 8249 rsaquo 8250 oline 8254 euro 8364 trade 8482")
+        .split(" ");
+    int n = latin1.length + other.length / 2;
+    String[] names = new String[n];
+    int[] codePoints = new int[n];
+    for (int i = 0; i < latin1.length; i++) {
+      names[i] = latin1[i];
+      codePoints[i] = 0xa0 + i;
+    }
+    for (int i = 0; i < other.length; i += 2) {
+      names[latin1.length + i / 2] = other[i];
+      codePoints[latin1.length + i / 2] = Integer.parseInt(other[i + 1]);
+    }
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
+    ENTITY_NAMES = new byte[n][];
+    ENTITY_CODE_POINTS = new int[n];
+    for (int i = 0; i < n; i++) {
+      ENTITY_NAMES[i] = ascii(names[order[i]]);
+      ENTITY_CODE_POINTS[i] = codePoints[order[i]];
+    }
+  }
+
+  private int state = TEXT;
+
+  private byte[] text = new byte[4096];
+  private int length;
+
+  private final byte[] name = new byte[MAX_NAME];
+  private int nameLength;
+  private boolean endTag;
+  private boolean selfClosing;
+  /** the current tag starts an element whose content is skipped */
+  private byte[] skippedElement;
+  /** name of the element whose content is skipped */
+  private byte[] rawTextElement;
+  /** number of bytes of the end tag of the skipped element matched so far */
+  private int rawTextMatched;
+
+  private boolean langAttribute;
+  private final byte[] langValue = new byte[MAX_LANGUAGE];
+  private int langValueLength;
+  /** comma-separated content language hints */
+  private final byte[] languages = new byte[MAX_LANGUAGES * (MAX_LANGUAGE + 1)];
+  private int languagesLength;
+  private int numLanguages;
+
+  private final byte[] entity = new byte[MAX_ENTITY];
+  private int entityLength;
+
+  private int commentDashes;
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /** Reset the extractor to process the next page. */
+  public void reset() {
+    state = TEXT;
+    length = 0;
+    nameLength = 0;
+    endTag = false;
+    selfClosing = false;
+    skippedElement = null;
+    rawTextElement = null;
+    rawTextMatched = 0;
+    langAttribute = false;
+    langValueLength = 0;
+    languagesLength = 0;
+    numLanguages = 0;
+    entityLength = 0;
+    commentDashes = 0;
+  }
+
+  /**
+   * Extract the text of a complete HTML page.
+   *
+   * @param html
+   *          UTF-8-encoded HTML page
+   * @param off
+   *          offset of the page in the array
+   * @param len
+   *          length of the page in bytes
+   * @return length of the extracted text, see {@link #getText()}
+   */
+  public int extract(byte[] html, int off, int len) {
+    reset();
+    write(html, off, len);
+    finish();
+    return length;
+  }
+
+  /**
+   * Extract the text of a complete HTML page and detect its language. The
+   * extracted text is passed as plain text to CLD2. If the hints do not hold
+   * a content language hint, the values of <code>lang</code> attributes are
+   * used as content language hint.
+   *
+   * @param html
+   *          UTF-8-encoded HTML page
+   * @param off
+   *          offset of the page in the array
+   * @param len
+   *          length of the page in bytes
+   * @param hints
+   *          external hints (outside context) from context of web page
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @return detection result
+   */
+  public Result detect(byte[] html, int off, int len, CLDHints hints,
+      int flags) {
+    Cld2.checkBounds(off, len, html.length);
+    extract(html, off, len);
+    return Cld2.detect(text, 0, length, withLanguageHints(hints), flags, true);
+  }
+
+  /**
+   * @return hints with the content language hint set from the
+   *         <code>lang</code> attributes, see {@link #getLanguageHints()}, if
+   *         the hints do not hold a content language hint
+   */
+  CLDHints withLanguageHints(CLDHints hints) {
+    if (numLanguages == 0
+        || (hints != null && hints.getContentLanguageHint() != null)) {
+      return hints;
+    }
+    if (hints == null) {
+      hints = CLDHints.NO_HINTS;
+    }
+    return CLDHints.intern(getLanguageHints(),
+        hints.getTopLevelDomainHint(), hints.getEncodingHint(),
+        hints.getLanguageHint());
+  }
+
+  /**
+   * Pass the next piece of the HTML page to the extractor.
+   *
+   * @param html
+   *          bytes of the UTF-8-encoded HTML page, a piece may end anywhere,
+   *          even within a tag or a multi-byte character
+   * @param off
+   *          offset of the piece in the array
+   * @param len
+   *          length of the piece in bytes
+   */
+  public void write(byte[] html, int off, int len) {
+    Cld2.checkBounds(off, len, html.length);
+    // decoded entities are not longer than the references, but a reference
+    // or a '<' may be pending from the previous piece
+    ensureCapacity((long) length + len + MAX_ENTITY + 2);
+    int end = off + len;
+    for (int i = off; i < end; i++) {
+      int b = html[i] & 0xff;
+      switch (state) {
+      case TEXT:
+        if (b == '<') {
+          state = TAG_OPEN;
+          nameLength = 0;
+          endTag = false;
+          selfClosing = false;
+        } else if (b == '&') {
+          state = ENTITY;
+          entityLength = 0;
+        } else if (isSpace(b)) {
+          appendSpace();
+        } else if (b != 0) {
+          text[length++] = (byte) b;
+        }
+        break;
+      case TAG_OPEN:
+        if (isLetter(b)) {
+          state = TAG_NAME;
+          appendName(b);
+        } else if (b == '/' && !endTag) {
+          endTag = true;
+        } else if (b == '!' && !endTag) {
+          state = MARKUP_DECLARATION;
+          commentDashes = 0;
+        } else if (b == '?' || endTag) {
+          // processing instruction or invalid end tag
+          state = b == '>' ? TEXT : DECLARATION;
+        } else {
+          // not a tag
+          text[length++] = '<';
+          state = TEXT;
+          i--;
+        }
+        break;
+      case TAG_NAME:
+        if (b == '>') {
+          endOfTagName();
+          endOfTag();
+        } else if (isSpace(b) || b == '/') {
+          endOfTagName();
+          state = IN_TAG;
+          selfClosing = b == '/';
+        } else {
+          appendName(b);
+        }
+        break;
+      case IN_TAG:
+        if (b == '>') {
+          endOfTag();
+        } else if (b == '/') {
+          selfClosing = true;
+        } else if (!isSpace(b)) {
+          state = ATTR_NAME;
+          nameLength = 0;
+          selfClosing = false;
+          appendName(b);
+        }
+        break;
+      case ATTR_NAME:
+        if (b == '=') {
+          startAttributeValue();
+        } else if (b == '>') {
+          endOfTag();
+        } else if (b == '/') {
+          state = IN_TAG;
+          selfClosing = true;
+        } else if (isSpace(b)) {
+          state = AFTER_ATTR_NAME;
+        } else {
+          appendName(b);
+        }
+        break;
+      case AFTER_ATTR_NAME:
+        if (b == '=') {
+          startAttributeValue();
+        } else if (b == '>') {
+          endOfTag();
+        } else if (b == '/') {
+          state = IN_TAG;
+          selfClosing = true;
+        } else if (!isSpace(b)) {
+          state = ATTR_NAME;
+          nameLength = 0;
+          appendName(b);
+        }
+        break;
+      case BEFORE_ATTR_VALUE:
+        if (b == '"') {
+          state = ATTR_VALUE_DOUBLE_QUOTED;
+        } else if (b == '\'') {
+          state = ATTR_VALUE_SINGLE_QUOTED;
+        } else if (b == '>') {
+          endOfTag();
+        } else if (!isSpace(b)) {
+          state = ATTR_VALUE_UNQUOTED;
+          appendLanguage(b);
+        }
+        break;
+      case ATTR_VALUE_DOUBLE_QUOTED:
+      case ATTR_VALUE_SINGLE_QUOTED:
+        if (b == (state == ATTR_VALUE_DOUBLE_QUOTED ? '"' : '\'')) {
+          endOfAttributeValue();
+          state = IN_TAG;
+        } else {
+          appendLanguage(b);
+        }
+        break;
+      case ATTR_VALUE_UNQUOTED:
+        if (b == '>') {
+          endOfAttributeValue();
+          endOfTag();
+        } else if (isSpace(b)) {
+          endOfAttributeValue();
+          state = IN_TAG;
+        } else {
+          appendLanguage(b);
+        }
+        break;
+      case MARKUP_DECLARATION:
+        if (b == '-' && ++commentDashes == 2) {
+          state = COMMENT;
+          commentDashes = 0;
+        } else if (b == '>') {
+          state = TEXT;
+          appendSpace();
+        } else if (b != '-') {
+          // doctype, CDATA section, bogus comment
+          state = DECLARATION;
+        }
+        break;
+      case COMMENT:
+        if (b == '>' && commentDashes >= 2) {
+          state = TEXT;
+          appendSpace();
+        } else if (b == '-') {
+          commentDashes++;
+        } else {
+          commentDashes = 0;
+        }
+        break;
+      case DECLARATION:
+        if (b == '>') {
+          state = TEXT;
+          appendSpace();
+        }
+        break;
+      case RAW_TEXT:
+        skipRawText(b);
+        break;
+      case ENTITY:
+        if (b == ';') {
+          if (!appendEntity()) {
+            appendEntityLiterally();
+            text[length++] = ';';
+          }
+          state = TEXT;
+        } else if (entityLength < MAX_ENTITY
+            && (isLetter(b) || (b >= '0' && b <= '9')
+                || (b == '#' && entityLength == 0))) {
+          entity[entityLength++] = (byte) b;
+        } else {
+          // not terminated by a semicolon
+          if (!appendEntity()) {
+            appendEntityLiterally();
+          }
+          state = TEXT;
+          i--;
+        }
+        break;
+      default:
+        throw new IllegalStateException();
+      }
+    }
+  }
+
+  /**
+   * Finish the extraction after the last piece of the page has been passed to
+   * the extractor.
+   */
+  public void finish() {
+    if (state == ENTITY) {
+      ensureCapacity(length + entityLength + 1);
+      if (!appendEntity()) {
+        appendEntityLiterally();
+      }
+    }
+    state = TEXT;
+    if (length > 0 && text[length - 1] == ' ') {
+      length--;
+    }
+  }
+
+  /**
+   * @return array holding the extracted UTF-8-encoded text, valid until the
+   *         next page is processed
+   */
+  public byte[] getText() {
+    return text;
+  }
+
+  /** @return length of the extracted text in bytes */
+  public int getTextLength() {
+    return length;
+  }
+
+  /**
+   * @return comma-separated values of the <code>lang</code> (or
+   *         <code>xml:lang</code>) attributes, at most four distinct values,
+   *         null if there are none
+   */
+  public String getLanguageHints() {
+    if (numLanguages == 0) {
+      return null;
+    }
+    return new String(languages, 0, languagesLength,
+        StandardCharsets.US_ASCII);
+  }
+
+  private void ensureCapacity(long size) {
+    if (text.length < size) {
+      long newSize = text.length;
+      while (newSize < size) {
+        newSize *= 2;
+      }
+      text = Arrays.copyOf(text,
+          (int) Math.min(newSize, Integer.MAX_VALUE - 8));
+    }
+  }
+
+  private static boolean isSpace(int b) {
+    return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f';
+  }
+
+  private static boolean isLetter(int b) {
+    return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+  }
+
+  private static int toLowerCase(int b) {
+    return (b >= 'A' && b <= 'Z') ? b + ('a' - 'A') : b;
+  }
+
+  private void appendSpace() {
+    if (length > 0 && text[length - 1] != ' ') {
+      text[length++] = ' ';
+    }
+  }
+
+  private void appendName(int b) {
+    if (nameLength < MAX_NAME) {
+      name[nameLength] = (byte) toLowerCase(b);
+    }
+    nameLength++;
+  }
+
+  private boolean nameEquals(byte[] s) {
+    if (nameLength != s.length) {
+      return false;
+    }
+    for (int i = 0; i < nameLength; i++) {
+      if (name[i] != s[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void endOfTagName() {
+    skippedElement = null;
+    if (!endTag) {
+      for (byte[] element : SKIPPED) {
+        if (nameEquals(element)) {
+          skippedElement = element;
+          break;
+        }
+      }
+    }
+  }
+
+  private void endOfTag() {
+    state = TEXT;
+    if (skippedElement != null && !selfClosing) {
+      state = RAW_TEXT;
+      rawTextElement = skippedElement;
+      rawTextMatched = 0;
+    }
+    skippedElement = null;
+    appendSpace();
+  }
+
+  /**
+   * Look for the end tag of the skipped element, e.g.
+   * <code>&lt;/script</code>, followed by white space, a slash or
+   * <code>&gt;</code>.
+   */
+  private void skipRawText(int b) {
+    int n = rawTextElement.length;
+    if (rawTextMatched == 0) {
+      if (b == '<') {
+        rawTextMatched = 1;
+      }
+    } else if (rawTextMatched == 1) {
+      rawTextMatched = b == '/' ? 2 : (b == '<' ? 1 : 0);
+    } else if (rawTextMatched < n + 2) {
+      if (toLowerCase(b) == rawTextElement[rawTextMatched - 2]) {
+        rawTextMatched++;
+      } else {
+        rawTextMatched = b == '<' ? 1 : 0;
+      }
+    } else if (b == '>' || b == '/' || isSpace(b)) {
+      // found the end tag
+      nameLength = 0;
+      skippedElement = null;
+      endTag = true;
+      selfClosing = false;
+      if (b == '>') {
+        endOfTag();
+      } else {
+        state = IN_TAG;
+      }
+    } else {
+      rawTextMatched = b == '<' ? 1 : 0;
+    }
+  }
+
+  private void startAttributeValue() {
+    state = BEFORE_ATTR_VALUE;
+    langAttribute = !endTag && numLanguages < MAX_LANGUAGES
+        && (nameEquals(LANG) || nameEquals(XML_LANG));
+    langValueLength = 0;
+  }
+
+  private void appendLanguage(int b) {
+    if (langAttribute) {
+      if (langValueLength < MAX_LANGUAGE && !isSpace(b) && b != ',') {
+        langValue[langValueLength++] = (byte) toLowerCase(b);
+      } else {
+        // not a language code
+        langAttribute = false;
+      }
+    }
+  }
+
+  private void endOfAttributeValue() {
+    if (!langAttribute || langValueLength == 0) {
+      return;
+    }
+    langAttribute = false;
+    // skip duplicates
+    for (int start = 0; start < languagesLength;) {
+      int end = start;
+      while (end < languagesLength && languages[end] != ',') {
+        end++;
+      }
+      if (end - start == langValueLength) {
+        int i = 0;
+        while (i < langValueLength && languages[start + i] == langValue[i]) {
+          i++;
+        }
+        if (i == langValueLength) {
+          return;
+        }
+      }
+      start = end + 1;
+    }
+    if (numLanguages > 0) {
+      languages[languagesLength++] = ',';
+    }
+    System.arraycopy(langValue, 0, languages, languagesLength,
+        langValueLength);
+    languagesLength += langValueLength;
+    numLanguages++;
+  }
+
+  private void appendEntityLiterally() {
+    text[length++] = '&';
+    System.arraycopy(entity, 0, text, length, entityLength);
+    length += entityLength;
+  }
+
+  /**
+   * Decode the entity and append the character.
+   *
+   * @return false if the entity is not known
+   */
+  private boolean appendEntity() {
+    int codePoint;
+    if (entityLength > 1 && entity[0] == '#') {
+      codePoint = numericEntity();
+    } else {
+      codePoint = namedEntity();
+    }
+    if (codePoint < 0) {
+      return false;
+    }
+    if (codePoint == 0xa0 || isSpace(codePoint)) {
+      appendSpace();
+      return true;
+    }
+    if (codePoint == 0 || codePoint > Character.MAX_CODE_POINT
+        || (codePoint >= Character.MIN_SURROGATE
+            && codePoint <= Character.MAX_SURROGATE)) {
+      codePoint = 0xfffd;
+    }
+    if (codePoint < 0x80) {
+      text[length++] = (byte) codePoint;
+    } else if (codePoint < 0x800) {
+      text[length++] = (byte) (0xc0 | (codePoint >> 6));
+      text[length++] = (byte) (0x80 | (codePoint & 0x3f));
+    } else if (codePoint < 0x10000) {
+      text[length++] = (byte) (0xe0 | (codePoint >> 12));
+      text[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+      text[length++] = (byte) (0x80 | (codePoint & 0x3f));
+    } else {
+      text[length++] = (byte) (0xf0 | (codePoint >> 18));
+      text[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+      text[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+      text[length++] = (byte) (0x80 | (codePoint & 0x3f));
+    }
+    return true;
+  }
+
+  /** @return code point of a numeric character reference, -1 if invalid */
+  private int numericEntity() {
+    int i = 1;
+    int radix = 10;
+    if (entity[1] == 'x' || entity[1] == 'X') {
+      radix = 16;
+      i++;
+    }
+    if (i == entityLength) {
+      return -1;
+    }
+    long codePoint = 0;
+    for (; i < entityLength; i++) {
+      int digit = Character.digit(entity[i], radix);
+      if (digit < 0) {
+        return -1;
+      }
+      codePoint = Math.min(codePoint * radix + digit, Integer.MAX_VALUE);
+    }
+    return (int) codePoint;
+  }
+
+  /** @return code point of a named character reference, -1 if unknown */
+  private int namedEntity() {
+    int lo = 0, hi = ENTITY_NAMES.length - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int cmp = compareEntity(ENTITY_NAMES[mid]);
+      if (cmp < 0) {
+        lo = mid + 1;
+      } else if (cmp > 0) {
+        hi = mid - 1;
+      } else {
+        return ENTITY_CODE_POINTS[mid];
+      }
+    }
+    return -1;
+  }
+
+  private int compareEntity(byte[] s) {
+    int n = Math.min(s.length, entityLength);
+    for (int i = 0; i < n; i++) {
+      if (s[i] != entity[i]) {
+        return s[i] - entity[i];
+      }
+    }
+    return s.length - entityLength;
+  }
+
+  /**
+   * Compare the results of the native HTML path and of the extractor: detect
+   * the language of HTML pages (UTF-8-encoded files) passing the entire page
+   * to CLD2 and passing only the extracted text. For every page print a line
+   * with the size of the page and the text, the detected languages, whether
+   * they are equal and the time taken (in microseconds) of both paths. A
+   * summary is printed to stderr.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("Usage: HtmlTextExtractor page.html...");
+      System.exit(1);
+    }
+    HtmlTextExtractor extractor = new HtmlTextExtractor();
+    PrintStream out = System.out;
+    long htmlBytes = 0, textBytes = 0, htmlNanos = 0, textNanos = 0;
+    int equal = 0;
+    out.println("file\thtml_bytes\ttext_bytes\thtml_languages\ttext_languages"
+        + "\tequal\thtml_us\ttext_us");
+    for (String file : args) {
+      byte[] html = Files.readAllBytes(Paths.get(file));
+      long start = System.nanoTime();
+      Result r1 = Cld2.detect(html, 0, html.length, CLDHints.NO_HINTS, 0,
+          false);
+      long t1 = System.nanoTime() - start;
+      start = System.nanoTime();
+      Result r2 = extractor.detect(html, 0, html.length, CLDHints.NO_HINTS, 0);
+      long t2 = System.nanoTime() - start;
+      String l1 = String.join(",", r1.getLanguageCodes());
+      String l2 = String.join(",", r2.getLanguageCodes());
+      boolean same = l1.equals(l2);
+      if (same) {
+        equal++;
+      }
+      htmlBytes += html.length;
+      textBytes += extractor.getTextLength();
+      htmlNanos += t1;
+      textNanos += t2;
+      out.println(file + '\t' + html.length + '\t' + extractor.getTextLength()
+          + '\t' + l1 + '\t' + l2 + '\t' + same + '\t' + (t1 / 1000) + '\t'
+          + (t2 / 1000));
+    }
+    System.err.printf(Locale.ROOT,
+        "%d pages, %d with equal results, text %.1f%% of html bytes,"
+            + " time html %d ms, text (incl. extraction) %d ms%n",
+        args.length, equal, (htmlBytes == 0 ? 0 : 100.0 * textBytes / htmlBytes),
+        htmlNanos / 1000000, textNanos / 1000000);
+  }
+
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Language detection in child processes: CLD2 may raise a segmentation fault
+ * on malformed input which would terminate the Java virtual machine. This
+ * detector runs CLD2 in a pool of worker processes (child JVMs, see
+ * {@link DetectionWorker}) fed over pipes. If a worker crashes, it is
+ * restarted and the record causing the crash is reported, see
+ * {@link WorkerCrashException}.
+ *
+ * Every worker serves one calling thread at a time, use as many threads as
+ * workers to detect in parallel. Batches of records, see
+ * {@link #detectAll(List, CLDHints, int, boolean)}, are pipelined to the
+ * worker to amortize the costs of inter-process communication.
+ *
+ * Worker processes are started with the class path of the current JVM and
+ * the system properties <code>jna.library.path</code> and
+ * <code>cld2.binding</code>, if set. Call {@link #close()} to stop the
+ * workers.
+ */
+public class IsolatedDetector implements Closeable {
+
+  protected static final Logger LOG = LoggerFactory
+      .getLogger(MethodHandles.lookup().lookupClass());
+
+  /** System properties passed to the worker processes */
+  private static final String[] PROPERTIES = { "jna.library.path",
+      Cld2Binding.PROPERTY };
+
+  /** Max. number of requests sent to a worker before reading the results */
+  private static final int WINDOW = 64;
+
+  private final List<String> command;
+  private final List<Worker> workers = new ArrayList<>();
+  private final BlockingQueue<Worker> idle;
+  private final LongAdder crashes = new LongAdder();
+  private volatile boolean closed = false;
+  private Consumer<WorkerCrashException> crashHandler = (
+      WorkerCrashException e) -> LOG.warn("Skipped record: {}",
+          e.getMessage());
+
+  /** One worker process */
+  private class Worker {
+    private Process process;
+    private DataOutputStream out;
+    private DataInputStream in;
+
+    Worker() throws IOException {
+      start();
+    }
+
+    private void start() throws IOException {
+      process = new ProcessBuilder(command).redirectError(Redirect.INHERIT)
+          .start();
+      out = new DataOutputStream(
+          new BufferedOutputStream(process.getOutputStream(), 1 << 16));
+      in = new DataInputStream(
+          new BufferedInputStream(process.getInputStream(), 1 << 16));
+    }
+
+    /**
+     * Kill and restart the worker after a failure
+     *
+     * @return exit code of the failed worker process, -1 if unknown
+     */
+    int restart() throws IOException {
+      int exitCode = -1;
+      try {
+        if (process.waitFor(1, TimeUnit.SECONDS)) {
+          exitCode = process.exitValue();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      stop(0);
+      crashes.increment();
+      start();
+      return exitCode;
+    }
+
+    /** Close the input of the worker and wait for the process to exit */
+    void stop(long timeoutMillis) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        // worker already terminated
+      }
+      try {
+        if (!process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+          process.destroyForcibly();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        process.destroyForcibly();
+      }
+    }
+  }
+
+  /**
+   * Detector with one worker process per available processor
+   */
+  public IsolatedDetector() throws IOException {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param numWorkers
+   *          number of worker processes
+   */
+  public IsolatedDetector(int numWorkers) throws IOException {
+    this(numWorkers, Collections.emptyList());
+  }
+
+  /**
+   * @param numWorkers
+   *          number of worker processes
+   * @param jvmArgs
+   *          additional arguments of the worker JVMs, e.g.,
+   *          <code>-Xmx64m</code>
+   */
+  public IsolatedDetector(int numWorkers, List<String> jvmArgs)
+      throws IOException {
+    this(numWorkers, jvmArgs, DetectionWorker.class.getName());
+  }
+
+  IsolatedDetector(int numWorkers, List<String> jvmArgs, String mainClass)
+      throws IOException {
+    if (numWorkers < 1) {
+      throw new IllegalArgumentException(
+          "Number of workers must be positive");
+    }
+    command = new ArrayList<>();
+    command.add(System.getProperty("java.home") + File.separator + "bin"
+        + File.separator + "java");
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    for (String property : PROPERTIES) {
+      String value = System.getProperty(property);
+      if (value != null) {
+        command.add("-D" + property + "=" + value);
+      }
+    }
+    command.addAll(jvmArgs);
+    command.add(mainClass);
+    idle = new ArrayBlockingQueue<>(numWorkers);
+    try {
+      for (int i = 0; i < numWorkers; i++) {
+        Worker worker = new Worker();
+        workers.add(worker);
+        idle.add(worker);
+      }
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Handler called for every record skipped by
+   * {@link #detectAll(List, CLDHints, int, boolean)} because it caused a
+   * worker to crash, default: log a warning. Called by the detecting thread.
+   */
+  public void setCrashHandler(Consumer<WorkerCrashException> handler) {
+    crashHandler = handler;
+  }
+
+  /** @return number of crashed (and restarted) worker processes */
+  public long getCrashCount() {
+    return crashes.sum();
+  }
+
+  public Result detect(String text) throws IOException {
+    return detect(text, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language in a worker process, see
+   * {@link Cld2#detect(String, CLDHints, int, boolean)}.
+   *
+   * @throws WorkerCrashException
+   *           if the worker crashed on this text
+   */
+  public Result detect(String text, CLDHints hints, int flags,
+      boolean isPlainText) throws IOException {
+    byte[] bytes = Cld2.encodeNative(text);
+    return detect(bytes, 0, bytes.length - 1, hints, flags, isPlainText);
+  }
+
+  /**
+   * Detect language of a slice of a byte array in a worker process, see
+   * {@link Cld2#detect(byte[], int, int, CLDHints, int, boolean)}.
+   *
+   * @throws WorkerCrashException
+   *           if the worker crashed on this input
+   */
+  public Result detect(byte[] buf, int off, int len, CLDHints hints,
+      int flags, boolean isPlainText) throws IOException {
+    Cld2.checkBounds(off, len, buf.length);
+    byte[] h = DetectionWorker.encodeHints(hints);
+    Worker worker = take();
+    try {
+      IOException writeError = null;
+      try {
+        DetectionWorker.writeRequest(worker.out, h, buf, off, len, flags,
+            isPlainText);
+        worker.out.flush();
+      } catch (IOException e) {
+        writeError = e;
+      }
+      try {
+        Result res = DetectionWorker.readResult(worker.in);
+        if (writeError != null) {
+          throw writeError;
+        }
+        res.setBytesExamined(len);
+        return res;
+      } catch (IOException e) {
+        byte[] record = Arrays.copyOfRange(buf, off, off + len);
+        throw crashed(worker, record, writeError != null ? writeError : e);
+      }
+    } finally {
+      release(worker);
+    }
+  }
+
+  public Result[] detectAll(List<byte[]> docs) throws IOException {
+    return detectAll(docs, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect the language of many documents in one worker process, requests
+   * and results are pipelined. Documents which cause the worker to crash are
+   * skipped and reported to the crash handler, see
+   * {@link #setCrashHandler(Consumer)}. If the worker fails after returning
+   * all pending results, it is restarted and the results are kept.
+   *
+   * @param docs
+   *          UTF-8-encoded documents
+   * @param hints
+   *          external hints shared by all documents
+   * @param flags
+   *          modify behavior of CLD2 library call
+   * @param isPlainText
+   *          whether to detect language of plain-text documents or HTML pages
+   * @return results in order of the documents, null for skipped documents
+   */
+  public Result[] detectAll(List<byte[]> docs, CLDHints hints, int flags,
+      boolean isPlainText) throws IOException {
+    Result[] results = new Result[docs.size()];
+    byte[] h = DetectionWorker.encodeHints(hints);
+    Worker worker = take();
+    try {
+      int next = 0;
+      while (next < docs.size()) {
+        int end = Math.min(next + WINDOW, docs.size());
+        IOException writeError = null;
+        try {
+          for (int i = next; i < end; i++) {
+            byte[] doc = docs.get(i);
+            DetectionWorker.writeRequest(worker.out, h, doc, 0, doc.length,
+                flags, isPlainText);
+          }
+          worker.out.flush();
+        } catch (IOException e) {
+          // worker crashed, read results of records processed before
+          writeError = e;
+        }
+        int i = next;
+        try {
+          for (; i < end; i++) {
+            results[i] = DetectionWorker.readResult(worker.in);
+            results[i].setBytesExamined(docs.get(i).length);
+          }
+          if (writeError != null) {
+            throw writeError;
+          }
+          next = end;
+        } catch (IOException e) {
+          if (i == end) {
+            // all results read, worker failed after the last record: keep
+            // the results and continue with a restarted worker
+            LOG.warn("Worker process failed after the last record: {}",
+                e.toString());
+            worker.restart();
+            next = end;
+            continue;
+          }
+          crashHandler.accept(crashed(worker, docs.get(i),
+              writeError != null ? writeError : e));
+          // skip the record, resend the following ones
+          next = i + 1;
+        }
+      }
+    } finally {
+      release(worker);
+    }
+    return results;
+  }
+
+  private WorkerCrashException crashed(Worker worker, byte[] record,
+      IOException cause) throws IOException {
+    int exitCode = worker.restart();
+    String snippet = new String(record, 0, Math.min(record.length, 80),
+        StandardCharsets.UTF_8);
+    return new WorkerCrashException("Worker process crashed (exit code "
+        + exitCode + ") on record of " + record.length + " bytes: "
+        + snippet, record, exitCode, cause);
+  }
+
+  private Worker take() throws IOException {
+    Worker worker;
+    try {
+      worker = idle.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    }
+    if (closed) {
+      idle.add(worker);
+      throw new IOException("Detector is closed");
+    }
+    return worker;
+  }
+
+  private void release(Worker worker) {
+    idle.add(worker);
+  }
+
+  /**
+   * Stop the worker processes. Waits for workers busy with a detection to
+   * finish it.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    List<Worker> stopped = new ArrayList<>();
+    try {
+      for (int i = 0; i < workers.size(); i++) {
+        Worker worker = idle.take();
+        worker.stop(5000);
+        stopped.add(worker);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      for (Worker worker : workers) {
+        worker.process.destroyForcibly();
+      }
+    }
+    // wake up threads waiting for a worker
+    idle.addAll(stopped);
+  }
+
+}
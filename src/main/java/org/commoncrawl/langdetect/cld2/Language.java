@@ -655,69 +655,109 @@ public enum Language {
   protected static final Logger LOG = LoggerFactory
       .getLogger(MethodHandles.lookup().lookupClass());
 
-  /** Map CLD2 language to Java locales and back */
-  private static Map<Language, List<Locale>> LANGUAGE_TO_LOCALE = new TreeMap<>();
-  private static Map<Locale, Language> LOCALE_TO_LANGUAGE = new HashMap<>();
+  /** All languages, indexed by value (same as ordinal) */
+  private static final Language[] VALUES = values();
+
+  /**
+   * CLD2 language codes and names, indexed by value. Read once from the
+   * native library, so that no native call is required to format results.
+   */
+  private static final String[] CODES = new String[VALUES.length];
+  private static final String[] NAMES = new String[VALUES.length];
 
   static {
-    for (Locale locale : Locale.getAvailableLocales()) {
-      if (locale == Locale.ROOT) {
-        continue;
-      }
-      // First, try full English language name
-      String languageName = locale.getDisplayLanguage(Locale.ROOT);
-      int lang = Cld2
-          .getLanguageFromName(languageName.toUpperCase(Locale.ROOT));
-      // Second, try the language code of the locale
-      if (lang == Language.UNKNOWN_LANGUAGE.value()) {
-        lang = Cld2.getLanguageFromName(locale.getLanguage());
-      }
-      if (lang == Language.UNKNOWN_LANGUAGE.value()) {
-        LOG.debug("No language found for locale <{}> ({})", locale,
-            languageName);
-        continue;
-      }
-      Language language = get(lang);
-      List<Locale> languageLocales = LANGUAGE_TO_LOCALE.get(language);
-      if (languageLocales == null) {
-        languageLocales = new ArrayList<>();
-        LANGUAGE_TO_LOCALE.put(language, languageLocales);
-      }
-      languageLocales.add(locale);
-      LOCALE_TO_LANGUAGE.put(locale, language);
-      if (!locale.getLanguage().equals(language.getCode())) {
-        LOG.debug("Language codes of CLD2 ({}) and Java locale ({} = {}) differ",
-            language.getCode(), locale.getLanguage(), languageName);
+    for (Language lang : VALUES) {
+      CODES[lang.value] = Cld2.getLanguageCode(lang.value);
+      NAMES[lang.value] = Cld2.getLanguageName(lang.value);
+    }
+  }
+
+  /**
+   * Mapping between CLD2 languages and Java locales, including ISO-639-3
+   * language codes derived from the locales. Scanning all available locales
+   * is expensive, the mapping is built on first use, see
+   * {@link Language#fromLocale(Locale)} and {@link #getCodeISO639_3()}.
+   */
+  private static class LocaleMapping {
+
+    /** Map CLD2 language to Java locales and back */
+    private static final Map<Language, List<Locale>> LANGUAGE_TO_LOCALE = new TreeMap<>();
+    private static final Map<Locale, Language> LOCALE_TO_LANGUAGE = new HashMap<>();
+
+    /** ISO-639-3 language codes, indexed by value */
+    private static final String[] ISO639_3 = new String[VALUES.length];
+
+    static {
+      for (Language lang : VALUES) {
+        ISO639_3[lang.value] = lang.iso639_3;
       }
-      // if not explicitly defined try to set ISO-639-3 language codes
-      try {
-         String iso3code = locale.getISO3Language();
-        if (language.iso639_3 != null && !iso3code.equals(language.iso639_3)) {
+      for (Locale locale : Locale.getAvailableLocales()) {
+        if (locale == Locale.ROOT) {
+          continue;
+        }
+        // First, try full English language name
+        String languageName = locale.getDisplayLanguage(Locale.ROOT);
+        int lang = Cld2
+            .getLanguageFromName(languageName.toUpperCase(Locale.ROOT));
+        // Second, try the language code of the locale
+        if (lang == Language.UNKNOWN_LANGUAGE.value()) {
+          lang = Cld2.getLanguageFromName(locale.getLanguage());
+        }
+        if (lang == Language.UNKNOWN_LANGUAGE.value()) {
+          LOG.debug("No language found for locale <{}> ({})", locale,
+              languageName);
+          continue;
+        }
+        Language language = get(lang);
+        List<Locale> languageLocales = LANGUAGE_TO_LOCALE.get(language);
+        if (languageLocales == null) {
+          languageLocales = new ArrayList<>();
+          LANGUAGE_TO_LOCALE.put(language, languageLocales);
+        }
+        languageLocales.add(locale);
+        LOCALE_TO_LANGUAGE.put(locale, language);
+        if (!locale.getLanguage().equals(language.getCode())) {
           LOG.debug(
-              "ISO-639-3 already assigned ({} => {}), skipping locale {} ({})",
-              language.getCode(), language.iso639_3,
+              "Language codes of CLD2 ({}) and Java locale ({} = {}) differ",
+              language.getCode(), locale.getLanguage(), languageName);
+        }
+        // if not explicitly defined try to set ISO-639-3 language codes
+        try {
+          String iso3code = locale.getISO3Language();
+          String assigned = ISO639_3[language.value];
+          if (assigned != null && !iso3code.equals(assigned)) {
+            LOG.debug(
+                "ISO-639-3 already assigned ({} => {}), skipping locale {} ({})",
+                language.getCode(), assigned, language.getCode(),
+                locale.getLanguage());
+          } else {
+            ISO639_3[language.value] = iso3code;
+          }
+        } catch (MissingResourceException e) {
+          LOG.debug("No ISO-639-3 language code for locale {} ({})",
               language.getCode(), locale.getLanguage());
-         } else {
-           language.iso639_3 = iso3code;
-         }
-      } catch (MissingResourceException e) {
-        LOG.debug("No ISO-639-3 language code for locale {} ({})",
-            language.getCode(), locale.getLanguage());
+        }
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Mapped {} CLD2 languages to locales",
+            LANGUAGE_TO_LOCALE.size());
+        LOG.debug("Mapped {} locales to a CLD2 language",
+            LOCALE_TO_LANGUAGE.size());
+        for (Language lang : VALUES) {
+          LOG.debug("{}\t{}", ISO639_3[lang.value], lang.value);
+        }
       }
-    }
-    LOG.debug("Mapped {} CLD2 languages to locales", LANGUAGE_TO_LOCALE.size());
-    LOG.debug("Mapped {} locales to a CLD2 language",LOCALE_TO_LANGUAGE.size());
-    for (Language lang : Language.values()) {
-      LOG.debug("{}\t{}", lang.iso639_3, lang.value);
     }
   }
 
 
   private final int value;
-  private String iso639_3 = null;
+  /** explicitly defined ISO-639-3 language code, may be null */
+  private final String iso639_3;
 
   Language(int val) {
     value = val;
+    iso639_3 = null;
   }
 
   Language(String langCodeIso639_3, int val) {
@@ -742,26 +782,55 @@ public enum Language {
    * </ul>
    */
   public String getCode() {
-    return Cld2.getLanguageCode(value());
+    return CODES[value];
   }
 
   public String getInternalName() {
-    return Cld2.getLanguageName(value());
+    return NAMES[value];
   }
 
+  /**
+   * @return ISO-639-3 language code, either explicitly defined or derived from
+   *         the Java locales mapped to this language, null if unknown
+   */
   public String getCodeISO639_3() {
-    return iso639_3;
+    if (iso639_3 != null) {
+      return iso639_3;
+    }
+    return LocaleMapping.ISO639_3[value];
   }
 
   public static Language fromLocale(Locale locale) {
-    if (LOCALE_TO_LANGUAGE.containsKey(locale)) {
-      return LOCALE_TO_LANGUAGE.get(locale);
+    Language language = LocaleMapping.LOCALE_TO_LANGUAGE.get(locale);
+    if (language != null) {
+      return language;
     }
     return Language.UNKNOWN_LANGUAGE;
   }
 
   public static Language get(int lang) {
-    return Language.values()[lang];
+    return VALUES[lang];
+  }
+
+  /**
+   * @return CLD2-internal language code, see {@link #getCode()}, of the
+   *         language with the given value
+   */
+  public static String getCode(int lang) {
+    if (lang >= 0 && lang < CODES.length) {
+      return CODES[lang];
+    }
+    return Cld2.getLanguageCode(lang);
+  }
+
+  /**
+   * @return CLD2-internal name of the language with the given value
+   */
+  public static String getInternalName(int lang) {
+    if (lang >= 0 && lang < NAMES.length) {
+      return NAMES[lang];
+    }
+    return Cld2.getLanguageName(lang);
   }
 
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+/**
+ * <a href="https://github.com/aappleby/smhasher/wiki/MurmurHash3">MurmurHash3</a>
+ * (x64, 128 bit) of byte arrays.
+ */
+final class MurmurHash3 {
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private MurmurHash3() {
+  }
+
+  /**
+   * @return 128-bit hash as array of two longs
+   */
+  // the tail bytes are mixed in by intended fall-through as in the reference
+  @SuppressWarnings("fallthrough")
+  static long[] hash128(byte[] data, int offset, int length, long seed) {
+    long h1 = seed;
+    long h2 = seed;
+    int end = offset + (length & ~15);
+    for (int i = offset; i < end; i += 16) {
+      long k1 = getLong(data, i);
+      long k2 = getLong(data, i + 8);
+      h1 ^= mixK1(k1);
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+      h2 ^= mixK2(k2);
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+    long k1 = 0;
+    long k2 = 0;
+    switch (length & 15) {
+    case 15:
+      k2 ^= (data[end + 14] & 0xffL) << 48;
+    case 14:
+      k2 ^= (data[end + 13] & 0xffL) << 40;
+    case 13:
+      k2 ^= (data[end + 12] & 0xffL) << 32;
+    case 12:
+      k2 ^= (data[end + 11] & 0xffL) << 24;
+    case 11:
+      k2 ^= (data[end + 10] & 0xffL) << 16;
+    case 10:
+      k2 ^= (data[end + 9] & 0xffL) << 8;
+    case 9:
+      k2 ^= (data[end + 8] & 0xffL);
+      h2 ^= mixK2(k2);
+    case 8:
+      k1 ^= (data[end + 7] & 0xffL) << 56;
+    case 7:
+      k1 ^= (data[end + 6] & 0xffL) << 48;
+    case 6:
+      k1 ^= (data[end + 5] & 0xffL) << 40;
+    case 5:
+      k1 ^= (data[end + 4] & 0xffL) << 32;
+    case 4:
+      k1 ^= (data[end + 3] & 0xffL) << 24;
+    case 3:
+      k1 ^= (data[end + 2] & 0xffL) << 16;
+    case 2:
+      k1 ^= (data[end + 1] & 0xffL) << 8;
+    case 1:
+      k1 ^= (data[end] & 0xffL);
+      h1 ^= mixK1(k1);
+    default:
+      break;
+    }
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix64(h1);
+    h2 = fmix64(h2);
+    h1 += h2;
+    h2 += h1;
+    return new long[] { h1, h2 };
+  }
+
+  private static long getLong(byte[] b, int i) {
+    return (b[i] & 0xffL) | (b[i + 1] & 0xffL) << 8 | (b[i + 2] & 0xffL) << 16
+        | (b[i + 3] & 0xffL) << 24 | (b[i + 4] & 0xffL) << 32
+        | (b[i + 5] & 0xffL) << 40 | (b[i + 6] & 0xffL) << 48
+        | (b[i + 7] & 0xffL) << 56;
+  }
+
+  private static long mixK1(long k1) {
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    k1 *= C2;
+    return k1;
+  }
+
+  private static long mixK2(long k2) {
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    k2 *= C1;
+    return k2;
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+/**
+ * Growable buffer in native memory to pass input text to CLD2. The buffer is
+ * reused, it grows if necessary but never shrinks. The heap arrays used to
+ * encode text are released by the next call if they grew above
+ * {@link #MAX_SCRATCH_SIZE}. Not thread-safe, use {@link #local()} to get a
+ * buffer owned by the current thread.
+ */
+class NativeBuffer {
+
+  private static final int INITIAL_SIZE = 4096;
+
+  /** Max. size of scratch arrays kept for reuse */
+  static final int MAX_SCRATCH_SIZE = 1 << 20;
+
+  private static final ThreadLocal<NativeBuffer> LOCAL = ThreadLocal
+      .withInitial(NativeBuffer::new);
+
+  private Memory memory;
+  private ByteBuffer view;
+  /** scratch arrays to encode text, see {@link #putUtf8(CharSequence)} */
+  private char[] chars = new char[0];
+  private byte[] scratch = new byte[0];
+  /** decoder of the last charset, see {@link #putDecoded(byte[], int, int, Charset)} */
+  private CharsetDecoder decoder;
+  /** wraps {@link #chars} */
+  private CharBuffer charBuffer = CharBuffer.wrap(chars);
+
+  /** @return buffer owned by the current thread */
+  static NativeBuffer local() {
+    return LOCAL.get();
+  }
+
+  /**
+   * Make sure the buffer can hold at least <code>size</code> bytes.
+   *
+   * @return pointer to the buffer
+   */
+  Pointer ensureCapacity(long size) {
+    return ensureCapacity(size, 0);
+  }
+
+  /**
+   * Make sure the buffer can hold at least <code>size</code> bytes, preserving
+   * the first <code>keep</code> bytes if the buffer is grown.
+   *
+   * @return pointer to the buffer
+   */
+  Pointer ensureCapacity(long size, long keep) {
+    if (memory == null || memory.size() < size) {
+      long newSize = INITIAL_SIZE;
+      if (memory != null) {
+        newSize = memory.size();
+      }
+      while (newSize < size) {
+        newSize *= 2;
+      }
+      Memory newMemory = new Memory(newSize);
+      if (memory != null) {
+        if (keep > 0) {
+          newMemory.write(0, memory.getByteArray(0, (int) keep), 0,
+              (int) keep);
+        }
+        memory.close();
+      }
+      memory = newMemory;
+      view = null;
+    }
+    return memory;
+  }
+
+  /**
+   * @return the buffer (after {@link #ensureCapacity(long)}) viewed as direct
+   *         byte buffer, position is set to zero and limit to the capacity
+   */
+  ByteBuffer byteBuffer() {
+    if (view == null) {
+      view = memory.getByteBuffer(0, memory.size())
+          .order(ByteOrder.nativeOrder());
+    }
+    // cast: ByteBuffer.clear() does not exist on Java 8
+    ((Buffer) view).clear();
+    return view;
+  }
+
+  /**
+   * Copy bytes into the buffer and null-terminate them.
+   *
+   * @return pointer to the buffer
+   */
+  Pointer put(byte[] bytes, int offset, int length) {
+    Pointer p = ensureCapacity(length + 1L);
+    p.write(0, bytes, offset, length);
+    p.setByte(length, (byte) 0);
+    return p;
+  }
+
+  /**
+   * Copy UTF-8 input into the buffer, replacing ill-formed sequences, removing
+   * nulls and null-terminating it, see
+   * {@link Utf8#sanitize(ByteBuffer, int, int, ByteBuffer, int)}. Use
+   * {@link #pointer()} to get the address of the buffer.
+   *
+   * @return number of bytes written, not including the terminating null
+   */
+  int putSanitized(ByteBuffer src, int offset, int length) {
+    // room for a few replacements
+    ensureCapacity(length + 1L + (length >> 4) + 16);
+    int n = Utf8.sanitize(src, offset, length, byteBuffer(), 0);
+    if (n < 0) {
+      // many replacements, up to three bytes for every input byte
+      ensureCapacity(3L * length + 1);
+      n = Utf8.sanitize(src, offset, length, byteBuffer(), 0);
+    }
+    return n;
+  }
+
+  /**
+   * Encode text as UTF-8 into the buffer and null-terminate it, see
+   * {@link Utf8}. Use {@link #pointer()} to get the address of the buffer.
+   *
+   * @return number of bytes written, not including the terminating null
+   */
+  int putUtf8(CharSequence text) {
+    return putUtf8(text, 0) - 1;
+  }
+
+  /**
+   * Encode text as UTF-8 and null-terminate it, writing it at an offset into
+   * the buffer. The buffer must hold already <code>offset</code> bytes, it is
+   * grown if required preserving its content.
+   *
+   * @return number of bytes written, including the terminating null
+   */
+  int putUtf8(CharSequence text, int offset) {
+    releaseScratch();
+    int numChars = text.length();
+    int max = Math.multiplyExact(Utf8.MAX_BYTES_PER_CHAR, numChars) + 1;
+    if (chars.length < numChars) {
+      chars = new char[grow(chars.length, numChars)];
+      charBuffer = CharBuffer.wrap(chars);
+    }
+    if (scratch.length < max) {
+      scratch = new byte[grow(scratch.length, max)];
+    }
+    Utf8.getChars(text, chars);
+    int length = Utf8.encode(chars, numChars, scratch, 0);
+    scratch[length++] = 0;
+    Pointer p = ensureCapacity(offset + (long) length, offset);
+    p.write(offset, scratch, 0, length);
+    return length;
+  }
+
+  /**
+   * Transcode text in an arbitrary charset to UTF-8 into the buffer and
+   * null-terminate it. Malformed input and unmappable characters are replaced
+   * by U+FFFD. The text is decoded into a reused character buffer, no
+   * strings are created. Input in UTF-8 is only validated, see
+   * {@link #putSanitized(ByteBuffer, int, int)}. Use {@link #pointer()} to
+   * get the address of the buffer.
+   *
+   * @return number of bytes written, not including the terminating null
+   */
+  int putDecoded(byte[] bytes, int offset, int length, Charset charset) {
+    if (charset.equals(StandardCharsets.UTF_8)) {
+      return putSanitized(ByteBuffer.wrap(bytes), offset, length);
+    }
+    releaseScratch();
+    if (decoder == null || !decoder.charset().equals(charset)) {
+      decoder = charset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE)
+          .replaceWith("\ufffd");
+    }
+    ByteBuffer in = ByteBuffer.wrap(bytes, offset, length);
+    int numChars = (int) Math.min(Integer.MAX_VALUE - 8,
+        (long) Math.ceil(length * (double) decoder.maxCharsPerByte()) + 1);
+    // casts: CharBuffer.clear() and position(int) do not exist on Java 8
+    ((Buffer) charBuffer).clear();
+    ensureChars(numChars);
+    decoder.reset();
+    // errors are replaced, overflows are not expected given the max. number
+    // of chars per byte
+    while (decoder.decode(in, charBuffer, true).isOverflow()) {
+      ensureChars(grow(chars.length, chars.length + 16));
+    }
+    while (decoder.flush(charBuffer).isOverflow()) {
+      ensureChars(grow(chars.length, chars.length + 16));
+    }
+    numChars = charBuffer.position();
+    int max = Math.multiplyExact(Utf8.MAX_BYTES_PER_CHAR, numChars) + 1;
+    if (scratch.length < max) {
+      scratch = new byte[grow(scratch.length, max)];
+    }
+    int n = Utf8.encode(chars, numChars, scratch, 0);
+    scratch[n] = 0;
+    Pointer p = ensureCapacity(n + 1L);
+    p.write(0, scratch, 0, n + 1);
+    return n;
+  }
+
+  /**
+   * Release scratch arrays grown above {@link #MAX_SCRATCH_SIZE} by a long
+   * input. Not done right after use, the array returned by {@link #utf8()}
+   * must stay valid until the next call.
+   */
+  private void releaseScratch() {
+    if (chars.length > MAX_SCRATCH_SIZE) {
+      chars = new char[0];
+      charBuffer = CharBuffer.wrap(chars);
+    }
+    if (scratch.length > MAX_SCRATCH_SIZE) {
+      scratch = new byte[0];
+    }
+  }
+
+  /**
+   * Grow the character buffer, preserving the characters decoded so far.
+   */
+  private void ensureChars(int size) {
+    if (chars.length < size) {
+      char[] newChars = new char[grow(chars.length, size)];
+      int pos = charBuffer.position();
+      System.arraycopy(chars, 0, newChars, 0, pos);
+      chars = newChars;
+      charBuffer = CharBuffer.wrap(chars);
+      ((Buffer) charBuffer).position(pos);
+    }
+  }
+
+  /**
+   * @return array holding the UTF-8-encoded and null-terminated text written
+   *         by the last call of {@link #putUtf8(CharSequence)}, valid until
+   *         the next call
+   */
+  byte[] utf8() {
+    return scratch;
+  }
+
+  private static int grow(int size, int minSize) {
+    return Math.max(minSize, (int) Math.min(2L * size, Integer.MAX_VALUE - 8));
+  }
+
+  /** @return pointer to the buffer, null if not yet allocated */
+  Pointer pointer() {
+    return memory;
+  }
+
+  /** @return current capacity of the buffer */
+  long capacity() {
+    return memory == null ? 0 : memory.size();
+  }
+
+  /** Free the native memory */
+  void close() {
+    if (memory != null) {
+      memory.close();
+      memory = null;
+      view = null;
+    }
+  }
+
+}
@@ -16,7 +16,9 @@
 
 package org.commoncrawl.langdetect.cld2;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 
 /** Holds the result of a call to {@link Cld2#detect(byte[]). */
@@ -29,10 +31,18 @@ public class Result {
   protected int[] textBytes = new int[1];
   protected boolean[] isReliable = new boolean[1];
 
+  // result chunks (offset, bytes, language), only filled if requested by
+  // Cld2.detectChunks(...)
+  protected int[] chunks = new int[0];
+  protected int numChunks = 0;
+
   protected int pruneMinTotalTextBytes = 0;
   protected int pruneMinTextPercent = 0;
   protected double pruneMinScore = 0.0;
 
+  // number of input bytes passed to libcld2
+  protected int bytesExamined = 0;
+
   // language returned by call to libcld2
   // (language with highest coverage, but not necessarily highest score)
   protected int language = Language.UNKNOWN_LANGUAGE.value();
@@ -69,9 +79,21 @@ public class Result {
     language = lang;
   }
 
+  /**
+   * Number of input bytes passed to CLD2. Usually the length of the input,
+   * less if the input is sampled, see {@link Sampling}.
+   */
+  public int getBytesExamined() {
+    return bytesExamined;
+  }
+
+  protected void setBytesExamined(int bytes) {
+    bytesExamined = bytes;
+  }
+
   /** Name of best detected language */
   public String getLanguageName() {
-    return Cld2.getLanguageName(language);
+    return Language.getInternalName(language);
   }
 
   /**
@@ -79,7 +101,7 @@ public class Result {
    * {@link Language#getCode()}
    */
   public String getLanguageCode() {
-    return Cld2.getLanguageCode(language);
+    return Language.getCode(language);
   }
 
   /**
@@ -97,7 +119,7 @@ public class Result {
     String[] codes = new String[languages.length];
     for (int j = 0; j < languages.length; j++) {
       int i = languages[j];
-      codes[j] = Cld2.getLanguageCode(language3[i]);
+      codes[j] = Language.getCode(language3[i]);
     }
     return codes;
   }
@@ -178,12 +200,54 @@ public class Result {
     return isReliable[0];
   }
 
+  /**
+   * Number of text bytes found by CLD2 in the input, excluding markup and
+   * characters not used for language detection
+   */
+  public int getTextBytes() {
+    return textBytes[0];
+  }
+
+  /**
+   * Chunks of the input text labeled with the detected language, only
+   * available if requested, see
+   * {@link Cld2#detectChunks(byte[], int, int, CLDHints, int, boolean)}.
+   * Chunks are given in the order of the input text.
+   *
+   * @return list of chunks, empty if not requested
+   */
+  public List<ResultChunk> getChunks() {
+    List<ResultChunk> res = new ArrayList<>(numChunks);
+    for (int i = 0; i < numChunks; i++) {
+      res.add(new ResultChunk(chunks[3 * i], chunks[3 * i + 1],
+          chunks[3 * i + 2]));
+    }
+    return res;
+  }
+
   private int[] prunedResults() {
-    int[] r = {-1, -1, -1};
+    int[] r = new int[3];
+    int j = prunedResults(r);
+    if (j < 3) {
+      return Arrays.copyOf(r, j);
+    }
+    return r;
+  }
+
+  /**
+   * Get the ranks of the languages not pruned, see
+   * {@link #configurePruning(int, int, double)}, without allocating memory.
+   *
+   * @param ranks
+   *          array (length 3) to hold the ranks (indexes into the language,
+   *          percent and score arrays)
+   * @return number of languages not pruned
+   */
+  int prunedResults(int[] ranks) {
     int j = 0;
     if (textBytes[0] < pruneMinTotalTextBytes) {
       // not enough text for a reliable result
-      return new int[0];
+      return 0;
     }
     for (int i = 0; i < language3.length; i++) {
       if (percent3[i] < pruneMinTextPercent) {
@@ -197,12 +261,9 @@ public class Result {
         // only take the first "unknown language" result
         break;
       }
-      r[j++] = i;
+      ranks[j++] = i;
     }
-    if (j < 3) {
-      return Arrays.copyOf(r, j);
-    }
-    return r;
+    return j;
   }
 
   public String toString() {
@@ -223,7 +284,7 @@ public class Result {
       sb.append('\t');
       sb.append(String.format(Locale.ROOT, "%.3f", normalizedScore3[i]));
       sb.append('\t');
-      sb.append(Cld2.getLanguageName(lang));
+      sb.append(language.getInternalName());
     }
     return sb.toString();
   }
@@ -246,7 +307,7 @@ public class Result {
         sb.append("\",\"code-iso-639-3\":\"").append(language.getCodeISO639_3());
         sb.append("\",\"text-covered\":").append(percent3[i]/100.0);
         sb.append(",\"score\":").append(normalizedScore3[i]);
-        sb.append(",\"name\":\"").append(Cld2.getLanguageName(lang));
+        sb.append(",\"name\":\"").append(language.getInternalName());
         sb.append("\"}");
       }
       sb.append(']');
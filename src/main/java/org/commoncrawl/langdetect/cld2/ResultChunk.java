@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+/**
+ * Chunk of the input text labeled with a language, see
+ * {@link Result#getChunks()}. Offset and length are given in bytes of the
+ * UTF-8-encoded input passed to CLD2.
+ */
+public class ResultChunk {
+
+  private final int offset;
+  private final int bytes;
+  private final int language;
+
+  ResultChunk(int offset, int bytes, int language) {
+    this.offset = offset;
+    this.bytes = bytes;
+    this.language = language;
+  }
+
+  /** Offset of the chunk in the input bytes */
+  public int getOffset() {
+    return offset;
+  }
+
+  /** Length of the chunk in bytes */
+  public int getBytes() {
+    return bytes;
+  }
+
+  /** {@link Language} of the chunk */
+  public int getLanguage() {
+    return language;
+  }
+
+  /** Language code of the chunk, see {@link Language#getCode()} */
+  public String getLanguageCode() {
+    return Language.getCode(language);
+  }
+
+  @Override
+  public String toString() {
+    return offset + "+" + bytes + ":" + getLanguageCode();
+  }
+
+}
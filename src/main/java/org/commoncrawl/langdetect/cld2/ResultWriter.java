@@ -0,0 +1,321 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Formats results as JSON or tab-separated values and appends them to an
+ * {@link Appendable} (e.g., a {@link StringBuilder} or a {@link Writer}) or
+ * writes them UTF-8-encoded into a {@link ByteBuffer}. No strings are
+ * created, results are formatted into a reused buffer. With all fields
+ * selected (default), the JSON output is identical to {@link Result#toJSON()}.
+ *
+ * A writer is not thread-safe, use one writer per thread.
+ */
+public class ResultWriter {
+
+  /** Fields written for a result */
+  public enum Field {
+    /** whether the result is reliable */
+    RELIABLE,
+    /** number of text bytes */
+    TEXT_BYTES,
+    /** CLD2 language code, see {@link Language#getCode()} */
+    CODE,
+    /** ISO-639-3 language code, see {@link Language#getCodeISO639_3()} */
+    CODE_ISO_639_3,
+    /** percentage of the text covered by the language */
+    PERCENT,
+    /** normalized score of the language */
+    SCORE,
+    /** CLD2 language name, see {@link Language#getInternalName()} */
+    NAME
+  }
+
+  /** text coverage by percentage, formatted as by {@link Result#toJSON()} */
+  private static final String[] TEXT_COVERED = new String[101];
+
+  static {
+    for (int i = 0; i <= 100; i++) {
+      TEXT_COVERED[i] = Double.toString(i / 100.0);
+    }
+  }
+
+  private final boolean reliable;
+  private final boolean textBytes;
+  private final boolean code;
+  private final boolean codeIso639_3;
+  private final boolean percent;
+  private final boolean score;
+  private final boolean name;
+  private final boolean languageFields;
+
+  private final int[] ranks = new int[3];
+  private final StringBuilder buf = new StringBuilder(256);
+  private char[] chars = new char[256];
+
+  /** Writer of all fields */
+  public ResultWriter() {
+    this(EnumSet.allOf(Field.class));
+  }
+
+  /** Writer of the selected fields */
+  public ResultWriter(Set<Field> fields) {
+    reliable = fields.contains(Field.RELIABLE);
+    textBytes = fields.contains(Field.TEXT_BYTES);
+    code = fields.contains(Field.CODE);
+    codeIso639_3 = fields.contains(Field.CODE_ISO_639_3);
+    percent = fields.contains(Field.PERCENT);
+    score = fields.contains(Field.SCORE);
+    name = fields.contains(Field.NAME);
+    languageFields = code || codeIso639_3 || percent || score || name;
+  }
+
+  /** Append the result as JSON object */
+  public void appendJSON(Result res, Appendable out) throws IOException {
+    formatJSON(res);
+    append(out);
+  }
+
+  /**
+   * Write the result as JSON object into the buffer
+   *
+   * @throws BufferOverflowException
+   *           if the buffer has not enough space left, nothing is written
+   */
+  public void appendJSON(Result res, ByteBuffer out) {
+    formatJSON(res);
+    put(out);
+  }
+
+  /**
+   * Append the result as tab-separated values: the selected fields
+   * reliability and text bytes, followed by the selected language fields for
+   * the three ranks, empty if a language is pruned. Percentages are written
+   * as integers. No line break is appended.
+   */
+  public void appendTSV(Result res, Appendable out) throws IOException {
+    formatTSV(res);
+    append(out);
+  }
+
+  /**
+   * Write the result as tab-separated values into the buffer, see
+   * {@link #appendTSV(Result, Appendable)}
+   *
+   * @throws BufferOverflowException
+   *           if the buffer has not enough space left, nothing is written
+   */
+  public void appendTSV(Result res, ByteBuffer out) {
+    formatTSV(res);
+    put(out);
+  }
+
+  private void append(Appendable out) throws IOException {
+    if (out instanceof Writer) {
+      // Writer.append(CharSequence) creates a string
+      int n = buf.length();
+      if (chars.length < n) {
+        chars = new char[Math.max(n, 2 * chars.length)];
+      }
+      buf.getChars(0, n, chars, 0);
+      ((Writer) out).write(chars, 0, n);
+    } else {
+      out.append(buf);
+    }
+  }
+
+  private void put(ByteBuffer out) {
+    int n = buf.length();
+    int bytes = n;
+    for (int i = 0; i < n; i++) {
+      char c = buf.charAt(i);
+      if (c >= 0x80) {
+        bytes += c < 0x800 ? 1 : 2;
+      }
+    }
+    if (out.remaining() < bytes) {
+      throw new BufferOverflowException();
+    }
+    for (int i = 0; i < n; i++) {
+      char c = buf.charAt(i);
+      if (c < 0x80) {
+        out.put((byte) c);
+      } else if (c < 0x800) {
+        out.put((byte) (0xc0 | (c >> 6)));
+        out.put((byte) (0x80 | (c & 0x3f)));
+      } else {
+        // no surrogates in language codes and names
+        out.put((byte) (0xe0 | (c >> 12)));
+        out.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+        out.put((byte) (0x80 | (c & 0x3f)));
+      }
+    }
+  }
+
+  private void formatJSON(Result res) {
+    StringBuilder sb = buf;
+    sb.setLength(0);
+    sb.append('{');
+    boolean first = true;
+    if (reliable) {
+      sb.append("\"reliable\":").append(res.isReliable[0]);
+      first = false;
+    }
+    if (textBytes) {
+      if (!first) {
+        sb.append(',');
+      }
+      sb.append("\"text-bytes\":").append(res.textBytes[0]);
+      first = false;
+    }
+    int n = languageFields ? res.prunedResults(ranks) : 0;
+    if (n > 0) {
+      if (!first) {
+        sb.append(',');
+      }
+      sb.append("\"languages\":[");
+      for (int j = 0; j < n; j++) {
+        if (j > 0) {
+          sb.append(',');
+        }
+        int i = ranks[j];
+        Language language = Language.get(res.language3[i]);
+        sb.append('{');
+        boolean firstField = true;
+        if (code) {
+          sb.append("\"code\":\"").append(language.getCode()).append('"');
+          firstField = false;
+        }
+        if (codeIso639_3) {
+          if (!firstField) {
+            sb.append(',');
+          }
+          sb.append("\"code-iso-639-3\":\"")
+              .append(language.getCodeISO639_3()).append('"');
+          firstField = false;
+        }
+        if (percent) {
+          if (!firstField) {
+            sb.append(',');
+          }
+          sb.append("\"text-covered\":");
+          appendTextCovered(res.percent3[i]);
+          firstField = false;
+        }
+        if (score) {
+          if (!firstField) {
+            sb.append(',');
+          }
+          sb.append("\"score\":").append(res.normalizedScore3[i]);
+          firstField = false;
+        }
+        if (name) {
+          if (!firstField) {
+            sb.append(',');
+          }
+          sb.append("\"name\":\"").append(language.getInternalName())
+              .append('"');
+        }
+        sb.append('}');
+      }
+      sb.append(']');
+    }
+    sb.append('}');
+  }
+
+  private void appendTextCovered(int percent) {
+    if (percent >= 0 && percent <= 100) {
+      buf.append(TEXT_COVERED[percent]);
+    } else {
+      buf.append(percent / 100.0);
+    }
+  }
+
+  private void formatTSV(Result res) {
+    StringBuilder sb = buf;
+    sb.setLength(0);
+    boolean first = true;
+    if (reliable) {
+      sb.append(res.isReliable[0]);
+      first = false;
+    }
+    if (textBytes) {
+      if (!first) {
+        sb.append('\t');
+      }
+      sb.append(res.textBytes[0]);
+      first = false;
+    }
+    if (!languageFields) {
+      return;
+    }
+    int n = res.prunedResults(ranks);
+    for (int j = 0; j < 3; j++) {
+      Language language = null;
+      int i = -1;
+      if (j < n) {
+        i = ranks[j];
+        language = Language.get(res.language3[i]);
+      }
+      if (code) {
+        first = tab(first);
+        if (language != null) {
+          sb.append(language.getCode());
+        }
+      }
+      if (codeIso639_3) {
+        first = tab(first);
+        if (language != null && language.getCodeISO639_3() != null) {
+          sb.append(language.getCodeISO639_3());
+        }
+      }
+      if (percent) {
+        first = tab(first);
+        if (language != null) {
+          sb.append(res.percent3[i]);
+        }
+      }
+      if (score) {
+        first = tab(first);
+        if (language != null) {
+          sb.append(res.normalizedScore3[i]);
+        }
+      }
+      if (name) {
+        first = tab(first);
+        if (language != null) {
+          sb.append(language.getInternalName());
+        }
+      }
+    }
+  }
+
+  private boolean tab(boolean first) {
+    if (!first) {
+      buf.append('\t');
+    }
+    return false;
+  }
+
+}
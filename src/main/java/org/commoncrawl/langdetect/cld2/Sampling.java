@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Byte budget to bound the latency of language detection on huge documents:
+ * instead of the entire document, either a prefix or evenly spaced samples
+ * of the document are passed to CLD2. Samples are cut on UTF-8 character
+ * boundaries, so valid UTF-8 input stays valid. Documents not exceeding the
+ * budget are passed entirely.
+ *
+ * The number of bytes passed to CLD2 is reported by
+ * {@link Result#getBytesExamined()}.
+ */
+public final class Sampling {
+
+  /** Separator between samples */
+  private static final byte SEPARATOR = '\n';
+
+  private final int maxBytes;
+  private final int numSamples;
+
+  private Sampling(int maxBytes, int numSamples) {
+    if (maxBytes < 1 || numSamples < 1) {
+      throw new IllegalArgumentException(
+          "Byte budget and number of samples must be positive");
+    }
+    this.maxBytes = maxBytes;
+    this.numSamples = numSamples;
+  }
+
+  /**
+   * @param maxBytes
+   *          max. number of bytes passed to CLD2
+   * @return sampling taking the first bytes of a document
+   */
+  public static Sampling prefix(int maxBytes) {
+    return new Sampling(maxBytes, 1);
+  }
+
+  /**
+   * @param maxBytes
+   *          max. number of bytes passed to CLD2, including the separators
+   *          between samples
+   * @param numSamples
+   *          number of samples, the first sample is taken from the beginning,
+   *          the last from the end of the document
+   * @return sampling taking evenly spaced samples from a document
+   */
+  public static Sampling evenly(int maxBytes, int numSamples) {
+    return new Sampling(maxBytes, numSamples);
+  }
+
+  public int getMaxBytes() {
+    return maxBytes;
+  }
+
+  public int getNumSamples() {
+    return numSamples;
+  }
+
+  /**
+   * Copy the samples of a document into a native buffer, the samples are
+   * separated by a line break and null-terminated.
+   *
+   * @param buf
+   *          UTF-8-encoded document
+   * @param off
+   *          offset of the document
+   * @param len
+   *          length of the document in bytes
+   * @param buffer
+   *          native buffer
+   * @return number of bytes written into the buffer (without the terminating
+   *         null)
+   */
+  int sample(byte[] buf, int off, int len, NativeBuffer buffer) {
+    if (len <= maxBytes) {
+      buffer.put(buf, off, len);
+      return len;
+    }
+    int samples = numSamples;
+    int sampleSize = (maxBytes - (samples - 1)) / samples;
+    if (sampleSize < 1) {
+      samples = 1;
+      sampleSize = maxBytes;
+    }
+    Pointer p = buffer.ensureCapacity(maxBytes + 1L);
+    int pos = 0;
+    int end = off + len;
+    for (int i = 0; i < samples; i++) {
+      int start = off;
+      if (i > 0) {
+        start += (int) ((long) (len - sampleSize) * i / (samples - 1));
+      }
+      // skip continuation bytes at the start of the sample
+      int sampleEnd = Math.min(start + sampleSize, end);
+      while (start < sampleEnd && isContinuation(buf[start])) {
+        start++;
+      }
+      // cut before a character not completely contained in the sample
+      if (sampleEnd < end) {
+        while (sampleEnd > start && isContinuation(buf[sampleEnd])) {
+          sampleEnd--;
+        }
+      }
+      if (i > 0) {
+        p.setByte(pos++, SEPARATOR);
+      }
+      p.write(pos, buf, start, sampleEnd - start);
+      pos += sampleEnd - start;
+    }
+    p.setByte(pos, (byte) 0);
+    return pos;
+  }
+
+  private static boolean isContinuation(byte b) {
+    return (b & 0xc0) == 0x80;
+  }
+
+  @Override
+  public String toString() {
+    return "Sampling max. bytes = " + maxBytes + ", samples = " + numSamples;
+  }
+
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.Character.UnicodeScript;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Language detector which skips the call to CLD2 for text written in a
+ * script used by a single language. CLD2 does not score such text, it assigns
+ * the language of the script, e.g., Greek to text in Greek script. The text is
+ * scanned once: if all letters are in one of these scripts, a result is
+ * synthesized, otherwise (Latin letters, other or mixed scripts, too little
+ * text) the detection is passed on to {@link Cld2}. Latin text is passed on
+ * after the first letter.
+ *
+ * Scripts used by several languages, e.g., Hebrew script (Hebrew and
+ * Yiddish), Cyrillic, Arabic or Devanagari, are always passed on. Only plain
+ * text with no flags set takes the fast path, hints do not change the
+ * language of a single-script text.
+ *
+ * A synthesized result holds the language of the script, marked as reliable.
+ * The other fields are approximations and may differ from the values CLD2
+ * returns for the same text: 100% of the text, a normalized score of one
+ * point per byte and the number of text bytes counted from the letters and
+ * word boundaries of the text. Run {@link #main(String[])} to verify that
+ * language and reliability agree with CLD2.
+ *
+ * The detector is safe to be used concurrently by many threads.
+ */
+public class ScriptDetector {
+
+  /** Default min. number of text bytes to take the fast path */
+  public static final int DEFAULT_MIN_TEXT_BYTES = 16;
+
+  /** Scripts mapped to exactly one CLD2 language */
+  private static final Map<UnicodeScript, Language> SINGLE_LANGUAGE_SCRIPTS = new EnumMap<>(
+      UnicodeScript.class);
+
+  static {
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.GREEK, Language.GREEK);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.ARMENIAN, Language.ARMENIAN);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.SYRIAC, Language.SYRIAC);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.THAANA, Language.DHIVEHI);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.GURMUKHI, Language.PUNJABI);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.GUJARATI, Language.GUJARATI);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.ORIYA, Language.ORIYA);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.TAMIL, Language.TAMIL);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.TELUGU, Language.TELUGU);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.KANNADA, Language.KANNADA);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.MALAYALAM, Language.MALAYALAM);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.SINHALA, Language.SINHALESE);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.THAI, Language.THAI);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.LAO, Language.LAOTHIAN);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.MYANMAR, Language.BURMESE);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.GEORGIAN, Language.GEORGIAN);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.CHEROKEE, Language.CHEROKEE);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.CANADIAN_ABORIGINAL,
+        Language.INUKTITUT);
+    SINGLE_LANGUAGE_SCRIPTS.put(UnicodeScript.KHMER, Language.KHMER);
+  }
+
+  /** approximate normalized score of text detected by script */
+  static final double SCRIPT_SCORE = 1024.0;
+
+  private final int minTextBytes;
+
+  private final LongAdder fastPath = new LongAdder();
+  private final LongAdder passedOn = new LongAdder();
+
+  public ScriptDetector() {
+    this(DEFAULT_MIN_TEXT_BYTES);
+  }
+
+  /**
+   * @param minTextBytes
+   *          min. number of text bytes (letters and word boundaries) to take
+   *          the fast path, shorter text is passed on to CLD2
+   */
+  public ScriptDetector(int minTextBytes) {
+    this.minTextBytes = minTextBytes;
+  }
+
+  /**
+   * Scan text for letters of a single-language script.
+   *
+   * @return the language of the script if all letters are in this script and
+   *         there is enough text, otherwise null
+   */
+  public Language classify(CharSequence text) {
+    return language(scan(text));
+  }
+
+  /**
+   * Scan UTF-8-encoded text for letters of a single-language script, see
+   * {@link #classify(CharSequence)}. Ill-formed UTF-8 is passed on to CLD2.
+   */
+  public Language classify(byte[] buf, int off, int len) {
+    Cld2.checkBounds(off, len, buf.length);
+    return language(scan(buf, off, len));
+  }
+
+  /**
+   * @return the value of the language in the upper and the number of text
+   *         bytes in the lower 32 bits, or -1 if the text is passed on to
+   *         CLD2
+   */
+  private long scan(CharSequence text) {
+    UnicodeScript script = null;
+    int textBytes = 0;
+    boolean inWord = false;
+    for (int i = 0, n = text.length(); i < n;) {
+      int cp = Character.codePointAt(text, i);
+      int len = Character.charCount(cp);
+      i += len;
+      if (cp < 0x80) {
+        if ((cp | 0x20) - 'a' < 26 && (cp | 0x20) >= 'a') {
+          // ASCII (Latin) letter
+          return -1;
+        }
+        inWord = false;
+        continue;
+      }
+      int bytes = cp < 0x800 ? 2 : (cp < 0x10000 ? 3 : 4);
+      switch (classify(cp, script)) {
+      case SEPARATOR:
+        inWord = false;
+        continue;
+      case OTHER_SCRIPT:
+        return -1;
+      case FIRST_LETTER:
+        script = UnicodeScript.of(cp);
+        break;
+      case LETTER:
+        break;
+      }
+      if (!inWord) {
+        // approximation: one space per word boundary
+        textBytes++;
+        inWord = true;
+      }
+      textBytes += bytes;
+    }
+    return result(script, textBytes);
+  }
+
+  /** @see #scan(CharSequence) */
+  private long scan(byte[] buf, int off, int len) {
+    ByteBuffer src = null;
+    UnicodeScript script = null;
+    int textBytes = 0;
+    boolean inWord = false;
+    for (int i = off, end = off + len; i < end;) {
+      int b = buf[i];
+      if (b >= 0) {
+        i++;
+        if ((b | 0x20) - 'a' < 26 && (b | 0x20) >= 'a') {
+          return -1;
+        }
+        inWord = false;
+        continue;
+      }
+      if (src == null) {
+        src = ByteBuffer.wrap(buf);
+      }
+      int bytes = Utf8.sequenceLength(src, i, end);
+      if (bytes < 0) {
+        return -1;
+      }
+      int cp;
+      if (bytes == 2) {
+        cp = ((b & 0x1f) << 6) | (buf[i + 1] & 0x3f);
+      } else if (bytes == 3) {
+        cp = ((b & 0x0f) << 12) | ((buf[i + 1] & 0x3f) << 6)
+            | (buf[i + 2] & 0x3f);
+      } else {
+        cp = ((b & 0x07) << 18) | ((buf[i + 1] & 0x3f) << 12)
+            | ((buf[i + 2] & 0x3f) << 6) | (buf[i + 3] & 0x3f);
+      }
+      i += bytes;
+      switch (classify(cp, script)) {
+      case SEPARATOR:
+        inWord = false;
+        continue;
+      case OTHER_SCRIPT:
+        return -1;
+      case FIRST_LETTER:
+        script = UnicodeScript.of(cp);
+        break;
+      case LETTER:
+        break;
+      }
+      if (!inWord) {
+        textBytes++;
+        inWord = true;
+      }
+      textBytes += bytes;
+    }
+    return result(script, textBytes);
+  }
+
+  private long result(UnicodeScript script, int textBytes) {
+    if (script == null || textBytes < minTextBytes) {
+      return -1;
+    }
+    return ((long) SINGLE_LANGUAGE_SCRIPTS.get(script).value() << 32)
+        | textBytes;
+  }
+
+  private static Language language(long scan) {
+    return scan < 0 ? null : Language.get((int) (scan >>> 32));
+  }
+
+  private enum Scan {
+    SEPARATOR, FIRST_LETTER, LETTER, OTHER_SCRIPT
+  }
+
+  /**
+   * Classify a non-ASCII code point
+   *
+   * @param script
+   *          script of the letters seen so far, null if none
+   */
+  private static Scan classify(int cp, UnicodeScript script) {
+    int type = Character.getType(cp);
+    if (type < Character.UPPERCASE_LETTER
+        || type > Character.COMBINING_SPACING_MARK) {
+      // not a letter or mark: digits, punctuation, symbols, spaces
+      return Scan.SEPARATOR;
+    }
+    UnicodeScript s = UnicodeScript.of(cp);
+    if (s == script || s == UnicodeScript.INHERITED
+        || s == UnicodeScript.COMMON) {
+      // combining marks inherit the script of the preceding letter
+      return Scan.LETTER;
+    }
+    if (script == null && SINGLE_LANGUAGE_SCRIPTS.containsKey(s)) {
+      return Scan.FIRST_LETTER;
+    }
+    return Scan.OTHER_SCRIPT;
+  }
+
+  /**
+   * @return a result for text in a single-language script, language and
+   *         reliability as returned by CLD2, the other fields approximated
+   */
+  static Result synthesize(Language language, int textBytes,
+      int bytesExamined) {
+    Result res = new Result();
+    int unknown = Language.UNKNOWN_LANGUAGE.value();
+    res.language3[0] = language.value();
+    res.language3[1] = unknown;
+    res.language3[2] = unknown;
+    res.percent3[0] = 100;
+    res.normalizedScore3[0] = SCRIPT_SCORE;
+    res.textBytes[0] = textBytes;
+    res.isReliable[0] = true;
+    res.setLanguage(language.value());
+    res.setBytesExamined(bytesExamined);
+    return res;
+  }
+
+  /**
+   * @return length of the UTF-8 encoding of the text, unpaired surrogates
+   *         counted as replacement characters
+   */
+  private static int utf8Length(CharSequence text) {
+    int n = 0;
+    for (int i = 0, len = text.length(); i < len; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        n++;
+      } else if (c < 0x800) {
+        n += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < len
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        n += 4;
+        i++;
+      } else {
+        n += 3;
+      }
+    }
+    return n;
+  }
+
+  public Result detect(String text) {
+    return detect(text, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language, see {@link Cld2#detect(String, CLDHints, int, boolean)},
+   * without calling CLD2 if the text is in a single-language script.
+   */
+  public Result detect(String text, CLDHints hints, int flags,
+      boolean isPlainText) {
+    if (isPlainText && flags == 0) {
+      long scan = scan(text);
+      if (scan >= 0) {
+        fastPath.increment();
+        return synthesize(language(scan), (int) scan, utf8Length(text));
+      }
+    }
+    passedOn.increment();
+    return Cld2.detect(text, hints, flags, isPlainText);
+  }
+
+  public Result detect(byte[] buf, int off, int len) {
+    return detect(buf, off, len, CLDHints.NO_HINTS, 0, true);
+  }
+
+  /**
+   * Detect language, see
+   * {@link Cld2#detect(byte[], int, int, CLDHints, int, boolean)}, without
+   * calling CLD2 if the text is in a single-language script.
+   */
+  public Result detect(byte[] buf, int off, int len, CLDHints hints,
+      int flags, boolean isPlainText) {
+    if (isPlainText && flags == 0) {
+      Cld2.checkBounds(off, len, buf.length);
+      long scan = scan(buf, off, len);
+      if (scan >= 0) {
+        fastPath.increment();
+        return synthesize(language(scan), (int) scan, len);
+      }
+    }
+    passedOn.increment();
+    return Cld2.detect(buf, off, len, hints, flags, isPlainText);
+  }
+
+  /** @return number of detections which took the fast path */
+  public long getFastPathCount() {
+    return fastPath.sum();
+  }
+
+  /** @return number of detections passed on to CLD2 */
+  public long getPassedOnCount() {
+    return passedOn.sum();
+  }
+
+  /**
+   * Verification mode: detect the language of every line (or of one column
+   * of tab-separated lines) of the given files, or of standard input, by the
+   * fast path and by CLD2, and print all lines where both disagree in
+   * language or reliability.
+   */
+  public static void main(String[] args) throws IOException {
+    int column = -1;
+    int first = 0;
+    if (args.length > 1 && args[0].equals("-column")) {
+      column = Integer.parseInt(args[1]);
+      first = 2;
+    }
+    ScriptDetector detector = new ScriptDetector();
+    PrintStream out = System.out;
+    long lines = 0, classified = 0, agreed = 0;
+    out.println("fast_path\tcld2\tcld2_reliable\ttext");
+    for (int i = first; i < Math.max(args.length, first + 1); i++) {
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+          i < args.length ? Files.newInputStream(Paths.get(args[i]))
+              : System.in,
+          StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String text = line;
+          if (column >= 0) {
+            String[] fields = line.split("\t");
+            if (fields.length <= column) {
+              continue;
+            }
+            text = fields[column];
+          }
+          lines++;
+          Language language = detector.classify(text);
+          if (language == null) {
+            continue;
+          }
+          classified++;
+          Result res = Cld2.detect(text);
+          if (res.getLanguage() == language.value() && res.isReliable()) {
+            agreed++;
+          } else {
+            out.println(language.getCode() + '\t' + res.getLanguageCode()
+                + '\t' + res.isReliable() + '\t' + text);
+          }
+        }
+      }
+    }
+    System.err.printf(Locale.ROOT,
+        "%d lines, %d (%.1f%%) take the fast path, %d agree with CLD2,"
+            + " %d disagree%n",
+        lines, classified, (lines == 0 ? 0 : 100.0 * classified / lines),
+        agreed, classified - agreed);
+  }
+
+}
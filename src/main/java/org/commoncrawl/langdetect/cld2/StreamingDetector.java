@@ -0,0 +1,344 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Detect the language of many records read from a UTF-8 input stream, either
+ * one text per line or tab-separated values with the text in one column (as in
+ * the tatoeba test data). Records are detected in parallel by a bounded pool
+ * of worker threads and the results are written in input order.
+ *
+ * Memory is bounded by a ring buffer of records: when all slots are occupied
+ * by records in progress or waiting to be written, reading blocks until the
+ * oldest record is written (back-pressure).
+ *
+ * A detector can be reused to process multiple inputs but not concurrently.
+ */
+public class StreamingDetector {
+
+  /** Default output: the input record and the detection result as JSON */
+  public static final BiFunction<String, Result, String> RECORD_AND_JSON = (
+      String record, Result res) -> record + '\t' + res.toJSON();
+
+  private final int numThreads;
+  private final int capacity;
+
+  private int textColumn = -1;
+  private boolean skipHeader = false;
+  private CLDHints hints = CLDHints.NO_HINTS;
+  private int flags = 0;
+  private boolean isPlainText = true;
+  private BiFunction<String, Result, String> formatter = RECORD_AND_JSON;
+
+  /** One record of the ring buffer */
+  private static class Slot {
+    String record;
+    String output;
+    boolean done;
+  }
+
+  // state of the current run, guarded by lock
+  private final Object lock = new Object();
+  private Slot[] ring;
+  private long numRead;
+  private long numWritten;
+  private boolean endOfInput;
+  private Throwable error;
+
+  /**
+   * Detector using one worker thread per available processor and a ring
+   * buffer of 1024 records
+   */
+  public StreamingDetector() {
+    this(Runtime.getRuntime().availableProcessors(), 1024);
+  }
+
+  /**
+   * @param numThreads
+   *          number of worker threads
+   * @param capacity
+   *          max. number of records held in memory
+   */
+  public StreamingDetector(int numThreads, int capacity) {
+    if (numThreads < 1 || capacity < 1) {
+      throw new IllegalArgumentException(
+          "Number of threads and capacity must be positive");
+    }
+    this.numThreads = numThreads;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Read tab-separated records and take the text from the given column,
+   * counted from 0. If negative (default), the entire line is the text.
+   */
+  public void setTextColumn(int column) {
+    textColumn = column;
+  }
+
+  /** Whether to skip the first line of the input and copy it to the output */
+  public void setSkipHeader(boolean skipHeader) {
+    this.skipHeader = skipHeader;
+  }
+
+  /** Hints shared by all records */
+  public void setHints(CLDHints hints) {
+    this.hints = hints;
+  }
+
+  public void setFlags(int flags) {
+    this.flags = flags;
+  }
+
+  public void setPlainText(boolean isPlainText) {
+    this.isPlainText = isPlainText;
+  }
+
+  /**
+   * Function to format the output line (without line break) of a record,
+   * default: {@link #RECORD_AND_JSON}. Called by the worker threads.
+   */
+  public void setFormatter(BiFunction<String, Result, String> formatter) {
+    this.formatter = formatter;
+  }
+
+  /**
+   * Process UTF-8-encoded input and write the results as UTF-8. The streams
+   * are not closed.
+   *
+   * @return number of records processed
+   */
+  public long run(InputStream in, OutputStream out) throws IOException {
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(in, StandardCharsets.UTF_8));
+    Writer writer = new BufferedWriter(
+        new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    long n = run(reader, writer);
+    writer.flush();
+    return n;
+  }
+
+  /**
+   * Process records, one per line, and write one output line per record in
+   * input order.
+   *
+   * @return number of records processed
+   */
+  public long run(BufferedReader reader, Writer writer) throws IOException {
+    if (skipHeader) {
+      String header = reader.readLine();
+      if (header != null) {
+        writer.write(header);
+        writer.write('\n');
+      }
+    }
+    synchronized (lock) {
+      ring = new Slot[capacity];
+      for (int i = 0; i < capacity; i++) {
+        ring[i] = new Slot();
+      }
+      numRead = 0;
+      numWritten = 0;
+      endOfInput = false;
+      error = null;
+    }
+    ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+    Thread output = new Thread(() -> write(writer), "cld2-streaming-writer");
+    output.start();
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        Slot slot;
+        synchronized (lock) {
+          while (numRead - numWritten >= capacity && error == null) {
+            lock.wait();
+          }
+          if (error != null) {
+            break;
+          }
+          slot = ring[(int) (numRead % capacity)];
+          slot.record = line;
+          slot.output = null;
+          slot.done = false;
+          numRead++;
+        }
+        workers.execute(() -> detect(slot));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(e);
+    } catch (IOException | RuntimeException e) {
+      fail(e);
+    } finally {
+      synchronized (lock) {
+        endOfInput = true;
+        lock.notifyAll();
+      }
+      workers.shutdown();
+      try {
+        output.join();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        fail(e);
+      }
+    }
+    synchronized (lock) {
+      ring = null;
+      if (error instanceof IOException) {
+        throw (IOException) error;
+      } else if (error != null) {
+        throw new IOException("Streaming language detection failed", error);
+      }
+      return numWritten;
+    }
+  }
+
+  private String getText(String record) {
+    if (textColumn < 0) {
+      return record;
+    }
+    int start = 0;
+    for (int i = 0; i < textColumn; i++) {
+      start = record.indexOf('\t', start) + 1;
+      if (start == 0) {
+        return "";
+      }
+    }
+    int end = record.indexOf('\t', start);
+    return end < 0 ? record.substring(start) : record.substring(start, end);
+  }
+
+  private void detect(Slot slot) {
+    try {
+      Result res = Cld2.detect(getText(slot.record), hints, flags,
+          isPlainText);
+      slot.output = formatter.apply(slot.record, res);
+    } catch (Throwable e) {
+      // also errors (e.g., UnsatisfiedLinkError), otherwise the writer
+      // waits forever for this slot
+      fail(e);
+    } finally {
+      synchronized (lock) {
+        slot.done = true;
+        lock.notifyAll();
+      }
+    }
+  }
+
+  private void write(Writer writer) {
+    try {
+      while (true) {
+        Slot slot;
+        synchronized (lock) {
+          while (error == null) {
+            if (numWritten < numRead
+                && ring[(int) (numWritten % capacity)].done) {
+              break;
+            }
+            if (endOfInput && numWritten == numRead) {
+              return;
+            }
+            lock.wait();
+          }
+          if (error != null) {
+            return;
+          }
+          slot = ring[(int) (numWritten % capacity)];
+        }
+        writer.write(slot.output);
+        writer.write('\n');
+        synchronized (lock) {
+          slot.record = null;
+          slot.output = null;
+          slot.done = false;
+          numWritten++;
+          lock.notifyAll();
+        }
+      }
+    } catch (Throwable e) {
+      fail(e);
+    }
+  }
+
+  private void fail(Throwable e) {
+    synchronized (lock) {
+      if (error == null) {
+        error = e;
+      }
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Detect the language of records read from stdin and write the results to
+   * stdout.
+   *
+   * <pre>
+   * StreamingDetector [-threads N] [-capacity N] [-column N] [-header] [-html]
+   * </pre>
+   */
+  public static void main(String[] args) throws IOException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    int capacity = 1024;
+    int column = -1;
+    boolean header = false, html = false;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+      case "-threads":
+        threads = Integer.parseInt(args[++i]);
+        break;
+      case "-capacity":
+        capacity = Integer.parseInt(args[++i]);
+        break;
+      case "-column":
+        column = Integer.parseInt(args[++i]);
+        break;
+      case "-header":
+        header = true;
+        break;
+      case "-html":
+        html = true;
+        break;
+      default:
+        System.err.println("Usage: StreamingDetector [-threads N]"
+            + " [-capacity N] [-column N] [-header] [-html] < input > output");
+        System.exit(1);
+      }
+    }
+    StreamingDetector detector = new StreamingDetector(threads, capacity);
+    detector.setTextColumn(column);
+    detector.setSkipHeader(header);
+    detector.setPlainText(!html);
+    detector.run(System.in, System.out);
+  }
+
+}
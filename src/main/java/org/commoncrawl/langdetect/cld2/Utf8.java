@@ -0,0 +1,275 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * UTF-8 encoder writing characters into a reusable byte array, without the
+ * intermediate byte arrays of
+ * {@link String#getBytes(java.nio.charset.Charset)}. Characters are read
+ * from an array, which is faster than {@link CharSequence#charAt(int)}, see
+ * {@link #getChars(CharSequence, char[])}.
+ * Unpaired surrogates are replaced by U+FFFD (REPLACEMENT CHARACTER), the
+ * output is always valid UTF-8.
+ *
+ * Also sanitizes UTF-8 input in a single pass, see
+ * {@link #sanitize(ByteBuffer, int, int, ByteBuffer, int)}.
+ */
+final class Utf8 {
+
+  /** max. number of UTF-8 bytes per UTF-16 char */
+  static final int MAX_BYTES_PER_CHAR = 3;
+
+  /** high bit of every byte in a long */
+  private static final long HIGH_BITS = 0x8080808080808080L;
+  /** lowest bit of every byte in a long */
+  private static final long LOW_BITS = 0x0101010101010101L;
+
+  private Utf8() {
+  }
+
+  /**
+   * Copy the characters of a text into an array
+   *
+   * @param text
+   *          input text
+   * @param chars
+   *          array to copy the characters into, must hold at least
+   *          <code>text.length()</code> characters
+   */
+  static void getChars(CharSequence text, char[] chars) {
+    int length = text.length();
+    if (text instanceof String) {
+      ((String) text).getChars(0, length, chars, 0);
+    } else {
+      for (int i = 0; i < length; i++) {
+        chars[i] = text.charAt(i);
+      }
+    }
+  }
+
+  /**
+   * @return number of bytes of the UTF-8 encoding of the characters, unpaired
+   *         surrogates counted as replacement characters
+   */
+  static long encodedLength(char[] chars, int length) {
+    long n = length;
+    for (int i = 0; i < length; i++) {
+      char c = chars[i];
+      if (c < 0x80) {
+        continue;
+      } else if (c < 0x800) {
+        n += 1;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(chars[i + 1])) {
+        // 4 bytes for two chars
+        n += 2;
+        i++;
+      } else {
+        // 3 bytes, also for unpaired surrogates replaced
+        n += 2;
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Encode characters as UTF-8 into a byte array. The array must have space
+   * for {@link #encodedLength(char[], int)} or
+   * <code>length * {@link #MAX_BYTES_PER_CHAR}</code> bytes starting at the
+   * offset.
+   *
+   * @param chars
+   *          characters to encode
+   * @param length
+   *          number of characters to encode
+   * @param out
+   *          output array
+   * @param offset
+   *          offset in the array to write the encoded text
+   * @return number of bytes written
+   */
+  static int encode(char[] chars, int length, byte[] out, int offset) {
+    int pos = offset;
+    int i = 0;
+    // fast path: ASCII
+    for (; i < length; i++) {
+      char c = chars[i];
+      if (c >= 0x80) {
+        break;
+      }
+      out[pos++] = (byte) c;
+    }
+    for (; i < length; i++) {
+      char c = chars[i];
+      if (c < 0x80) {
+        out[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        // includes Latin-1
+        out[pos++] = (byte) (0xc0 | (c >> 6));
+        out[pos++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        char d;
+        if (Character.isHighSurrogate(c) && i + 1 < length
+            && Character.isLowSurrogate(d = chars[i + 1])) {
+          int cp = Character.toCodePoint(c, d);
+          out[pos++] = (byte) (0xf0 | (cp >> 18));
+          out[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+          out[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+          out[pos++] = (byte) (0x80 | (cp & 0x3f));
+          i++;
+        } else {
+          // unpaired surrogate: U+FFFD
+          out[pos++] = (byte) 0xef;
+          out[pos++] = (byte) 0xbf;
+          out[pos++] = (byte) 0xbd;
+        }
+      } else {
+        out[pos++] = (byte) (0xe0 | (c >> 12));
+        out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        out[pos++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    return pos - offset;
+  }
+
+  /**
+   * Copy UTF-8 input and make it safe to be passed to CLD2: ill-formed
+   * sequences are replaced by U+FFFD (one replacement character per maximal
+   * subpart of an ill-formed sequence, as recommended by the Unicode
+   * standard), NUL bytes are removed and the output is null-terminated.
+   * Eight bytes at a time are copied as long as the input is ASCII.
+   *
+   * @param src
+   *          input buffer, position and limit are not used and not modified
+   * @param offset
+   *          absolute offset of the input in the source buffer
+   * @param length
+   *          length of the input in bytes
+   * @param dst
+   *          output buffer, position is not used and not modified. The output
+   *          is at most as long as the input plus the terminating null, unless
+   *          ill-formed sequences are replaced.
+   * @param dstOffset
+   *          absolute offset in the output buffer
+   * @return number of bytes written, not including the terminating null, or
+   *         -1 if the output buffer is too short (up to the limit)
+   */
+  static int sanitize(ByteBuffer src, int offset, int length, ByteBuffer dst,
+      int dstOffset) {
+    if (src.order() != dst.order()) {
+      src = src.duplicate().order(dst.order());
+    }
+    int i = offset;
+    int end = offset + length;
+    int j = dstOffset;
+    // reserve space for the terminating null
+    int limit = dst.limit() - 1;
+    while (i < end) {
+      if (i + 8 <= end && j + 8 <= limit) {
+        // fast path: eight ASCII bytes, none of them null
+        long word = src.getLong(i);
+        if (((word | (word - LOW_BITS)) & HIGH_BITS) == 0) {
+          dst.putLong(j, word);
+          i += 8;
+          j += 8;
+          continue;
+        }
+      }
+      int n = sequenceLength(src, i, end);
+      if (n > 0) {
+        if (j + n > limit) {
+          return -1;
+        }
+        if (n == 1 && src.get(i) == 0) {
+          // remove null
+          i++;
+          continue;
+        }
+        for (int k = 0; k < n; k++) {
+          dst.put(j++, src.get(i++));
+        }
+      } else {
+        if (j + 3 > limit) {
+          return -1;
+        }
+        dst.put(j++, (byte) 0xef);
+        dst.put(j++, (byte) 0xbf);
+        dst.put(j++, (byte) 0xbd);
+        i -= n;
+      }
+    }
+    dst.put(j, (byte) 0);
+    return j - dstOffset;
+  }
+
+  /**
+   * @return length of the well-formed UTF-8 sequence at the position
+   *         <code>i</code>, or the negated length of the maximal subpart of an
+   *         ill-formed sequence (at least one byte)
+   */
+  static int sequenceLength(ByteBuffer src, int i, int end) {
+    int b = src.get(i) & 0xff;
+    if (b < 0x80) {
+      return 1;
+    }
+    int n;
+    // range of the second byte
+    int lo = 0x80;
+    int hi = 0xbf;
+    if (b < 0xc2) {
+      // continuation byte or overlong two-byte sequence
+      return -1;
+    } else if (b < 0xe0) {
+      n = 2;
+    } else if (b < 0xf0) {
+      n = 3;
+      if (b == 0xe0) {
+        // overlong
+        lo = 0xa0;
+      } else if (b == 0xed) {
+        // surrogates
+        hi = 0x9f;
+      }
+    } else if (b < 0xf5) {
+      n = 4;
+      if (b == 0xf0) {
+        // overlong
+        lo = 0x90;
+      } else if (b == 0xf4) {
+        // above U+10FFFF
+        hi = 0x8f;
+      }
+    } else {
+      return -1;
+    }
+    for (int k = 1; k < n; k++) {
+      if (i + k >= end) {
+        return -k;
+      }
+      int c = src.get(i + k) & 0xff;
+      if (c < lo || c > hi) {
+        return -k;
+      }
+      lo = 0x80;
+      hi = 0xbf;
+    }
+    return n;
+  }
+
+}
@@ -0,0 +1,857 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Detect the language of the records of a WARC or WET file, e.g., a file of
+ * the Common Crawl archives. HTML and plain-text responses (WARC files) and
+ * text conversions (WET files) are passed to CLD2 together with the
+ * top-level domain of the target URI and the HTTP header Content-Language as
+ * hints. For every record a line is written holding record ID, target URI,
+ * detected languages and whether the detection is reliable, either as
+ * tab-separated values or as JSON.
+ *
+ * A gzip-compressed WARC file is a concatenation of gzip members, every
+ * record is compressed as a separate member. The file is split into chunks
+ * which are decompressed and processed in parallel: the first member
+ * starting in a chunk is located by searching for the gzip magic bytes and
+ * verified by decompressing it (including the CRC check). The payloads are
+ * passed as slices of the decompressed record to CLD2, the input is
+ * sanitized and transcoded from the charset of the HTTP response, see
+ * {@link Detector#detectInto(Result, byte[], int, int, Charset, CLDHints, int, boolean)}.
+ * Uncompressed WARC files are processed by a single thread.
+ */
+public class WarcDetector {
+
+  private static final int READ_BUFFER_SIZE = 1 << 16;
+  private static final byte[] WARC_MAGIC = ascii("WARC/");
+  private static final byte[] HTTP_MAGIC = ascii("HTTP/");
+
+  private final int numThreads;
+  private long chunkSize = 8L << 20;
+  private boolean json = false;
+  private boolean extractText = false;
+  private int flags = 0;
+
+  /**
+   * @param numThreads
+   *          number of threads decompressing chunks and detecting the language
+   *          of the records
+   */
+  public WarcDetector(int numThreads) {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Number of threads must be positive");
+    }
+    this.numThreads = numThreads;
+  }
+
+  /** Size of the chunks (compressed bytes) processed in parallel */
+  public void setChunkSize(long chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be positive");
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  /** Write results as JSON (default: tab-separated values) */
+  public void setJson(boolean json) {
+    this.json = json;
+  }
+
+  /**
+   * Pass only the text of HTML pages to CLD2, see {@link HtmlTextExtractor}
+   */
+  public void setExtractText(boolean extractText) {
+    this.extractText = extractText;
+  }
+
+  public void setFlags(int flags) {
+    this.flags = flags;
+  }
+
+  /**
+   * Detect the language of the records of a WARC or WET file and write the
+   * results in the order of the records.
+   *
+   * @param file
+   *          WARC or WET file, gzip-compressed or not
+   * @param writer
+   *          writer to write the results
+   * @throws IOException
+   *           if reading the file or writing the results fails, or if the
+   *           file is not a valid WARC file
+   */
+  public void run(Path file, Writer writer) throws IOException {
+    try (FileChannel channel = FileChannel.open(file,
+        StandardOpenOption.READ)) {
+      long size = channel.size();
+      ByteBuffer magic = ByteBuffer.allocate(2);
+      channel.read(magic, 0);
+      boolean compressed = magic.position() == 2
+          && (magic.get(0) & 0xff) == 0x1f && (magic.get(1) & 0xff) == 0x8b;
+      long numChunks = 1;
+      if (compressed) {
+        numChunks = Math.max(1, (size + chunkSize - 1) / chunkSize);
+      }
+      AtomicInteger threadNumber = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+        Thread t = new Thread(r, "cld2-warc-" + threadNumber.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      });
+      try {
+        ArrayDeque<Future<ChunkResult>> pending = new ArrayDeque<>();
+        long next = 0;
+        long expectedMember = -1;
+        while (next < numChunks || !pending.isEmpty()) {
+          // keep all threads busy, but bound the number of results held
+          while (next < numChunks && pending.size() < 2 * numThreads) {
+            long from = next * chunkSize;
+            long to = compressed ? Math.min(size, from + chunkSize) : size;
+            pending.add(executor.submit(new Chunk(channel, from, to,
+                compressed)));
+            next++;
+          }
+          ChunkResult res = pending.remove().get();
+          if (res.firstMember >= 0) {
+            if (expectedMember >= 0 && res.firstMember != expectedMember) {
+              throw new IOException("Inconsistent gzip member boundaries:"
+                  + " member expected at offset " + expectedMember
+                  + " but found at " + res.firstMember);
+            }
+            expectedMember = res.end;
+          }
+          writer.write(res.output);
+        }
+        writer.flush();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException(cause);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  private static class ChunkResult {
+    /** offset of the first gzip member starting in the chunk, -1 if none */
+    long firstMember = -1;
+    /** offset following the last member processed */
+    long end;
+    String output = "";
+  }
+
+  /**
+   * Decompresses and processes all gzip members starting in a range of the
+   * file, or the entire file if it is not compressed.
+   */
+  private class Chunk implements Callable<ChunkResult> {
+
+    private final FileChannel channel;
+    private final long from;
+    private final long to;
+    private final boolean compressed;
+
+    /** file content, buffer holds the bytes starting at bufOffset */
+    private final byte[] buf = new byte[READ_BUFFER_SIZE];
+    private long bufOffset;
+    private int bufPos;
+    private int bufLen;
+    private boolean eof;
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+
+    /** decompressed records */
+    private byte[] data = new byte[READ_BUFFER_SIZE];
+    private int dataLength;
+
+    private final StringBuilder output = new StringBuilder();
+    private final Map<String, Charset> charsets = new HashMap<>();
+    /** pages in a legacy charset transcoded to UTF-8, see {@link #toUtf8(int, int, Charset)} */
+    private byte[] utf8 = new byte[0];
+    private char[] chars = new char[0];
+    private final Map<Charset, CharsetDecoder> decoders = new HashMap<>();
+    private Detector detector;
+    private HtmlTextExtractor extractor;
+    private Result result;
+    private final ResultWriter resultWriter = new ResultWriter();
+
+    Chunk(FileChannel channel, long from, long to, boolean compressed) {
+      this.channel = channel;
+      this.from = from;
+      this.to = to;
+      this.compressed = compressed;
+    }
+
+    @Override
+    public ChunkResult call() throws IOException {
+      ChunkResult res = new ChunkResult();
+      detector = new Detector();
+      if (extractText) {
+        extractor = new HtmlTextExtractor();
+      }
+      try {
+        if (!compressed) {
+          seek(from);
+          while (fill()) {
+            appendData(buf, bufPos, bufLen - bufPos);
+            bufPos = bufLen;
+            parseRecords();
+          }
+          checkComplete();
+          res.output = output.toString();
+          return res;
+        }
+        long member = findFirstMember();
+        if (member < 0) {
+          return res;
+        }
+        res.firstMember = member;
+        parseRecords();
+        member = position();
+        while (member < to && ensure(1)) {
+          readMember();
+          parseRecords();
+          member = position();
+        }
+        checkComplete();
+        res.end = member;
+        res.output = output.toString();
+        return res;
+      } finally {
+        inflater.end();
+        detector.close();
+      }
+    }
+
+    /**
+     * Locate and decompress the first gzip member starting in the chunk.
+     *
+     * @return offset of the member, -1 if no member starts in the chunk
+     */
+    private long findFirstMember() throws IOException {
+      long candidate = from;
+      while ((candidate = findMagic(candidate)) >= 0) {
+        seek(candidate);
+        try {
+          readMember();
+          return candidate;
+        } catch (IOException e) {
+          if (candidate == 0) {
+            // the file must start with a valid member
+            throw e;
+          }
+          // not a member: magic bytes within compressed data
+          dataLength = 0;
+          candidate++;
+        }
+      }
+      return -1;
+    }
+
+    /** @return offset of the next gzip magic bytes before the chunk end */
+    private long findMagic(long pos) throws IOException {
+      seek(pos);
+      while (position() < to && ensure(4)) {
+        if (buf[bufPos] == 0x1f && (buf[bufPos + 1] & 0xff) == 0x8b
+            && buf[bufPos + 2] == 8 && (buf[bufPos + 3] & 0xe0) == 0) {
+          return position();
+        }
+        bufPos++;
+      }
+      return -1;
+    }
+
+    private long position() {
+      return bufOffset + bufPos;
+    }
+
+    private void seek(long pos) {
+      if (pos >= bufOffset && pos <= bufOffset + bufLen) {
+        bufPos = (int) (pos - bufOffset);
+      } else {
+        bufOffset = pos;
+        bufPos = bufLen = 0;
+        eof = false;
+      }
+    }
+
+    /** Read more bytes into the buffer, keeping unread bytes */
+    private boolean fill() throws IOException {
+      if (bufPos > 0) {
+        System.arraycopy(buf, bufPos, buf, 0, bufLen - bufPos);
+        bufOffset += bufPos;
+        bufLen -= bufPos;
+        bufPos = 0;
+      }
+      if (eof || bufLen == buf.length) {
+        return bufLen > 0;
+      }
+      int n = channel.read(ByteBuffer.wrap(buf, bufLen, buf.length - bufLen),
+          bufOffset + bufLen);
+      if (n < 0) {
+        eof = true;
+      } else {
+        bufLen += n;
+      }
+      return bufLen > bufPos;
+    }
+
+    /** @return whether at least n unread bytes are available */
+    private boolean ensure(int n) throws IOException {
+      while (bufLen - bufPos < n) {
+        int available = bufLen - bufPos;
+        fill();
+        if (bufLen - bufPos == available && (eof || available == buf.length)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int readByte() throws IOException {
+      if (!ensure(1)) {
+        throw new EOFException("Truncated gzip member");
+      }
+      return buf[bufPos++] & 0xff;
+    }
+
+    private int readInt() throws IOException {
+      return readByte() | (readByte() << 8) | (readByte() << 16)
+          | (readByte() << 24);
+    }
+
+    /** Decompress the gzip member at the current position */
+    private void readMember() throws IOException {
+      if (readByte() != 0x1f || readByte() != 0x8b || readByte() != 8) {
+        throw new ZipException("Not a gzip member");
+      }
+      int flg = readByte();
+      for (int i = 0; i < 6; i++) {
+        readByte(); // MTIME, XFL, OS
+      }
+      if ((flg & 4) != 0) {
+        // FEXTRA
+        int xlen = readByte() | (readByte() << 8);
+        for (int i = 0; i < xlen; i++) {
+          readByte();
+        }
+      }
+      if ((flg & 8) != 0) {
+        while (readByte() != 0) {
+          // FNAME
+        }
+      }
+      if ((flg & 16) != 0) {
+        while (readByte() != 0) {
+          // FCOMMENT
+        }
+      }
+      if ((flg & 2) != 0) {
+        readByte(); // FHCRC
+        readByte();
+      }
+      inflater.reset();
+      crc.reset();
+      int start = dataLength;
+      try {
+        while (!inflater.finished()) {
+          if (inflater.needsInput()) {
+            if (!ensure(1)) {
+              throw new EOFException("Truncated gzip member");
+            }
+            inflater.setInput(buf, bufPos, bufLen - bufPos);
+            bufPos = bufLen;
+          }
+          if (data.length - dataLength < READ_BUFFER_SIZE) {
+            growData(dataLength + READ_BUFFER_SIZE);
+          }
+          int n = inflater.inflate(data, dataLength, data.length - dataLength);
+          if (n == 0 && inflater.needsDictionary()) {
+            throw new ZipException("Invalid gzip member");
+          }
+          dataLength += n;
+        }
+      } catch (DataFormatException e) {
+        throw new ZipException(e.getMessage());
+      }
+      bufPos -= inflater.getRemaining();
+      crc.update(data, start, dataLength - start);
+      if (readInt() != (int) crc.getValue()
+          || readInt() != dataLength - start) {
+        throw new ZipException("Corrupt gzip member");
+      }
+    }
+
+    private void growData(int size) {
+      if (data.length < size) {
+        byte[] newData = new byte[Math.max(size, 2 * data.length)];
+        System.arraycopy(data, 0, newData, 0, dataLength);
+        data = newData;
+      }
+    }
+
+    private void appendData(byte[] b, int off, int len) {
+      growData(dataLength + len);
+      System.arraycopy(b, off, data, dataLength, len);
+      dataLength += len;
+    }
+
+    private void checkComplete() throws IOException {
+      for (int i = 0; i < dataLength; i++) {
+        if (data[i] != '\r' && data[i] != '\n') {
+          throw new EOFException("Truncated WARC record");
+        }
+      }
+    }
+
+    /** Process all complete WARC records in the decompressed data */
+    private void parseRecords() throws IOException {
+      int pos = 0;
+      while (true) {
+        while (pos < dataLength && (data[pos] == '\r' || data[pos] == '\n')) {
+          pos++;
+        }
+        if (pos == dataLength) {
+          break;
+        }
+        if (dataLength - pos >= WARC_MAGIC.length
+            && !startsWith(data, pos, WARC_MAGIC)) {
+          throw new IOException("Not a WARC record");
+        }
+        int headerEnd = indexOfEmptyLine(data, pos, dataLength);
+        if (headerEnd < 0) {
+          break;
+        }
+        String type = null, id = null, uri = null;
+        long contentLength = -1;
+        for (int line = pos; line < headerEnd;) {
+          int eol = line;
+          while (eol < headerEnd && data[eol] != '\n') {
+            eol++;
+          }
+          int colon = indexOf(data, line, eol, ':');
+          if (colon > 0) {
+            if (isHeader("WARC-Type", line, colon)) {
+              type = value(colon, eol);
+            } else if (isHeader("WARC-Record-ID", line, colon)) {
+              id = value(colon, eol);
+            } else if (isHeader("WARC-Target-URI", line, colon)) {
+              uri = value(colon, eol);
+            } else if (isHeader("Content-Length", line, colon)) {
+              contentLength = parseLength(colon + 1, eol);
+            }
+          }
+          line = eol + 1;
+        }
+        if (contentLength < 0) {
+          throw new IOException("WARC record without Content-Length");
+        }
+        int blockStart = skipEmptyLine(data, headerEnd);
+        if (blockStart + contentLength > dataLength) {
+          break;
+        }
+        processRecord(type, id, uri, blockStart, (int) contentLength);
+        pos = blockStart + (int) contentLength;
+      }
+      System.arraycopy(data, pos, data, 0, dataLength - pos);
+      dataLength -= pos;
+    }
+
+    private void processRecord(String type, String id, String uri, int off,
+        int len) throws IOException {
+      if ("conversion".equals(type)) {
+        CLDHints hints = CLDHints.intern(host(uri), null);
+        result = detector.detectInto(result, data, off, len,
+            StandardCharsets.UTF_8, hints, flags, true);
+        appendResult(id, uri);
+      } else if ("response".equals(type) && len >= HTTP_MAGIC.length
+          && startsWith(data, off, HTTP_MAGIC)) {
+        int end = off + len;
+        int headerEnd = indexOfEmptyLine(data, off, end);
+        if (headerEnd < 0) {
+          return;
+        }
+        String contentType = null, contentLanguage = null;
+        for (int line = off; line < headerEnd;) {
+          int eol = line;
+          while (eol < headerEnd && data[eol] != '\n') {
+            eol++;
+          }
+          int colon = indexOf(data, line, eol, ':');
+          if (colon > 0) {
+            if (isHeader("Content-Type", line, colon)) {
+              contentType = value(colon, eol);
+            } else if (isHeader("Content-Language", line, colon)) {
+              contentLanguage = value(colon, eol);
+            }
+          }
+          line = eol + 1;
+        }
+        if (contentType == null) {
+          return;
+        }
+        String mimeType = contentType;
+        int semicolon = contentType.indexOf(';');
+        if (semicolon >= 0) {
+          mimeType = contentType.substring(0, semicolon).trim();
+        }
+        boolean isPlainText;
+        if (mimeType.equalsIgnoreCase("text/html")
+            || mimeType.equalsIgnoreCase("application/xhtml+xml")) {
+          isPlainText = false;
+        } else if (mimeType.equalsIgnoreCase("text/plain")) {
+          isPlainText = true;
+        } else {
+          return;
+        }
+        Charset charset = charset(contentType);
+        int payload = skipEmptyLine(data, headerEnd);
+        CLDHints hints = CLDHints.intern(host(uri), contentLanguage);
+        if (!isPlainText && extractor != null) {
+          // the extractor requires UTF-8 and writes decoded entities as UTF-8
+          byte[] html = data;
+          int htmlOff = payload;
+          int htmlLen = end - payload;
+          if (!charset.equals(StandardCharsets.UTF_8)) {
+            htmlLen = toUtf8(payload, end - payload, charset);
+            html = utf8;
+            htmlOff = 0;
+          }
+          int n = extractor.extract(html, htmlOff, htmlLen);
+          // keep the charset of the page as encoding hint
+          hints = CLDHints.withEncodingHint(hints, charset);
+          result = detector.detectInto(result, extractor.getText(), 0, n,
+              StandardCharsets.UTF_8, extractor.withLanguageHints(hints),
+              flags, true);
+        } else {
+          result = detector.detectInto(result, data, payload, end - payload,
+              charset, hints, flags, isPlainText);
+        }
+        appendResult(id, uri);
+      }
+    }
+
+    /**
+     * Transcode a slice of the decompressed data from a legacy charset to
+     * UTF-8 into {@link #utf8}. Malformed input and unmappable characters are
+     * replaced by U+FFFD.
+     *
+     * @return number of UTF-8 bytes
+     */
+    private int toUtf8(int off, int len, Charset charset) {
+      CharsetDecoder decoder = decoders.computeIfAbsent(charset,
+          c -> c.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+              .onUnmappableCharacter(CodingErrorAction.REPLACE)
+              .replaceWith("\ufffd"));
+      int maxChars = (int) Math.min(Integer.MAX_VALUE - 8,
+          (long) Math.ceil(len * (double) decoder.maxCharsPerByte()) + 1);
+      if (chars.length < maxChars) {
+        chars = new char[maxChars];
+      }
+      CharBuffer out = CharBuffer.wrap(chars);
+      decoder.reset();
+      // errors are replaced, overflows are not possible given the max. number
+      // of chars per byte
+      decoder.decode(ByteBuffer.wrap(data, off, len), out, true);
+      decoder.flush(out);
+      int numChars = out.position();
+      int maxBytes = Math.multiplyExact(Utf8.MAX_BYTES_PER_CHAR, numChars);
+      if (utf8.length < maxBytes) {
+        utf8 = new byte[maxBytes];
+      }
+      return Utf8.encode(chars, numChars, utf8, 0);
+    }
+
+    private void appendResult(String id, String uri) throws IOException {
+      if (json) {
+        output.append("{\"id\":");
+        appendJsonString(output, id);
+        output.append(",\"uri\":");
+        appendJsonString(output, uri);
+        int start = output.length();
+        resultWriter.appendJSON(result, output);
+        // merge the result object into the record object
+        output.setCharAt(start, ',');
+      } else {
+        appendTsvField(output, id);
+        output.append('\t');
+        appendTsvField(output, uri);
+        output.append('\t');
+        String[] codes = result.getLanguageCodes();
+        for (int i = 0; i < codes.length; i++) {
+          if (i > 0) {
+            output.append(',');
+          }
+          output.append(codes[i]);
+        }
+        output.append('\t').append(result.isReliable());
+      }
+      output.append('\n');
+    }
+
+    /** @return charset from the Content-Type header, default UTF-8 */
+    private Charset charset(String contentType) {
+      int i = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+      if (i < 0) {
+        return StandardCharsets.UTF_8;
+      }
+      int end = contentType.indexOf(';', i);
+      String name = contentType.substring(i + 8,
+          end < 0 ? contentType.length() : end).trim();
+      if (name.length() > 1
+          && (name.charAt(0) == '"' || name.charAt(0) == '\'')) {
+        name = name.substring(1, name.length() - 1);
+      }
+      return charsets.computeIfAbsent(name, n -> {
+        try {
+          return Charset.forName(n);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+          return StandardCharsets.UTF_8;
+        }
+      });
+    }
+
+    private boolean isHeader(String name, int start, int colon) {
+      if (colon - start != name.length()) {
+        return false;
+      }
+      for (int i = 0; i < name.length(); i++) {
+        int c = data[start + i];
+        int n = name.charAt(i);
+        if (c != n && (c | 0x20) != (n | 0x20)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private String value(int colon, int eol) {
+      int start = colon + 1, end = eol;
+      while (start < end && (data[start] == ' ' || data[start] == '\t')) {
+        start++;
+      }
+      while (end > start && (data[end - 1] == '\r' || data[end - 1] == ' '
+          || data[end - 1] == '\t')) {
+        end--;
+      }
+      return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private long parseLength(int start, int end) throws IOException {
+      long n = 0;
+      boolean digits = false;
+      for (int i = start; i < end; i++) {
+        int c = data[i];
+        if (c >= '0' && c <= '9') {
+          n = 10 * n + (c - '0');
+          digits = true;
+          if (n > Integer.MAX_VALUE - 8) {
+            throw new IOException("WARC record too large");
+          }
+        } else if (c != ' ' && c != '\t' && c != '\r') {
+          throw new IOException("Invalid Content-Length");
+        }
+      }
+      return digits ? n : -1;
+    }
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static boolean startsWith(byte[] b, int off, byte[] prefix) {
+    for (int i = 0; i < prefix.length; i++) {
+      if (b[off + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(byte[] b, int start, int end, char c) {
+    for (int i = start; i < end; i++) {
+      if (b[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return position of the line break ending the header block (followed by
+   *         an empty line, CRLF or LF), -1 if not found
+   */
+  private static int indexOfEmptyLine(byte[] b, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (b[i] == '\n') {
+        if (i + 1 < end && b[i + 1] == '\n') {
+          return i;
+        }
+        if (i + 2 < end && b[i + 1] == '\r' && b[i + 2] == '\n') {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /** @return position after the empty line following the header block */
+  private static int skipEmptyLine(byte[] b, int headerEnd) {
+    return b[headerEnd + 1] == '\r' ? headerEnd + 3 : headerEnd + 2;
+  }
+
+  /** @return host name of a URI, null if there is none */
+  static String host(String uri) {
+    if (uri == null) {
+      return null;
+    }
+    int start = uri.indexOf("://");
+    if (start < 0) {
+      return null;
+    }
+    start += 3;
+    int end = start;
+    while (end < uri.length() && "/?#>".indexOf(uri.charAt(end)) < 0) {
+      end++;
+    }
+    int at = uri.lastIndexOf('@', end - 1);
+    if (at >= start) {
+      start = at + 1;
+    }
+    int colon = uri.lastIndexOf(':', end - 1);
+    // a colon inside of the brackets of an IPv6 address is not a port
+    if (colon >= start && uri.lastIndexOf(']', end - 1) < colon) {
+      end = colon;
+    }
+    return start < end ? uri.substring(start, end) : null;
+  }
+
+  private static void appendTsvField(StringBuilder sb, String s) {
+    if (s == null) {
+      return;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      sb.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+    }
+  }
+
+  private static void appendJsonString(StringBuilder sb, String s) {
+    if (s == null) {
+      sb.append("null");
+      return;
+    }
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    sb.append('"');
+  }
+
+  public static void main(String[] args) throws IOException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    long chunkSize = -1;
+    boolean json = false, extract = false;
+    String file = null;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+      case "-threads":
+        threads = Integer.parseInt(args[++i]);
+        break;
+      case "-chunk-size":
+        chunkSize = Long.parseLong(args[++i]);
+        break;
+      case "-json":
+        json = true;
+        break;
+      case "-extract":
+        extract = true;
+        break;
+      default:
+        if (file == null && !args[i].startsWith("-")) {
+          file = args[i];
+          break;
+        }
+        file = null;
+        i = args.length;
+      }
+    }
+    if (file == null) {
+      System.err.println("Usage: WarcDetector [-threads N] [-chunk-size BYTES]"
+          + " [-json] [-extract] file.warc.gz > output");
+      System.exit(1);
+    }
+    WarcDetector detector = new WarcDetector(threads);
+    if (chunkSize > 0) {
+      detector.setChunkSize(chunkSize);
+    }
+    detector.setJson(json);
+    detector.setExtractText(extract);
+    Writer writer = new BufferedWriter(
+        new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    detector.run(Paths.get(file), writer);
+  }
+
+}
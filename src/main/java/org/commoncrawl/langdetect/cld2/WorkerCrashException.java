@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.IOException;
+
+/**
+ * A worker process of {@link IsolatedDetector} terminated while detecting the
+ * language of a record, e.g., because CLD2 raised a segmentation fault. The
+ * worker is restarted, the record which caused the crash is reported.
+ */
+public class WorkerCrashException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient byte[] record;
+  private final int exitCode;
+
+  public WorkerCrashException(String message, byte[] record, int exitCode,
+      Throwable cause) {
+    super(message, cause);
+    this.record = record;
+    this.exitCode = exitCode;
+  }
+
+  /** @return input bytes of the record which caused the crash */
+  public byte[] getRecord() {
+    return record;
+  }
+
+  /** @return exit code of the worker process, -1 if unknown */
+  public int getExitCode() {
+    return exitCode;
+  }
+
+}
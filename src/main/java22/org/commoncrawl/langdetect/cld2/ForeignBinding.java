@@ -0,0 +1,324 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BOOLEAN;
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandle;
+
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+
+/**
+ * Binding to CLD2 using the Foreign Function &amp; Memory API
+ * (<code>java.lang.foreign</code>, Java 22 or newer).
+ *
+ * The native library is located by JNA, so that the same library is used as
+ * by the JNA bindings ({@link Cld2Library}, {@link Cld2DirectLibrary}). The
+ * functions are called via downcall method handles. The hints and input text
+ * passed as byte array are copied into a confined arena per call, input text
+ * already in native memory is passed as is. The native output of
+ * <code>ExtDetectLanguageSummary</code> is written into memory allocated once
+ * per thread and copied into the {@link Result}.
+ *
+ * Note: calling native functions is a restricted operation, the Java
+ * runtime will print a warning unless started with
+ * <code>--enable-native-access=ALL-UNNAMED</code> (or the name of the module
+ * holding this library).
+ */
+final class ForeignBinding implements Cld2Binding {
+
+  private static final MemoryLayout HINTS_LAYOUT = MemoryLayout.structLayout(
+      ADDRESS.withName("content_language_hint"),
+      ADDRESS.withName("tld_hint"),
+      JAVA_INT.withName("encoding_hint"),
+      JAVA_INT.withName("language_hint"));
+  private static final long HINTS_CONTENT_LANGUAGE = 0;
+  private static final long HINTS_TLD = ADDRESS.byteSize();
+  private static final long HINTS_ENCODING = 2 * ADDRESS.byteSize();
+  private static final long HINTS_LANGUAGE = HINTS_ENCODING + JAVA_INT.byteSize();
+
+  /** Output of ExtDetectLanguageSummary, allocated once per thread */
+  private static final class Output {
+    final MemorySegment language3;
+    final MemorySegment percent3;
+    final MemorySegment normalizedScore3;
+    final MemorySegment textBytes;
+    final MemorySegment isReliable;
+
+    Output(Arena arena) {
+      language3 = arena.allocate(JAVA_INT, 3);
+      percent3 = arena.allocate(JAVA_INT, 3);
+      normalizedScore3 = arena.allocate(JAVA_DOUBLE, 3);
+      textBytes = arena.allocate(JAVA_INT);
+      isReliable = arena.allocate(JAVA_BOOLEAN);
+    }
+  }
+
+  private static final ThreadLocal<Output> OUTPUT = ThreadLocal
+      .withInitial(() -> new Output(Arena.ofAuto()));
+
+  /**
+   * The library must stay reachable, otherwise it is unloaded by JNA when
+   * garbage-collected
+   */
+  private static final NativeLibrary LIBRARY = NativeLibrary
+      .getInstance(Cld2Library.JNA_LIBRARY_NAME);
+
+  private static final MethodHandle LANGUAGE_NAME;
+  private static final MethodHandle LANGUAGE_CODE;
+  private static final MethodHandle GET_LANGUAGE_FROM_NAME;
+  private static final MethodHandle EXT_DETECT_LANGUAGE_SUMMARY;
+  private static final MethodHandle DETECT_LANGUAGE_VERSION;
+
+  /**
+   * ExtDetectLanguageSummary with all pointers passed as raw addresses
+   * (<code>long</code>), avoids to wrap native memory allocated by JNA into
+   * memory segments. Only available if pointers are 64 bits wide and are
+   * passed the same way as 64-bit integers.
+   */
+  private static final MethodHandle EXT_DETECT_LANGUAGE_SUMMARY_RAW;
+
+  static {
+    NativeLibrary lib = LIBRARY;
+    Linker linker = Linker.nativeLinker();
+    LANGUAGE_NAME = downcall(linker, lib,
+        "_ZN4CLD212LanguageNameENS_8LanguageE",
+        FunctionDescriptor.of(ADDRESS, JAVA_INT));
+    LANGUAGE_CODE = downcall(linker, lib,
+        "_ZN4CLD212LanguageCodeENS_8LanguageE",
+        FunctionDescriptor.of(ADDRESS, JAVA_INT));
+    GET_LANGUAGE_FROM_NAME = downcall(linker, lib,
+        "_ZN4CLD219GetLanguageFromNameEPKc",
+        FunctionDescriptor.of(JAVA_INT, ADDRESS));
+    EXT_DETECT_LANGUAGE_SUMMARY = downcall(linker, lib,
+        "_ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb",
+        FunctionDescriptor.of(JAVA_INT,
+            ADDRESS,      // const char* buffer
+            JAVA_INT,     // int buffer_length
+            JAVA_BOOLEAN, // bool is_plain_text
+            ADDRESS,      // const CLDHints* cld_hints
+            JAVA_INT,     // int flags
+            ADDRESS,      // Language* language3
+            ADDRESS,      // int* percent3
+            ADDRESS,      // double* normalized_score3
+            ADDRESS,      // ResultChunkVector* resultchunkvector
+            ADDRESS,      // int* text_bytes
+            ADDRESS));    // bool* is_reliable
+    DETECT_LANGUAGE_VERSION = downcall(linker, lib,
+        "_ZN4CLD221DetectLanguageVersionEv",
+        FunctionDescriptor.of(ADDRESS));
+    if (ADDRESS.byteSize() == JAVA_LONG.byteSize()) {
+      EXT_DETECT_LANGUAGE_SUMMARY_RAW = downcall(linker, lib,
+          "_ZN4CLD224ExtDetectLanguageSummaryEPKcibPKNS_8CLDHintsEiPNS_8LanguageEPiPdPSt6vectorINS_11ResultChunkESaISA_EES7_Pb",
+          FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_INT, JAVA_BOOLEAN,
+              JAVA_LONG, JAVA_INT, JAVA_LONG, JAVA_LONG, JAVA_LONG, JAVA_LONG,
+              JAVA_LONG, JAVA_LONG));
+    } else {
+      EXT_DETECT_LANGUAGE_SUMMARY_RAW = null;
+    }
+  }
+
+  private ForeignBinding() {
+  }
+
+  static Cld2Binding create() {
+    return new ForeignBinding();
+  }
+
+  private static MethodHandle downcall(Linker linker, NativeLibrary lib,
+      String name, FunctionDescriptor descriptor) {
+    long address = Pointer.nativeValue(lib.getFunction(name));
+    return linker.downcallHandle(MemorySegment.ofAddress(address), descriptor);
+  }
+
+  private static RuntimeException rethrow(Throwable t) {
+    if (t instanceof RuntimeException) {
+      return (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    return new IllegalStateException(t);
+  }
+
+  /** Read a null-terminated string returned by CLD2 */
+  private static String toString(MemorySegment cstring) {
+    if (cstring.address() == 0) {
+      return null;
+    }
+    return cstring.reinterpret(Long.MAX_VALUE).getString(0);
+  }
+
+  private static MemorySegment allocateString(Arena arena, String s) {
+    if (s == null) {
+      return MemorySegment.NULL;
+    }
+    return arena.allocateFrom(s);
+  }
+
+  private static MemorySegment allocateHints(Arena arena, CLDHints hints) {
+    if (hints == null) {
+      return MemorySegment.NULL;
+    }
+    if (hints.isShared()) {
+      // already in native memory
+      return segment(hints.getPointer());
+    }
+    MemorySegment seg = arena.allocate(HINTS_LAYOUT);
+    seg.set(ADDRESS, HINTS_CONTENT_LANGUAGE,
+        allocateString(arena, hints.getContentLanguageHint()));
+    seg.set(ADDRESS, HINTS_TLD,
+        allocateString(arena, hints.getTopLevelDomainHint()));
+    seg.set(JAVA_INT, HINTS_ENCODING, hints.getEncodingHint());
+    seg.set(JAVA_INT, HINTS_LANGUAGE, hints.getLanguageHint());
+    return seg;
+  }
+
+  @Override
+  public String languageName(int language) {
+    try {
+      return toString((MemorySegment) LANGUAGE_NAME.invokeExact(language));
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  @Override
+  public String languageCode(int language) {
+    try {
+      return toString((MemorySegment) LANGUAGE_CODE.invokeExact(language));
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  @Override
+  public int languageFromName(String name) {
+    try (Arena arena = Arena.ofConfined()) {
+      return (int) GET_LANGUAGE_FROM_NAME
+          .invokeExact(allocateString(arena, name));
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  @Override
+  public String version() {
+    try {
+      return toString((MemorySegment) DETECT_LANGUAGE_VERSION.invokeExact());
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  @Override
+  public int detect(byte[] bytes, int offset, int length,
+      boolean isPlainText, CLDHints hints, int flags, Result res) {
+    // copy into the native buffer of the thread, null-terminated
+    return detect(NativeBuffer.local().put(bytes, offset, length), length,
+        isPlainText, hints, flags, res);
+  }
+
+  @Override
+  public int detect(Pointer buffer, int length, boolean isPlainText,
+      CLDHints hints, int flags, Result res) {
+    try (Arena arena = Arena.ofConfined()) {
+      return detect(segment(buffer), length, isPlainText,
+          allocateHints(arena, hints), flags, res);
+    }
+  }
+
+  @Override
+  public int detect(Pointer buffer, int length, boolean isPlainText,
+      Pointer hints, int flags, Pointer language3, Pointer percent3,
+      Pointer normalizedScore3, Pointer textBytes, Pointer isReliable) {
+    try {
+      if (EXT_DETECT_LANGUAGE_SUMMARY_RAW != null) {
+        return (int) EXT_DETECT_LANGUAGE_SUMMARY_RAW.invokeExact(
+            Pointer.nativeValue(buffer),
+            length,
+            isPlainText,
+            Pointer.nativeValue(hints),
+            flags,
+            Pointer.nativeValue(language3),
+            Pointer.nativeValue(percent3),
+            Pointer.nativeValue(normalizedScore3),
+            0L,
+            Pointer.nativeValue(textBytes),
+            Pointer.nativeValue(isReliable));
+      }
+      return (int) EXT_DETECT_LANGUAGE_SUMMARY.invokeExact(
+          segment(buffer),
+          length,
+          isPlainText,
+          segment(hints),
+          flags,
+          segment(language3),
+          segment(percent3),
+          segment(normalizedScore3),
+          MemorySegment.NULL,
+          segment(textBytes),
+          segment(isReliable));
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  private static MemorySegment segment(Pointer p) {
+    return MemorySegment.ofAddress(Pointer.nativeValue(p));
+  }
+
+  private static int detect(MemorySegment buffer, int length,
+      boolean isPlainText, MemorySegment hints, int flags, Result res) {
+    Output out = OUTPUT.get();
+    int language;
+    try {
+      language = (int) EXT_DETECT_LANGUAGE_SUMMARY.invokeExact(
+          buffer,
+          length,
+          isPlainText,
+          hints,
+          flags,
+          out.language3,
+          out.percent3,
+          out.normalizedScore3,
+          MemorySegment.NULL,
+          out.textBytes,
+          out.isReliable);
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+    MemorySegment.copy(out.language3, JAVA_INT, 0, res.language3, 0, 3);
+    MemorySegment.copy(out.percent3, JAVA_INT, 0, res.percent3, 0, 3);
+    MemorySegment.copy(out.normalizedScore3, JAVA_DOUBLE, 0,
+        res.normalizedScore3, 0, 3);
+    res.textBytes[0] = out.textBytes.get(JAVA_INT, 0);
+    res.isReliable[0] = out.isReliable.get(JAVA_BOOLEAN, 0);
+    return language;
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+// Extension library libcld2ext: plain C functions on top of libcld2 which
+// are called from Java, see org.commoncrawl.langdetect.cld2.Cld2ExtLibrary
+
+#include <stddef.h>
+#include <stdint.h>
+#include <vector>
+
+// Declarations of the public CLD2 API used here, see
+// https://github.com/CLD2Owners/cld2/blob/master/public/compact_lang_det.h
+// Declared here and not included from the CLD2 headers, so that the library
+// can be built against a binary-only CLD2 distribution.
+namespace CLD2 {
+
+enum Language {
+  UNKNOWN_LANGUAGE = 26,
+  NUM_LANGUAGES = 614
+};
+
+typedef struct {
+  const char* content_language_hint;
+  const char* tld_hint;
+  int encoding_hint;
+  Language language_hint;
+} CLDHints;
+
+typedef struct {
+  int offset;
+  int32_t bytes;
+  uint16_t lang1;
+  uint16_t pad;
+} ResultChunk;
+
+typedef std::vector<ResultChunk> ResultChunkVector;
+
+Language ExtDetectLanguageSummary(const char* buffer, int buffer_length,
+                                  bool is_plain_text,
+                                  const CLDHints* cld_hints, int flags,
+                                  Language* language3, int* percent3,
+                                  double* normalized_score3,
+                                  ResultChunkVector* resultchunkvector,
+                                  int* text_bytes, bool* is_reliable);
+
+}  // namespace CLD2
+
+extern "C" {
+
+// Detect the language of many documents packed into one buffer. Document i
+// spans the bytes [offsets[i], offsets[i+1]) of the buffer. Hints and flags
+// are either shared by all documents (num_hints resp. num_flags is 1),
+// given per document (num_docs) or not given (0). The results are written
+// into arrays of num_docs (language, text_bytes, is_reliable) resp.
+// 3 * num_docs elements (language3, percent3, normalized_score3).
+void cld2ext_detect_batch(const char* buffer, const int* offsets,
+                          int num_docs, bool is_plain_text,
+                          const CLD2::CLDHints* const* hints, int num_hints,
+                          const int* flags, int num_flags,
+                          int* language, int* language3, int* percent3,
+                          double* normalized_score3, int* text_bytes,
+                          bool* is_reliable) {
+  for (int i = 0; i < num_docs; i++) {
+    const CLD2::CLDHints* h = NULL;
+    if (num_hints > 0) {
+      h = hints[num_hints == 1 ? 0 : i];
+    }
+    int f = 0;
+    if (num_flags > 0) {
+      f = flags[num_flags == 1 ? 0 : i];
+    }
+    CLD2::Language lang3[3];
+    language[i] = CLD2::ExtDetectLanguageSummary(
+        buffer + offsets[i], offsets[i + 1] - offsets[i], is_plain_text, h, f,
+        lang3, percent3 + 3 * i, normalized_score3 + 3 * i, NULL,
+        text_bytes + i, is_reliable + i);
+    for (int j = 0; j < 3; j++) {
+      language3[3 * i + j] = lang3[j];
+    }
+  }
+}
+
+// Chunks of the last call of cld2ext_detect_chunks on the current thread,
+// kept until copied by cld2ext_copy_chunks if they did not fit into the
+// array passed by the caller
+static thread_local CLD2::ResultChunkVector last_chunks;
+
+static void copy_chunks(int* chunks, int n) {
+  for (int i = 0; i < n; i++) {
+    const CLD2::ResultChunk& chunk = last_chunks[i];
+    chunks[3 * i] = chunk.offset;
+    chunks[3 * i + 1] = chunk.bytes;
+    chunks[3 * i + 2] = chunk.lang1;
+  }
+}
+
+// Detect the language of a single document and return the result chunks
+// (see CLD2::ResultChunk) flattened into the caller-provided array chunks:
+// three elements (offset, bytes, language) per chunk. The total number of
+// chunks is stored in num_chunks. If there are more than max_chunks chunks,
+// none are written and the caller must fetch them by cld2ext_copy_chunks
+// instead of detecting again.
+int cld2ext_detect_chunks(const char* buffer, int buffer_length,
+                          bool is_plain_text, const CLD2::CLDHints* hints,
+                          int flags, int* language3, int* percent3,
+                          double* normalized_score3, int* text_bytes,
+                          bool* is_reliable, int* chunks, int max_chunks,
+                          int* num_chunks) {
+  last_chunks.clear();
+  CLD2::Language lang3[3];
+  CLD2::Language language = CLD2::ExtDetectLanguageSummary(
+      buffer, buffer_length, is_plain_text, hints, flags, lang3, percent3,
+      normalized_score3, &last_chunks, text_bytes, is_reliable);
+  for (int j = 0; j < 3; j++) {
+    language3[j] = lang3[j];
+  }
+  int n = static_cast<int>(last_chunks.size());
+  *num_chunks = n;
+  if (n <= max_chunks) {
+    copy_chunks(chunks, n);
+    last_chunks.clear();
+  }
+  return language;
+}
+
+// Copy the chunks kept by the last call of cld2ext_detect_chunks on the
+// current thread into chunks (3 * num_chunks elements) and release them.
+// Returns the number of chunks copied.
+int cld2ext_copy_chunks(int* chunks, int max_chunks) {
+  int n = static_cast<int>(last_chunks.size());
+  if (n > max_chunks) {
+    n = max_chunks;
+  }
+  copy_chunks(chunks, n);
+  CLD2::ResultChunkVector().swap(last_chunks);
+  return n;
+}
+
+}  // extern "C"
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class AsyncDetectorTest {
+
+  @Test
+  public void testDetectAsync() throws Exception {
+    List<String> texts = TestData.readTatoebaTexts();
+    int numSubmitters = 8;
+    List<List<CompletableFuture<Result>>> futures = new ArrayList<>();
+    // assertions fail silently in the submitter threads, check the maximum
+    // number of pending documents after the threads are joined
+    AtomicInteger maxPending = new AtomicInteger();
+    try (AsyncDetector detector = new AsyncDetector(2, 3)) {
+      List<Thread> submitters = new ArrayList<>();
+      for (int s = 0; s < numSubmitters; s++) {
+        List<CompletableFuture<Result>> submitted = new ArrayList<>();
+        futures.add(submitted);
+        boolean asBytes = (s % 2) == 0;
+        Thread t = new Thread(() -> {
+          for (String text : texts) {
+            if (asBytes) {
+              byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+              submitted.add(detector.detectAsync(bytes, 0, bytes.length));
+            } else {
+              submitted.add(detector.detectAsync(text));
+            }
+            maxPending.accumulateAndGet(detector.getPending(), Math::max);
+          }
+        });
+        submitters.add(t);
+        t.start();
+      }
+      for (Thread t : submitters) {
+        t.join();
+      }
+    }
+    assertTrue(maxPending.get() <= 3, "pending: " + maxPending.get());
+    for (List<CompletableFuture<Result>> submitted : futures) {
+      assertEquals(texts.size(), submitted.size());
+      for (int i = 0; i < texts.size(); i++) {
+        Result expected = Cld2.detect(texts.get(i));
+        assertEquals(expected.toJSON(), submitted.get(i).get().toJSON(),
+            texts.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testClosed() {
+    AsyncDetector detector = new AsyncDetector(1, 1);
+    detector.close();
+    CompletableFuture<Result> future = detector.detectAsync("text");
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> future.get());
+    assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    assertEquals(0, detector.getPending());
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class BatchTest {
+
+  private static void assertSameResult(Result expected, BatchResult batch,
+      int doc, String message) {
+    assertEquals(expected.getLanguage(), batch.getLanguage(doc), message);
+    TestData.assertSameResult(expected, batch.getResult(doc), message);
+  }
+
+  @Test
+  public void testDetectBatch() throws IOException {
+    List<String[]> tests = TestData.readTatoeba();
+    int n = tests.size();
+    String[] texts = new String[n];
+    for (int i = 0; i < n; i++) {
+      texts[i] = tests.get(i)[3];
+    }
+    BatchResult batch = Cld2.detectBatch(texts);
+    assertEquals(n, batch.size());
+    for (int i = 0; i < n; i++) {
+      assertEquals(tests.get(i)[0], batch.getLanguageCode(i),
+          "Wrong language for test " + i + ": " + texts[i]);
+      assertSameResult(Cld2.detect(texts[i]), batch, i, texts[i]);
+    }
+  }
+
+  @Test
+  public void testDetectBatchPerDocumentHints() throws IOException {
+    List<String[]> tests = TestData.readTatoeba();
+    int n = tests.size();
+    // pack documents behind a prefix which is not part of any document
+    ByteArrayOutputStream packed = new ByteArrayOutputStream();
+    packed.write(' ');
+    int[] offsets = new int[n + 1];
+    CLDHints[] hints = new CLDHints[n];
+    int[] flags = new int[n];
+    for (int i = 0; i < n; i++) {
+      offsets[i] = packed.size();
+      byte[] bytes = tests.get(i)[3].getBytes(StandardCharsets.UTF_8);
+      packed.write(bytes, 0, bytes.length);
+      if ((i % 3) != 0) {
+        hints[i] = new CLDHints();
+        hints[i].setTopLevelDomainHint((i % 2) == 0 ? "fr" : "com");
+        hints[i].setContentLanguageHint((i % 5) == 0 ? "ja" : "");
+      }
+      flags[i] = (i % 4) == 0 ? Flags.kCLDFlagBestEffort : 0;
+    }
+    offsets[n] = packed.size();
+    byte[] buf = packed.toByteArray();
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(buf.length);
+    direct.put(buf);
+    BatchResult[] batches = new BatchResult[] {
+        Cld2.detectBatch(buf, offsets, n, hints, flags, true),
+        Cld2.detectBatch(ByteBuffer.wrap(buf), offsets, n, hints, flags, true),
+        Cld2.detectBatch(direct, offsets, n, hints, flags, true) };
+    for (int i = 0; i < n; i++) {
+      CLDHints h = hints[i] == null ? CLDHints.NO_HINTS : hints[i];
+      Result expected = Cld2.detect(buf, offsets[i],
+          offsets[i + 1] - offsets[i], h, flags[i], true);
+      for (BatchResult batch : batches) {
+        assertSameResult(expected, batch, i, tests.get(i)[3]);
+      }
+    }
+  }
+
+}
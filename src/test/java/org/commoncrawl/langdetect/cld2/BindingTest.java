@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.commoncrawl.langdetect.cld2.TestData.assertSameResult;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class BindingTest {
+
+  private static Result detect(Cld2Binding binding, byte[] bytes,
+      CLDHints hints, int flags, boolean isPlainText) {
+    Result res = new Result();
+    res.setLanguage(binding.detect(bytes, 0, bytes.length, isPlainText,
+        hints, flags, res));
+    return res;
+  }
+
+  @Test
+  public void testDirectMapping() throws IOException {
+    Cld2Binding iface = new Cld2Binding.Interface();
+    Cld2Binding direct = new Cld2Binding.Direct();
+    assertEquals(iface.version(), direct.version());
+    for (Language lang : Language.values()) {
+      assertEquals(iface.languageCode(lang.value()),
+          direct.languageCode(lang.value()));
+      assertEquals(iface.languageName(lang.value()),
+          direct.languageName(lang.value()));
+      assertEquals(
+          iface.languageFromName(iface.languageName(lang.value())),
+          direct.languageFromName(direct.languageName(lang.value())));
+    }
+    CLDHints hints = new CLDHints();
+    hints.setContentLanguageHint("en,ja");
+    hints.setTopLevelDomainHint("fr");
+    for (String text : TestData.readTatoebaTexts()) {
+      byte[] bytes = Cld2.encodeNative(text);
+      String snippet = text.substring(0, Math.min(text.length(), 80));
+      assertSameResult(detect(iface, bytes, CLDHints.NO_HINTS, 0, true),
+          detect(direct, bytes, CLDHints.NO_HINTS, 0, true), snippet);
+      assertSameResult(detect(iface, bytes, hints, 0, false),
+          detect(direct, bytes, hints, 0, false), snippet);
+      assertSameResult(
+          detect(iface, bytes, hints, Flags.kCLDFlagBestEffort, true),
+          detect(direct, bytes, hints, Flags.kCLDFlagBestEffort, true),
+          snippet);
+    }
+  }
+
+  @Test
+  public void testUnterminated() {
+    byte[] terminated = Cld2.encodeNative("This is an English sentence.");
+    int length = terminated.length - 1;
+    byte[] unterminated = Arrays.copyOf(terminated, length);
+    assertTrue(Cld2Binding.isTerminated(terminated, 0, length));
+    assertFalse(Cld2Binding.isTerminated(terminated, 1, length - 1));
+    assertFalse(Cld2Binding.isTerminated(terminated, 0, length - 1));
+    assertFalse(Cld2Binding.isTerminated(unterminated, 0, length - 1));
+    // last byte is part of the input and must not be taken as terminator
+    assertFalse(Cld2Binding.isTerminated(unterminated, 0, length));
+    for (Cld2Binding binding : new Cld2Binding[] {
+        new Cld2Binding.Interface(), new Cld2Binding.Direct() }) {
+      Result expected = new Result();
+      expected.setLanguage(binding.detect(terminated, 0, length, true,
+          CLDHints.NO_HINTS, 0, expected));
+      Result actual = new Result();
+      actual.setLanguage(binding.detect(unterminated, 0, length, true,
+          CLDHints.NO_HINTS, 0, actual));
+      assertSameResult(expected, actual, binding.getClass().getName());
+    }
+  }
+
+}
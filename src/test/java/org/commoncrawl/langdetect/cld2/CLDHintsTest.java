@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.commoncrawl.langdetect.cld2.TestData.assertSameResult;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class CLDHintsTest {
+
+  @Test
+  public void testTopLevelDomain() {
+    assertEquals("com", CLDHints.topLevelDomain("www.example.com"));
+    assertEquals("fr", CLDHints.topLevelDomain("Example.FR"));
+    assertEquals("de", CLDHints.topLevelDomain("example.de."));
+    assertEquals("de", CLDHints.topLevelDomain(".de"));
+    assertNull(CLDHints.topLevelDomain("localhost"));
+    assertNull(CLDHints.topLevelDomain("localhost."));
+    assertNull(CLDHints.topLevelDomain("192.168.0.1"));
+    assertNull(CLDHints.topLevelDomain(""));
+    assertNull(CLDHints.topLevelDomain("..."));
+    assertNull(CLDHints.topLevelDomain(null));
+
+    CLDHints hints = new CLDHints();
+    hints.setTopLevelDomainHintFromHostName("www.example.org");
+    assertEquals("org", hints.getTopLevelDomainHint());
+    hints.setTopLevelDomainHintFromHostName("127.0.0.1");
+    assertEquals("org", hints.getTopLevelDomainHint());
+  }
+
+  @Test
+  public void testIntern() {
+    CLDHints hints = CLDHints.intern("en,ja", "fr",
+        Encoding.UTF8.value(), Language.FRENCH.value());
+    assertTrue(hints.isShared());
+    assertEquals("en,ja", hints.getContentLanguageHint());
+    assertEquals("fr", hints.getTopLevelDomainHint());
+    assertEquals(Encoding.UTF8.value(), hints.getEncodingHint());
+    assertEquals(Language.FRENCH.value(), hints.getLanguageHint());
+    assertSame(hints, CLDHints.intern("en,ja", "fr", Encoding.UTF8.value(),
+        Language.FRENCH.value()));
+    assertSame(CLDHints.intern("www.example.fr", "de"),
+        CLDHints.intern("de", "fr", Encoding.UNKNOWN_ENCODING.value(),
+            Language.UNKNOWN_LANGUAGE.value()));
+    assertTrue(CLDHints.NO_HINTS.isShared());
+    assertThrows(UnsupportedOperationException.class,
+        () -> hints.setTopLevelDomainHint("de"));
+    assertThrows(UnsupportedOperationException.class,
+        () -> hints.setLanguageHint(Language.GERMAN.value()));
+    assertEquals("fr", hints.getTopLevelDomainHint());
+  }
+
+  @Test
+  public void testWriteSharedField() {
+    CLDHints hints = CLDHints.intern("en", "org",
+        Encoding.UNKNOWN_ENCODING.value(), Language.UNKNOWN_LANGUAGE.value());
+    try {
+      // must not be done, the write is not visible to CLD2 and ignored
+      hints.tld_hint = "de";
+      hints.language_hint = Language.GERMAN.value();
+      assertEquals("org", hints.getTopLevelDomainHint());
+      assertEquals(Language.UNKNOWN_LANGUAGE.value(), hints.getLanguageHint());
+      assertEquals("org", CLDHints.withEncodingHint(hints,
+          StandardCharsets.UTF_8).getTopLevelDomainHint());
+    } finally {
+      hints.tld_hint = "org";
+      hints.language_hint = Language.UNKNOWN_LANGUAGE.value();
+    }
+  }
+
+  @Test
+  public void testSharedHintsDetection() throws IOException {
+    CLDHints shared = CLDHints.intern("en,ja", "fr", Encoding.UTF8.value(),
+        Language.FRENCH.value());
+    CLDHints hints = new CLDHints("en,ja", "fr", Encoding.UTF8.value(),
+        Language.FRENCH.value());
+    Cld2Binding[] bindings = { new Cld2Binding.Interface(),
+        new Cld2Binding.Direct(), Cld2.BINDING };
+    try (Detector detector = new Detector()) {
+      for (String text : TestData.readTatoebaTexts()) {
+        String snippet = text.substring(0, Math.min(text.length(), 80));
+        Result expected = Cld2.detect(text, hints, 0, true);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (Cld2Binding binding : bindings) {
+          Result res = new Result();
+          res.setLanguage(binding.detect(bytes, 0, bytes.length, true,
+              shared, 0, res));
+          assertSameResult(expected, res, snippet);
+        }
+        assertSameResult(expected,
+            detector.detectInto(null, text, shared, 0, true), snippet);
+      }
+    }
+  }
+
+}
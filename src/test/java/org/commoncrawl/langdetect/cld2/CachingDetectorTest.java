@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.commoncrawl.langdetect.cld2.TestData.assertSameResult;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+public class CachingDetectorTest {
+
+  @Test
+  public void testHitsAndMisses() throws IOException {
+    List<String> texts = TestData.readTatoebaTexts();
+    int unique = new HashSet<>(texts).size();
+    CachingDetector detector = new CachingDetector(1000);
+    for (int pass = 0; pass < 2; pass++) {
+      for (String text : texts) {
+        assertSameResult(Cld2.detect(text), detector.detect(text), text);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        assertSameResult(Cld2.detect(text),
+            detector.detect(bytes, 0, bytes.length), text);
+      }
+    }
+    assertEquals(unique, detector.size());
+    assertEquals(unique, detector.getMissCount());
+    assertEquals(4 * texts.size() - unique, detector.getHitCount());
+    assertEquals(0, detector.getEvictionCount());
+
+    // cached results are independent copies
+    String text = texts.get(0);
+    assertNotSame(detector.detect(text), detector.detect(text));
+
+    // hints and flags are part of the key
+    CLDHints hints = new CLDHints();
+    hints.setTopLevelDomainHint("fr");
+    long misses = detector.getMissCount();
+    assertSameResult(Cld2.detect(text, hints, 0, true),
+        detector.detect(text, hints, 0, true), text);
+    assertSameResult(Cld2.detect(text, hints, Flags.kCLDFlagBestEffort, true),
+        detector.detect(text, hints, Flags.kCLDFlagBestEffort, true), text);
+    assertSameResult(Cld2.detect(text, hints, 0, false),
+        detector.detect(text, hints, 0, false), text);
+    assertEquals(misses + 3, detector.getMissCount());
+  }
+
+  @Test
+  public void testMetrics() throws IOException {
+    // every call to CLD2 on a cache miss is recorded, hits are not
+    List<String> texts = TestData.readTatoebaTexts();
+    DetectionStats stats = new DetectionStats();
+    Cld2.setMetrics(stats);
+    try {
+      CachingDetector detector = new CachingDetector(1000);
+      for (int pass = 0; pass < 2; pass++) {
+        for (String text : texts) {
+          detector.detect(text);
+          byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+          detector.detect(bytes, 0, bytes.length, CLDHints.NO_HINTS, 0,
+              false);
+        }
+      }
+      assertEquals(detector.getMissCount(), stats.getCount());
+      assertEquals(detector.getMissCount(), detector.getHitCount());
+    } finally {
+      Cld2.setMetrics(null);
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    List<String> texts = TestData.readTatoebaTexts();
+    int unique = new HashSet<>(texts).size();
+    CachingDetector detector = new CachingDetector(16, 4);
+    for (String text : texts) {
+      detector.detect(text);
+    }
+    assertTrue(detector.size() <= 16);
+    assertEquals(unique - detector.size(), detector.getEvictionCount());
+    // most recently used text is cached
+    long hits = detector.getHitCount();
+    detector.detect(texts.get(texts.size() - 1));
+    assertEquals(hits + 1, detector.getHitCount());
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    List<String> texts = TestData.readTatoebaTexts();
+    CachingDetector detector = new CachingDetector(64);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          for (String text : texts) {
+            assertSameResult(Cld2.detect(text), detector.detect(text), text);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(8L * texts.size(),
+        detector.getHitCount() + detector.getMissCount());
+    assertTrue(detector.size() <= 64);
+  }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.commoncrawl.langdetect.cld2.TestData.assertSameResult;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+public class CascadingDetectorTest {
+
+  @Test
+  public void testCascade() throws IOException {
+    // cascade the default library with a second instance of itself: results
+    // must not change, only unreliable results are passed on
+    CascadingDetector detector = new CascadingDetector(
+        Cld2Library.JNA_LIBRARY_NAME);
+    assertEquals(Cld2.version(), detector.getFallbackVersion());
+    List<String> texts = TestData.readTatoebaTexts();
+    long expectedFallbacks = 0;
+    for (String text : texts) {
+      Result expected = Cld2.detect(text);
+      if (CascadingDetector.needsFallback(expected)) {
+        expectedFallbacks++;
+      }
+      assertSameResult(expected, detector.detect(text), text);
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      assertSameResult(expected, detector.detect(bytes, 0, bytes.length),
+          text);
+    }
+    assertEquals(2 * texts.size(), detector.getDetectionCount());
+    assertEquals(2 * expectedFallbacks, detector.getFallbackCount());
+    assertTrue(detector.getFallbackCount() < detector.getDetectionCount());
+  }
+
+  @Test
+  public void testHints() {
+    CascadingDetector detector = new CascadingDetector(
+        Cld2Library.JNA_LIBRARY_NAME);
+    String text = "Le pr\u00e9sident de la R\u00e9publique fran\u00e7aise";
+    CLDHints hints = CLDHints.intern("fr.example.org", null);
+    assertSameResult(Cld2.detect(text, hints, 0, true),
+        detector.detect(text, hints, 0, true), text);
+    CLDHints mutable = new CLDHints();
+    mutable.setTopLevelDomainHint("fr");
+    assertSameResult(Cld2.detect(text, mutable, 0, true),
+        detector.detect(text, mutable, 0, true), text);
+  }
+
+  @Test
+  public void testFullLibrary() throws IOException {
+    CascadingDetector detector;
+    try {
+      detector = new CascadingDetector();
+    } catch (UnsatisfiedLinkError e) {
+      Assumptions.assumeTrue(false,
+          "Complete libcld2_full not available: " + e.getMessage());
+      return;
+    }
+    for (String text : TestData.readTatoebaTexts()) {
+      Result expected = Cld2.detect(text);
+      Result res = detector.detect(text);
+      if (!CascadingDetector.needsFallback(expected)) {
+        assertSameResult(expected, res, text);
+      }
+    }
+    assertTrue(detector.getFallbackCount() <= detector.getDetectionCount());
+    assertFalse(detector.getFallbackVersion().isEmpty());
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CompactResultTest {
+
+  private static void assertRoundTrip(Result expected, Result actual,
+      String message) {
+    assertEquals(expected.getLanguage(), actual.getLanguage(), message);
+    assertArrayEquals(expected.language3, actual.language3, message);
+    assertArrayEquals(expected.percent3, actual.percent3, message);
+    assertArrayEquals(expected.textBytes, actual.textBytes, message);
+    assertArrayEquals(expected.isReliable, actual.isReliable, message);
+    for (int i = 0; i < 3; i++) {
+      assertScore(expected.normalizedScore3[i], actual.normalizedScore3[i]);
+    }
+  }
+
+  private static void assertScore(double expected, double actual) {
+    if (expected < 0.002) {
+      assertTrue(actual < 0.002, expected + " ~ " + actual);
+    } else {
+      assertEquals(expected, actual, expected / 100, expected + " ~ " + actual);
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    CompactResultColumn column = new CompactResultColumn(1);
+    for (String text : TestData.readTatoebaTexts()) {
+      Result res = Cld2.detect(text);
+      CompactResult compact = CompactResult.of(res);
+      assertRoundTrip(res, compact.toResult(), text);
+      assertEquals(res.getLanguageCode(), compact.getLanguageCode());
+      assertArrayEquals(res.getLanguageCodes(),
+          compact.toResult().getLanguageCodes());
+      assertEquals(compact, new CompactResult(compact.getHigh(),
+          compact.getLow()));
+      column.add(res);
+      int i = column.size() - 1;
+      assertEquals(compact, column.get(i));
+      assertEquals(res.isReliable(), column.isReliable(i));
+      assertEquals(res.getTextBytes(), column.getTextBytes(i));
+      assertEquals(res.percent3[1], column.getPercent(i, 1));
+      assertEquals(res.language3[2], column.getLanguage(i, 2));
+    }
+  }
+
+  @Test
+  public void testScores() {
+    double[] scores = { 0.0, -1.0, Double.NaN, 0.001, 0.002, 0.25, 1.0,
+        3.1415, 99.99, 1234.5, 4096.0, 1000000.0 };
+    for (double score : scores) {
+      double actual = CompactResult
+          .dequantizeScore(CompactResult.quantizeScore(score));
+      if (score > 0) {
+        assertScore(score, actual);
+      } else {
+        assertEquals(0.0, actual);
+      }
+    }
+    // saturated
+    assertTrue(CompactResult.dequantizeScore(
+        CompactResult.quantizeScore(1e30)) > 4000000.0);
+  }
+
+  @Test
+  public void testColumn() throws IOException {
+    List<String> texts = TestData.readTatoebaTexts();
+    BatchResult batch = Cld2.detectBatch(texts.toArray(new String[0]));
+    CompactResultColumn column = new CompactResultColumn();
+    column.add(batch);
+    assertEquals(texts.size(), column.size());
+    for (int i = 0; i < column.size(); i++) {
+      assertRoundTrip(batch.getResult(i), column.getResult(i), texts.get(i));
+    }
+    // off-heap copy
+    LongBuffer offHeap = ByteBuffer.allocateDirect(16 * column.size())
+        .asLongBuffer();
+    column.writeTo(offHeap);
+    offHeap.flip();
+    CompactResultColumn copy = new CompactResultColumn(0);
+    copy.readFrom(offHeap, column.size());
+    assertEquals(column.size(), copy.size());
+    for (int i = 0; i < column.size(); i++) {
+      assertEquals(column.get(i), copy.get(i));
+    }
+    copy.swap(0, 1);
+    assertEquals(column.get(0), copy.get(1));
+    assertEquals(column.get(1), copy.get(0));
+    CompactResultColumn wrapped = new CompactResultColumn(column.words(),
+        column.size());
+    assertEquals(column.getHigh(5), wrapped.getHigh(5));
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Worker simulating a crash of CLD2: the process halts on input starting with
+ * <code>CRASH</code>.
+ */
+class CrashingDetectionWorker extends DetectionWorker {
+
+  private static final byte[] CRASH = "CRASH".getBytes(StandardCharsets.UTF_8);
+
+  public static void main(String[] args) throws IOException {
+    FileOutputStream out = new FileOutputStream(FileDescriptor.out);
+    System.setOut(System.err);
+    new CrashingDetectionWorker().serve(System.in, out);
+  }
+
+  @Override
+  protected Result detect(Detector detector, Result reuse, byte[] buf,
+      int len, CLDHints hints, int flags, boolean isPlainText) {
+    if (len >= CRASH.length) {
+      boolean crash = true;
+      for (int i = 0; i < CRASH.length && crash; i++) {
+        crash = buf[i] == CRASH[i];
+      }
+      if (crash) {
+        Runtime.getRuntime().halt(139);
+      }
+    }
+    return super.detect(detector, reuse, buf, len, hints, flags,
+        isPlainText);
+  }
+
+}
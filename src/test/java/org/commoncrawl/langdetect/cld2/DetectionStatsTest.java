@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class DetectionStatsTest {
+
+  @Test
+  public void testRecord() {
+    DetectionStats stats = new DetectionStats();
+    assertNull(Cld2.getMetrics());
+    Cld2.setMetrics(stats);
+    try {
+      assertSame(stats, Cld2.getMetrics());
+      String text = "This is an English sentence, long enough to be detected.";
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      Result r1 = Cld2.detect(text);
+      Result r2 = Cld2.detect(bytes, 0, bytes.length);
+      Result r3;
+      try (Detector detector = new Detector()) {
+        r3 = detector.detect(text);
+      }
+      assertEquals(3, stats.getCount());
+      assertEquals(3L * bytes.length, stats.getBytes());
+      assertEquals((long) r1.getTextBytes() + r2.getTextBytes()
+          + r3.getTextBytes(), stats.getTextBytes());
+      assertEquals(3, stats.getLanguageCount(Language.get(r1.getLanguage())));
+      assertEquals(Language.get(r1.getLanguage()), stats.getTopLanguages(3)[0]);
+      assertEquals(1, stats.getTopLanguages(3).length);
+      long unreliable = r1.isReliable() ? 0 : 3;
+      assertEquals(unreliable, stats.getUnreliableCount());
+      long latencyCalls = 0;
+      for (int b = 0; b < DetectionStats.getNumSizeBuckets(); b++) {
+        long calls = Arrays.stream(stats.getLatencyHistogram(b)).sum();
+        // input is shorter than 256 bytes
+        assertEquals(b == 0 ? 3 : 0, calls);
+        latencyCalls += calls;
+      }
+      assertEquals(3, latencyCalls);
+      assertEquals(3,
+          Arrays.stream(stats.getTextBytesRatioHistogram()).sum());
+
+      Result r4 = Cld2.detect("", CLDHints.NO_HINTS, 0, true);
+      assertEquals(4, stats.getCount());
+      long unknown = 0;
+      for (Result r : new Result[] { r1, r2, r3, r4 }) {
+        if (r.getLanguage() == Language.UNKNOWN_LANGUAGE.value()) {
+          unknown++;
+        }
+      }
+      assertEquals(unknown, stats.getUnknownCount());
+
+      stats.reset();
+      assertEquals(0, stats.getCount());
+      assertEquals(0, stats.getTopLanguages(3).length);
+    } finally {
+      Cld2.setMetrics(null);
+    }
+    Cld2.detect("not recorded");
+    assertEquals(0, stats.getCount());
+  }
+
+}
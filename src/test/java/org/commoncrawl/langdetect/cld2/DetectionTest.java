@@ -17,14 +17,19 @@
 
 package org.commoncrawl.langdetect.cld2;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.function.Function;
 
 import org.junit.jupiter.api.Test;
@@ -33,7 +38,7 @@ public class DetectionTest {
 
   protected void run(String testFile, Function<String, Result> detectFunc,
       Function<String, String> getDocument) throws IOException {
-    BufferedReader reader = openTestData(testFile);
+    BufferedReader reader = TestData.openTestData(testFile);
     String line;
     int i = 0;
     while ((line = reader.readLine()) != null) {
@@ -57,7 +62,7 @@ public class DetectionTest {
 
   @Test
   public void testPlainText() throws IOException {
-    run("tatoeba/tatoeba_long.txt", Cld2::detect, (String t) -> t);
+    run(TestData.TATOEBA, Cld2::detect, (String t) -> t);
   }
 
   @Test
@@ -69,11 +74,63 @@ public class DetectionTest {
       String title = text.substring(0, Math.min(text.length(), 40));
       return header1 + title + header2 + text + footer;
     };
-    run("tatoeba/tatoeba_long.txt", (String t) -> {
+    run(TestData.TATOEBA, (String t) -> {
       return Cld2.detect(t, false);
     }, getDocument);
   }
 
+  @Test
+  public void testByteArraySlice() throws IOException {
+    run(TestData.TATOEBA, (String t) -> {
+      String prefix = "\u00e9t\u00e9\n"; // été - French "summer"
+      byte[] bytes = (prefix + t + "\nsummer").getBytes(StandardCharsets.UTF_8);
+      int off = prefix.getBytes(StandardCharsets.UTF_8).length;
+      int len = t.getBytes(StandardCharsets.UTF_8).length;
+      return Cld2.detect(bytes, off, len);
+    }, (String t) -> t);
+  }
+
+  @Test
+  public void testByteBufferSlice() throws IOException {
+    ByteBuffer direct = ByteBuffer.allocateDirect(64 * 1024);
+    ByteBuffer heap = ByteBuffer.allocate(64 * 1024);
+    run(TestData.TATOEBA, (String t) -> {
+      byte[] bytes = t.getBytes(StandardCharsets.UTF_8);
+      direct.clear();
+      direct.put("<<".getBytes(StandardCharsets.US_ASCII)).put(bytes).put((byte) '>');
+      heap.clear();
+      heap.put(">".getBytes(StandardCharsets.US_ASCII)).put(bytes);
+      Result res = Cld2.detect(direct, 2, bytes.length);
+      assertEquals(res.getLanguage(),
+          Cld2.detect(heap, 1, bytes.length).getLanguage());
+      return res;
+    }, (String t) -> t);
+  }
+
+  @Test
+  public void testDetectSafe() throws IOException {
+    ByteBuffer direct = ByteBuffer.allocateDirect(64 * 1024);
+    run(TestData.TATOEBA, (String t) -> {
+      byte[] bytes = t.getBytes(StandardCharsets.UTF_8);
+      Result expected = Cld2.detect(bytes, 0, bytes.length);
+      Result res = Cld2.detectSafe(bytes, 0, bytes.length, CLDHints.NO_HINTS,
+          0, true);
+      assertEquals(expected.toJSON(), res.toJSON());
+      direct.clear();
+      direct.put((byte) 0).put(bytes).put((byte) 0);
+      res = Cld2.detectSafe(direct, 1, bytes.length, CLDHints.NO_HINTS, 0,
+          true);
+      assertEquals(expected.toJSON(), res.toJSON());
+      // truncated multi-byte sequences and nulls
+      byte[] broken = Arrays.copyOf(bytes, bytes.length + 2);
+      broken[bytes.length] = (byte) 0xe2;
+      broken[bytes.length + 1] = (byte) 0x82;
+      broken[0] = 0;
+      Cld2.detectSafe(broken, 0, broken.length, CLDHints.NO_HINTS, 0, true);
+      return res;
+    }, (String t) -> t);
+  }
+
   @Test
   public void testContentLanguageHint() {
     String text = "\u4eba means person"; // 人 - kanji "person"
@@ -97,11 +154,41 @@ public class DetectionTest {
     }
   }
 
-  private static BufferedReader openTestData(String fileName)
-      throws IOException {
-    return new BufferedReader(new InputStreamReader(
-        DetectionTest.class.getClassLoader().getResourceAsStream(fileName),
-        StandardCharsets.UTF_8));
+  @Test
+  public void testChunks() throws IOException {
+    assumeTrue(Cld2ExtLibrary.AVAILABLE,
+        "CLD2 extension library not available");
+    String english = null, french = null;
+    BufferedReader reader = TestData.openTestData(TestData.TATOEBA);
+    String line;
+    while ((line = reader.readLine()) != null) {
+      String[] fields = line.split("\t");
+      if (english == null && fields[0].equals("en")) {
+        english = fields[3];
+      } else if (french == null && fields[0].equals("fr")) {
+        french = fields[3];
+      }
+    }
+    byte[] bytes = (english + "\n" + french).getBytes(StandardCharsets.UTF_8);
+    Result res = Cld2.detectChunks(bytes, 0, bytes.length, CLDHints.NO_HINTS,
+        0, true);
+    Result expected = Cld2.detect(bytes, 0, bytes.length);
+    assertEquals(expected.getLanguage(), res.getLanguage());
+    assertArrayEquals(expected.language3, res.language3);
+    assertArrayEquals(expected.percent3, res.percent3);
+    // chunks cover the entire input
+    List<ResultChunk> chunks = res.getChunks();
+    assertTrue(chunks.size() >= 2);
+    int offset = 0;
+    Set<String> codes = new HashSet<>();
+    for (ResultChunk chunk : chunks) {
+      assertEquals(offset, chunk.getOffset());
+      offset += chunk.getBytes();
+      codes.add(chunk.getLanguageCode());
+    }
+    assertEquals(bytes.length, offset);
+    assertTrue(codes.contains("en"), "English chunk expected: " + chunks);
+    assertTrue(codes.contains("fr"), "French chunk expected: " + chunks);
   }
 
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.commoncrawl.langdetect.cld2.TestData.assertSameResult;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class DetectorTest {
+
+  @Test
+  public void testDetectInto() throws IOException {
+    CLDHints hints = new CLDHints();
+    ByteBuffer direct = ByteBuffer.allocateDirect(64 * 1024);
+    try (Detector detector = new Detector()) {
+      Result reuse = detector.detect("");
+      int i = 0;
+      for (String[] fields : TestData.readTatoeba()) {
+        i++;
+        String text = fields[3];
+        String snippet = text.substring(0, Math.min(text.length(), 80));
+        // alternate hints to test rewriting the native hints
+        hints.setTopLevelDomainHint((i % 2) == 0 ? "com" : null);
+        hints.setContentLanguageHint((i % 3) == 0 ? "en" : "");
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Result expected = Cld2.detect(bytes, 0, bytes.length, hints, 0, true);
+
+        Result res = detector.detectInto(reuse, text, hints, 0, true);
+        assertSame(reuse, res);
+        assertEquals(fields[0], res.getLanguageCode(),
+            "Wrong language for test " + i + ": " + snippet);
+        assertSameResult(expected, res, snippet);
+
+        res = detector.detectInto(reuse, bytes, 0, bytes.length, hints, 0,
+            true);
+        assertSameResult(expected, res, snippet);
+
+        direct.clear();
+        direct.put((byte) ' ').put(bytes);
+        res = detector.detectInto(reuse, direct, 1, bytes.length, hints, 0,
+            true);
+        assertSameResult(expected, res, snippet);
+      }
+    }
+  }
+
+}
@@ -17,6 +17,7 @@
 package org.commoncrawl.langdetect.cld2;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.charset.Charset;
@@ -58,4 +59,45 @@ public class EncodingTest {
     assertTrue(r2.getLanguageCode().startsWith("zh"));
   }
 
+  @Test
+  public void testTranscoding() {
+    String text = "\u041b\u044e\u0431\u043e\u0439 \u0447\u0435\u043b\u043e"
+        + "\u0432\u0435\u043a \u0438\u043c\u0435\u0435\u0442 \u043f\u0440"
+        + "\u0430\u0432\u043e \u043d\u0430 \u043e\u0431\u0440\u0430\u0437"
+        + "\u043e\u0432\u0430\u043d\u0438\u0435.";
+    Charset koi8r = Charset.forName("KOI8-R");
+    CLDHints hints = new CLDHints();
+    hints.setEncodingHint(koi8r);
+    Result expected = Cld2.detect(text, hints, 0, true);
+    byte[] raw = text.getBytes(koi8r);
+    assertEquals(expected.toJSON(), Cld2.detectCharset(raw, koi8r).toJSON());
+    Detector detector = new Detector();
+    try {
+      Result res = detector.detectInto(null, raw, 0, raw.length, koi8r,
+          CLDHints.NO_HINTS, 0, true);
+      assertEquals(expected.toJSON(), res.toJSON());
+    } finally {
+      detector.close();
+    }
+  }
+
+  @Test
+  public void testWithEncodingHint() {
+    Charset koi8r = Charset.forName("KOI8-R");
+    int koi8rValue = Encoding.RUSSIAN_KOI8_R.value();
+    CLDHints hints = CLDHints.withEncodingHint(null, koi8r);
+    assertEquals(koi8rValue, hints.getEncodingHint());
+    assertTrue(hints.isShared());
+    CLDHints mutable = new CLDHints();
+    mutable.setContentLanguageHint("ru");
+    hints = CLDHints.withEncodingHint(mutable, koi8r);
+    assertEquals(koi8rValue, hints.getEncodingHint());
+    assertEquals("ru", hints.getContentLanguageHint());
+    // mutable hints are not modified
+    assertEquals(Encoding.UNKNOWN_ENCODING.value(), mutable.getEncodingHint());
+    // an explicit encoding hint is kept
+    mutable.setEncodingHint(StandardCharsets.ISO_8859_1);
+    assertSame(mutable, CLDHints.withEncodingHint(mutable, koi8r));
+  }
+
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class HtmlTextExtractorTest {
+
+  private static final String HTML = "<!DOCTYPE html>\n"
+      + "<html lang=\"FR\"><head><title>Caf&eacute; &amp; th&#xE9;</title>\n"
+      + "<style type=\"text/css\">p { color: red; }</style>\n"
+      + "<script>if (a < b && c) { document.write('</p>'); }</script>\n"
+      + "</head>\n<body>\n<!-- <p>commented out</p> -->\n"
+      + "<p class=x>Le caf&eacute;&nbsp;est   chaud.</p>"
+      + "<svg width=\"10\"><text>skipped</text></svg>"
+      + "<img src=\"data:image/png;base64,iVBORw0KGgo=\"/>"
+      + "<p lang=en-US>Hello &#8364;10 &unknown; &lt &#128512;</p>"
+      + "<p xml:lang='fr'>a<b>c</b></SCRIPT></p>\n</body></html>";
+
+  private static final String TEXT = "Caf\u00e9 & th\u00e9 Le caf\u00e9 est"
+      + " chaud. Hello \u20ac10 &unknown; < \ud83d\ude00 a c";
+
+  private static String extract(HtmlTextExtractor extractor, String html) {
+    byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+    int n = extractor.extract(bytes, 0, bytes.length);
+    return new String(extractor.getText(), 0, n, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testExtract() {
+    HtmlTextExtractor extractor = new HtmlTextExtractor();
+    assertEquals(TEXT, extract(extractor, HTML));
+    assertEquals("fr,en-us", extractor.getLanguageHints());
+    assertEquals("", extract(extractor, ""));
+    assertNull(extractor.getLanguageHints());
+    assertEquals("a < b c", extract(extractor, "a < b<br/>c"));
+    assertEquals("x", extract(extractor, "<style>a</style >x"));
+    assertEquals("&&", extract(extractor, "&amp&amp"));
+    assertEquals("a", extract(extractor, "a<scrip"));
+  }
+
+  @Test
+  public void testStreaming() {
+    // pass the page in pieces of any size
+    byte[] bytes = HTML.getBytes(StandardCharsets.UTF_8);
+    HtmlTextExtractor extractor = new HtmlTextExtractor();
+    for (int size = 1; size < 20; size++) {
+      extractor.reset();
+      for (int off = 0; off < bytes.length; off += size) {
+        extractor.write(bytes, off, Math.min(size, bytes.length - off));
+      }
+      extractor.finish();
+      assertEquals(TEXT, new String(extractor.getText(), 0,
+          extractor.getTextLength(), StandardCharsets.UTF_8));
+      assertEquals("fr,en-us", extractor.getLanguageHints());
+    }
+  }
+
+  @Test
+  public void testDetect() {
+    HtmlTextExtractor extractor = new HtmlTextExtractor();
+    byte[] bytes = HTML.getBytes(StandardCharsets.UTF_8);
+    Result res = extractor.detect(bytes, 0, bytes.length, CLDHints.NO_HINTS,
+        0);
+    assertEquals(Cld2.detect(TEXT.getBytes(StandardCharsets.UTF_8),
+        CLDHints.intern("fr,en-us", "", Encoding.UNKNOWN_ENCODING.value(),
+            Language.UNKNOWN_LANGUAGE.value()), 0, true).toJSON(),
+        res.toJSON());
+    assertEquals(TEXT.getBytes(StandardCharsets.UTF_8).length,
+        res.getBytesExamined());
+    // an explicit content language hint is kept
+    CLDHints hints = new CLDHints();
+    hints.setContentLanguageHint("de");
+    assertEquals(hints, extractor.withLanguageHints(hints));
+  }
+
+}
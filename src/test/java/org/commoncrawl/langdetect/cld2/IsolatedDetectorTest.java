@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class IsolatedDetectorTest {
+
+  private static List<byte[]> readDocs() throws IOException {
+    List<byte[]> docs = new ArrayList<>();
+    for (String text : TestData.readTatoebaTexts()) {
+      docs.add(text.getBytes(StandardCharsets.UTF_8));
+    }
+    return docs;
+  }
+
+  @Test
+  public void testDetect() throws IOException {
+    List<byte[]> docs = readDocs();
+    CLDHints hints = new CLDHints();
+    hints.setTopLevelDomainHint("fr");
+    try (IsolatedDetector detector = new IsolatedDetector(2)) {
+      Result[] results = detector.detectAll(docs, hints, 0, true);
+      for (int i = 0; i < docs.size(); i++) {
+        byte[] doc = docs.get(i);
+        Result expected = Cld2.detect(doc, 0, doc.length, hints, 0, true);
+        assertEquals(expected.toJSON(), results[i].toJSON());
+        assertEquals(doc.length, results[i].getBytesExamined());
+        assertEquals(expected.toJSON(),
+            detector.detect(doc, 0, doc.length, hints, 0, true).toJSON());
+      }
+      assertEquals(Cld2.detect("Text in a worker").toJSON(),
+          detector.detect("Text in a worker").toJSON());
+      assertEquals(0, detector.getCrashCount());
+    }
+  }
+
+  @Test
+  public void testCrash() throws IOException {
+    List<byte[]> docs = readDocs();
+    byte[] crash = "CRASH".getBytes(StandardCharsets.UTF_8);
+    docs.add(3, crash);
+    docs.add(100, crash);
+    List<WorkerCrashException> crashes = new ArrayList<>();
+    try (IsolatedDetector detector = new IsolatedDetector(1,
+        Collections.emptyList(), CrashingDetectionWorker.class.getName())) {
+      detector.setCrashHandler(crashes::add);
+      Result[] results = detector.detectAll(docs);
+      for (int i = 0; i < docs.size(); i++) {
+        if (i == 3 || i == 100) {
+          assertNull(results[i]);
+          continue;
+        }
+        assertEquals(Cld2.detect(docs.get(i), 0, docs.get(i).length).toJSON(),
+            results[i].toJSON());
+      }
+      assertEquals(2, crashes.size());
+      assertArrayEquals(crash, crashes.get(0).getRecord());
+      assertEquals(139, crashes.get(0).getExitCode());
+
+      WorkerCrashException e = assertThrows(WorkerCrashException.class,
+          () -> detector.detect("CRASH", CLDHints.NO_HINTS, 0, true));
+      assertArrayEquals(crash, e.getRecord());
+      assertEquals(3, detector.getCrashCount());
+
+      // restarted worker
+      assertEquals(Cld2.detect("after the crash").toJSON(),
+          detector.detect("after the crash").toJSON());
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+public class LanguageTest {
+
+  @Test
+  public void testCodesAndNames() {
+    for (Language lang : Language.values()) {
+      assertEquals(Cld2.getLanguageCode(lang.value()), lang.getCode());
+      assertEquals(Cld2.getLanguageName(lang.value()), lang.getInternalName());
+      assertEquals(lang.getCode(), Language.getCode(lang.value()));
+      assertEquals(lang.getInternalName(),
+          Language.getInternalName(lang.value()));
+      assertEquals(lang, Language.get(lang.value()));
+    }
+    assertEquals("en", Language.ENGLISH.getCode());
+    assertEquals("ENGLISH", Language.ENGLISH.getInternalName());
+  }
+
+  @Test
+  public void testLocales() {
+    assertEquals(Language.ENGLISH, Language.fromLocale(Locale.ENGLISH));
+    assertEquals(Language.FRENCH, Language.fromLocale(Locale.FRANCE));
+    assertEquals(Language.UNKNOWN_LANGUAGE, Language.fromLocale(Locale.ROOT));
+    assertEquals("eng", Language.ENGLISH.getCodeISO639_3());
+    assertEquals("fra", Language.FRENCH.getCodeISO639_3());
+  }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ResultWriterTest {
+
+  private static List<Result> readResults() throws IOException {
+    List<Result> results = new ArrayList<>();
+    for (String text : TestData.readTatoebaTexts()) {
+      results.add(Cld2.detect(text));
+    }
+    results.add(Cld2.detect(""));
+    return results;
+  }
+
+  @Test
+  public void testJSON() throws IOException {
+    ResultWriter writer = new ResultWriter();
+    StringBuilder sb = new StringBuilder();
+    StringWriter sw = new StringWriter();
+    ByteBuffer bb = ByteBuffer.allocate(1 << 20);
+    StringBuilder expected = new StringBuilder();
+    for (Result res : readResults()) {
+      for (int pruning = 0; pruning < 2; pruning++) {
+        if (pruning > 0) {
+          res.configurePruning(0, 50, 0.0);
+        }
+        expected.append(res.toJSON()).append('\n');
+        writer.appendJSON(res, sb);
+        sb.append('\n');
+        writer.appendJSON(res, sw);
+        sw.write('\n');
+        writer.appendJSON(res, bb);
+        bb.put((byte) '\n');
+      }
+    }
+    assertEquals(expected.toString(), sb.toString());
+    assertEquals(expected.toString(), sw.toString());
+    bb.flip();
+    assertEquals(expected.toString(),
+        StandardCharsets.UTF_8.decode(bb).toString());
+  }
+
+  @Test
+  public void testFields() throws IOException {
+    Result res = Cld2.detect("This is a test for the result writer.");
+    String code = res.getLanguageCode();
+    StringBuilder sb = new StringBuilder();
+    new ResultWriter(EnumSet.of(ResultWriter.Field.CODE)).appendJSON(res, sb);
+    assertEquals("{\"languages\":[{\"code\":\"" + code + "\"}",
+        sb.substring(0, sb.indexOf("}") + 1));
+    sb.setLength(0);
+    new ResultWriter(EnumSet.of(ResultWriter.Field.RELIABLE))
+        .appendJSON(res, sb);
+    assertEquals("{\"reliable\":" + res.isReliable() + "}", sb.toString());
+    sb.setLength(0);
+    new ResultWriter(EnumSet.of(ResultWriter.Field.CODE,
+        ResultWriter.Field.PERCENT, ResultWriter.Field.TEXT_BYTES))
+            .appendTSV(res, sb);
+    String[] fields = sb.toString().split("\t", -1);
+    assertEquals(7, fields.length);
+    assertEquals(Integer.toString(res.getTextBytes()), fields[0]);
+    assertEquals(code, fields[1]);
+    assertEquals(Integer.toString(res.percent3[0]), fields[2]);
+    // buffer too small: nothing is written
+    ByteBuffer bb = ByteBuffer.allocate(10);
+    assertThrows(BufferOverflowException.class,
+        () -> new ResultWriter().appendJSON(res, bb));
+    assertEquals(0, bb.position());
+  }
+
+}
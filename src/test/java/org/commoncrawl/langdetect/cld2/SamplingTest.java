@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class SamplingTest {
+
+  /** @return all tatoeba texts joined by a space */
+  private static String readDocument() throws IOException {
+    return String.join(" ", TestData.readTatoebaTexts());
+  }
+
+  private static String sample(Sampling sampling, byte[] bytes)
+      throws CharacterCodingException {
+    NativeBuffer buffer = new NativeBuffer();
+    try {
+      int length = sampling.sample(bytes, 0, bytes.length, buffer);
+      assertTrue(length <= Math.max(bytes.length, sampling.getMaxBytes()));
+      assertEquals(0, buffer.pointer().getByte(length));
+      // samples must be valid UTF-8
+      return StandardCharsets.UTF_8.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPORT)
+          .decode(ByteBuffer.wrap(buffer.pointer().getByteArray(0, length)))
+          .toString();
+    } finally {
+      buffer.close();
+    }
+  }
+
+  @Test
+  public void testPrefix() throws IOException {
+    String document = readDocument();
+    byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+    for (int maxBytes = 1; maxBytes < 2000; maxBytes += 7) {
+      String sample = sample(Sampling.prefix(maxBytes), bytes);
+      assertTrue(document.startsWith(sample));
+      // cut at most one character (up to 4 bytes)
+      int sampleBytes = sample.getBytes(StandardCharsets.UTF_8).length;
+      assertTrue(sampleBytes > maxBytes - 4 && sampleBytes <= maxBytes);
+    }
+    Result res = Cld2.detect(bytes, 0, bytes.length, CLDHints.NO_HINTS, 0,
+        true, Sampling.prefix(1000));
+    assertTrue(res.getBytesExamined() <= 1000);
+    String prefix = sample(Sampling.prefix(1000), bytes);
+    Result expected = Cld2.detect(prefix);
+    assertEquals(expected.getLanguage(), res.getLanguage());
+    assertEquals(expected.getBytesExamined(), res.getBytesExamined());
+    assertEquals(expected.getLanguage(), Cld2.detect(document,
+        CLDHints.NO_HINTS, 0, true, Sampling.prefix(1000)).getLanguage());
+  }
+
+  @Test
+  public void testEvenly() throws IOException {
+    String document = readDocument();
+    byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+    for (int numSamples = 1; numSamples <= 10; numSamples++) {
+      Sampling sampling = Sampling.evenly(1000 + numSamples, numSamples);
+      String[] samples = sample(sampling, bytes).split("\n");
+      assertEquals(numSamples, samples.length);
+      assertTrue(document.startsWith(samples[0]));
+      int pos = 0;
+      for (String sample : samples) {
+        int found = document.indexOf(sample, pos);
+        assertTrue(found >= pos, "Sample not found: " + sample);
+        pos = found + sample.length();
+      }
+      if (numSamples > 1) {
+        assertTrue(document.endsWith(samples[numSamples - 1]));
+      }
+      Result res = Cld2.detect(bytes, 0, bytes.length, CLDHints.NO_HINTS, 0,
+          true, sampling);
+      assertTrue(res.getBytesExamined() <= sampling.getMaxBytes());
+    }
+  }
+
+  @Test
+  public void testWithinBudget() throws IOException {
+    byte[] bytes = readDocument().getBytes(StandardCharsets.UTF_8);
+    Result res = Cld2.detect(bytes, 0, bytes.length, CLDHints.NO_HINTS, 0,
+        true, Sampling.evenly(bytes.length, 5));
+    assertEquals(bytes.length, res.getBytesExamined());
+    assertEquals(Cld2.detect(bytes, 0, bytes.length).getLanguage(),
+        res.getLanguage());
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class ScriptDetectorTest {
+
+  @Test
+  public void testTatoeba() throws IOException {
+    // the tatoeba data holds the languages detected by CLD2
+    ScriptDetector detector = new ScriptDetector();
+    Set<String> classified = new HashSet<>();
+    for (String[] line : TestData.readTatoeba()) {
+      String text = line[3];
+      Language language = detector.classify(text);
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      assertEquals(language, detector.classify(bytes, 0, bytes.length), text);
+      if (language != null) {
+        assertEquals(line[1], language.getCodeISO639_3(), text);
+        classified.add(line[1]);
+      }
+    }
+    // Greek, Armenian, Georgian, Thai, Lao, Khmer, Burmese, Sinhala, Cherokee,
+    // and the Indic languages with their own script
+    for (String code : new String[] { "ell", "hye", "kat", "tha", "lao",
+        "khm", "mya", "sin", "chr", "guj", "pan", "ori", "tam", "tel", "kan",
+        "mal" }) {
+      assertTrue(classified.contains(code), code);
+    }
+    // Yiddish shares the Hebrew script, Russian the Cyrillic one
+    assertTrue(!classified.contains("yid") && !classified.contains("heb"));
+    assertTrue(!classified.contains("rus"));
+  }
+
+  @Test
+  public void testClassify() {
+    ScriptDetector detector = new ScriptDetector(12);
+    // "Kalimera kosme" in Greek, with digits and punctuation
+    String greek = "\u039a\u03b1\u03bb\u03b7\u03bc\u03ad\u03c1\u03b1 "
+        + "\u03ba\u03cc\u03c3\u03bc\u03b5, 2018!";
+    assertEquals(Language.GREEK, detector.classify(greek));
+    // Latin letters
+    assertNull(detector.classify(greek + " ok"));
+    assertNull(detector.classify("caf\u00e9 " + greek));
+    // mixed scripts: Greek and Armenian
+    assertNull(detector.classify(greek + " \u0562\u0561\u0580\u0587"));
+    // no letters, too little text
+    assertNull(detector.classify("1234 !?"));
+    assertNull(detector.classify("\u039a\u03b1\u03bb\u03b7"));
+    // Thai with combining vowel and tone marks
+    assertEquals(Language.THAI,
+        detector.classify("\u0e2a\u0e27\u0e31\u0e2a\u0e14\u0e35"));
+    // Hebrew script is shared by Hebrew and Yiddish
+    assertNull(detector.classify("\u05e9\u05dc\u05d5\u05dd \u05e2\u05d5\u05dc\u05dd"));
+    // ill-formed UTF-8
+    byte[] bytes = greek.getBytes(StandardCharsets.UTF_8);
+    assertEquals(Language.GREEK, detector.classify(bytes, 0, bytes.length));
+    assertNull(detector.classify(bytes, 1, bytes.length - 1));
+  }
+
+  @Test
+  public void testDetect() {
+    ScriptDetector detector = new ScriptDetector();
+    String text = "\u10d2\u10d0\u10db\u10d0\u10e0\u10ef\u10dd\u10d1\u10d0 "
+        + "\u10db\u10e1\u10dd\u10e4\u10da\u10d8\u10dd";
+    Result res = detector.detect(text);
+    assertEquals(Language.GEORGIAN.value(), res.getLanguage());
+    assertTrue(res.isReliable());
+    assertEquals(text.getBytes(StandardCharsets.UTF_8).length,
+        res.getBytesExamined());
+    // approximated text bytes: one space per word and the letters
+    assertEquals(1 + 27 + 1 + 21, res.getTextBytes());
+    assertEquals(1, res.getLanguages().length);
+    assertEquals(1, detector.getFastPathCount());
+    // HTML and flags are passed on to CLD2
+    detector.detect(text, CLDHints.NO_HINTS, 0, false);
+    detector.detect(text, CLDHints.NO_HINTS, Flags.BEST_EFFORT.get(), true);
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    assertEquals(Language.GEORGIAN.value(),
+        detector.detect(bytes, 0, bytes.length).getLanguage());
+    assertEquals(2, detector.getFastPathCount());
+    assertEquals(2, detector.getPassedOnCount());
+  }
+
+  @Test
+  public void testAgreement() throws IOException {
+    // verification mode: fast path and CLD2 must agree on language and
+    // reliability, the other fields of the fast path are approximations
+    ScriptDetector detector = new ScriptDetector();
+    for (String[] line : TestData.readTatoeba()) {
+      String text = line[3];
+      if (detector.classify(text) != null) {
+        Result expected = Cld2.detect(text);
+        Result res = detector.detect(text);
+        assertEquals(expected.getLanguage(), res.getLanguage(), text);
+        assertEquals(expected.isReliable(), res.isReliable(), text);
+      }
+    }
+  }
+
+}
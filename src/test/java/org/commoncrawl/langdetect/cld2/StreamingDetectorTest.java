@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class StreamingDetectorTest {
+
+  private static List<String> readLines(InputStream in) throws IOException {
+    List<String> lines = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+
+  @Test
+  public void testTsv() throws IOException {
+    List<String> input = readLines(TestData.openStream(TestData.TATOEBA));
+    // small ring buffer to test back-pressure
+    StreamingDetector detector = new StreamingDetector(3, 4);
+    detector.setTextColumn(3);
+    detector.setSkipHeader(true);
+    detector.setFormatter((record, res) -> res.getLanguageCode());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    long n;
+    try (InputStream in = TestData.openStream(TestData.TATOEBA)) {
+      n = detector.run(in, out);
+    }
+    List<String> output = readLines(
+        new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(input.size() - 1, n);
+    assertEquals(input.size(), output.size());
+    assertEquals(input.get(0), output.get(0));
+    for (int i = 1; i < input.size(); i++) {
+      String[] fields = input.get(i).split("\t");
+      assertEquals(Cld2.detect(fields[3]).getLanguageCode(), output.get(i),
+          "Wrong order or result for line " + i);
+      assertEquals(fields[0], output.get(i), "Wrong language for line " + i);
+    }
+  }
+
+  @Test
+  public void testLines() throws IOException {
+    List<String> texts = TestData.readTatoebaTexts();
+    StreamingDetector detector = new StreamingDetector(2, 16);
+    StringWriter out = new StringWriter();
+    detector.run(new BufferedReader(new StringReader(String.join("\n", texts))),
+        out);
+    String[] output = out.toString().split("\n");
+    assertEquals(texts.size(), output.length);
+    for (int i = 0; i < texts.size(); i++) {
+      assertEquals(texts.get(i) + '\t' + Cld2.detect(texts.get(i)).toJSON(),
+          output[i]);
+    }
+  }
+
+  @Test
+  public void testFailure() {
+    StreamingDetector detector = new StreamingDetector(2, 2);
+    detector.setFormatter((record, res) -> {
+      throw new IllegalStateException("failed: " + record);
+    });
+    assertThrows(IOException.class, () -> detector.run(
+        new BufferedReader(new StringReader("a\nb\nc\nd\ne\n")),
+        new StringWriter()));
+  }
+
+  @Test
+  public void testError() {
+    // errors thrown by a worker must not leave the writer waiting
+    StreamingDetector detector = new StreamingDetector(2, 2);
+    detector.setFormatter((record, res) -> {
+      throw new UnsatisfiedLinkError("failed: " + record);
+    });
+    IOException e = assertTimeoutPreemptively(Duration.ofSeconds(30),
+        () -> assertThrows(IOException.class, () -> detector.run(
+            new BufferedReader(new StringReader("a\nb\nc\nd\ne\n")),
+            new StringWriter())));
+    assertInstanceOf(UnsatisfiedLinkError.class, e.getCause());
+  }
+
+}
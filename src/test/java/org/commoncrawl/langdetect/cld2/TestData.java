@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test data and assertions shared by the tests.
+ */
+final class TestData {
+
+  /**
+   * Sentences from Tatoeba, see <code>tatoeba/README.md</code>. Tab-separated
+   * columns: CLD2 language code, CLD2 ISO-639-3 code, Tatoeba ISO-639-3 code
+   * and text, the first line is a header.
+   */
+  static final String TATOEBA = "tatoeba/tatoeba_long.txt";
+
+  private TestData() {
+  }
+
+  static InputStream openStream(String fileName) {
+    return TestData.class.getClassLoader().getResourceAsStream(fileName);
+  }
+
+  static BufferedReader openTestData(String fileName) {
+    return new BufferedReader(
+        new InputStreamReader(openStream(fileName), StandardCharsets.UTF_8));
+  }
+
+  /** @return lines of the Tatoeba test data split into columns */
+  static List<String[]> readTatoeba() throws IOException {
+    List<String[]> lines = new ArrayList<>();
+    try (BufferedReader reader = openTestData(TATOEBA)) {
+      reader.readLine(); // header line
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line.split("\t"));
+      }
+    }
+    return lines;
+  }
+
+  /** @return texts of the Tatoeba test data */
+  static List<String> readTatoebaTexts() throws IOException {
+    List<String> texts = new ArrayList<>();
+    for (String[] line : readTatoeba()) {
+      texts.add(line[3]);
+    }
+    return texts;
+  }
+
+  static void assertSameResult(Result expected, Result actual,
+      String message) {
+    assertEquals(expected.getLanguage(), actual.getLanguage(), message);
+    assertArrayEquals(expected.language3, actual.language3, message);
+    assertArrayEquals(expected.percent3, actual.percent3, message);
+    assertArrayEquals(expected.normalizedScore3, actual.normalizedScore3,
+        message);
+    assertArrayEquals(expected.textBytes, actual.textBytes, message);
+    assertArrayEquals(expected.isReliable, actual.isReliable, message);
+  }
+
+}
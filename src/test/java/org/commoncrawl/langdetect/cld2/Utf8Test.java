@@ -0,0 +1,287 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class Utf8Test {
+
+  private static void assertEncoding(byte[] expected, String text) {
+    char[] chars = text.toCharArray();
+    assertEquals(expected.length, Utf8.encodedLength(chars, chars.length),
+        text);
+    byte[] cbytes = Cld2.encodeNative(text);
+    assertEquals(expected.length + 1, cbytes.length, text);
+    assertArrayEquals(expected, Arrays.copyOf(cbytes, expected.length), text);
+    assertEquals(0, cbytes[expected.length]);
+
+    NativeBuffer buffer = new NativeBuffer();
+    try {
+      int length = buffer.putUtf8(new StringBuilder(text));
+      assertEquals(expected.length, length, text);
+      length = buffer.putUtf8(text);
+      assertEquals(expected.length, length, text);
+      assertArrayEquals(expected,
+          buffer.pointer().getByteArray(0, expected.length), text);
+      assertEquals(0, buffer.pointer().getByte(length));
+    } finally {
+      buffer.close();
+    }
+
+    // encode at an offset
+    byte[] out = new byte[3 * text.length() + 2];
+    assertEquals(expected.length, Utf8.encode(chars, chars.length, out, 2));
+    assertArrayEquals(expected, Arrays.copyOfRange(out, 2,
+        2 + expected.length), text);
+  }
+
+  @Test
+  public void testPutAtOffset() {
+    NativeBuffer buffer = new NativeBuffer();
+    try {
+      // grow the buffer while keeping the content written before
+      StringBuilder sb = new StringBuilder();
+      int offset = 0;
+      for (int i = 0; i < 1000; i++) {
+        String text = i + ": \u00e9t\u00e9 \u4eba\n";
+        sb.append(text);
+        offset += buffer.putUtf8(text, offset) - 1;
+      }
+      byte[] expected = sb.toString().getBytes(StandardCharsets.UTF_8);
+      assertEquals(expected.length, offset);
+      assertArrayEquals(expected, buffer.pointer().getByteArray(0, offset));
+      assertEquals(0, buffer.pointer().getByte(offset));
+    } finally {
+      buffer.close();
+    }
+  }
+
+  @Test
+  public void testReleaseScratch() {
+    NativeBuffer buffer = new NativeBuffer();
+    try {
+      char[] large = new char[NativeBuffer.MAX_SCRATCH_SIZE];
+      Arrays.fill(large, '\u00e9');
+      String text = new String(large);
+      int length = buffer.putUtf8(text);
+      assertEquals(2 * large.length, length);
+      assertTrue(buffer.utf8().length > NativeBuffer.MAX_SCRATCH_SIZE);
+      assertEquals(text, new String(buffer.utf8(), 0, length,
+          StandardCharsets.UTF_8));
+      // released by the next call with short input
+      length = buffer.putUtf8("\u00e9t\u00e9");
+      assertEquals(5, length);
+      assertTrue(buffer.utf8().length <= NativeBuffer.MAX_SCRATCH_SIZE);
+      byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+      length = buffer.putDecoded(bytes, 0, bytes.length,
+          StandardCharsets.ISO_8859_1);
+      assertEquals(2 * large.length, length);
+      buffer.putUtf8("\u00e9t\u00e9");
+      assertTrue(buffer.utf8().length <= NativeBuffer.MAX_SCRATCH_SIZE);
+    } finally {
+      buffer.close();
+    }
+  }
+
+  private static void assertEncoding(String text) {
+    assertEncoding(text.getBytes(StandardCharsets.UTF_8), text);
+  }
+
+  @Test
+  public void testEncode() throws IOException {
+    assertEncoding("");
+    assertEncoding("ASCII only");
+    assertEncoding("Latin-1: \u00e9t\u00e9 \u00fc\u00df \u00ff");
+    assertEncoding("BMP: \u4eba \u0928\u092e\u0938\u094d\u0924\u0947 \uffef");
+    assertEncoding("supplementary: \ud83d\ude00 \ud840\udc0b");
+    try (BufferedReader reader = TestData.openTestData(TestData.TATOEBA)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        assertEncoding(line);
+      }
+    }
+  }
+
+  @Test
+  public void testUnpairedSurrogates() {
+    byte[] replacement = { (byte) 0xef, (byte) 0xbf, (byte) 0xbd };
+    assertEncoding(replacement, "\ud83d");
+    assertEncoding(replacement, "\ude00");
+    byte[] expected = "a\ufffdb\ufffd\ufffd\ud83d\ude00\ufffd"
+        .getBytes(StandardCharsets.UTF_8);
+    assertEncoding(expected, "a\ud83db\ude00\ud83d\ud83d\ude00\ude00");
+  }
+
+  private static byte[] sanitize(byte[] input) {
+    ByteBuffer dst = ByteBuffer.allocate(3 * input.length + 1);
+    int n = Utf8.sanitize(ByteBuffer.wrap(input), 0, input.length, dst, 0);
+    assertEquals(0, dst.get(n));
+    return Arrays.copyOf(dst.array(), n);
+  }
+
+  private static byte[] bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+
+  @Test
+  public void testSanitize() {
+    byte[] replacement = bytes(0xef, 0xbf, 0xbd);
+    String valid = "ASCII text, \u00e9t\u00e9 \u4eba \ud83d\ude00 and more ASCII text";
+    byte[] bytes = valid.getBytes(StandardCharsets.UTF_8);
+    assertArrayEquals(bytes, sanitize(bytes));
+    assertArrayEquals("nulls removed".getBytes(StandardCharsets.UTF_8),
+        sanitize("\u0000nulls\u0000 removed\u0000"
+            .getBytes(StandardCharsets.UTF_8)));
+    // continuation byte, overlong, surrogate, above U+10FFFF, invalid bytes
+    assertArrayEquals(replacement, sanitize(bytes(0x80)));
+    assertArrayEquals(concat(replacement, replacement),
+        sanitize(bytes(0xc0, 0xaf)));
+    assertArrayEquals(concat(replacement, replacement, replacement),
+        sanitize(bytes(0xed, 0xa0, 0x80)));
+    assertArrayEquals(concat(replacement, replacement, replacement,
+        replacement), sanitize(bytes(0xf4, 0x90, 0x80, 0x80)));
+    assertArrayEquals(concat(replacement, replacement),
+        sanitize(bytes(0xfe, 0xff)));
+    // truncated sequences: one replacement per maximal subpart
+    assertArrayEquals(concat(bytes('a'), replacement, bytes('b')),
+        sanitize(bytes('a', 0xe2, 0x82, 'b')));
+    assertArrayEquals(concat(bytes('a'), replacement),
+        sanitize(bytes('a', 0xf0, 0x9f, 0x98)));
+  }
+
+  private static byte[] concat(byte[]... arrays) {
+    int length = 0;
+    for (byte[] a : arrays) {
+      length += a.length;
+    }
+    byte[] res = new byte[length];
+    int pos = 0;
+    for (byte[] a : arrays) {
+      System.arraycopy(a, 0, res, pos, a.length);
+      pos += a.length;
+    }
+    return res;
+  }
+
+  @Test
+  public void testSanitizeRandom() throws CharacterCodingException {
+    Random random = new Random(42);
+    int[] pool = { 0, 'a', 'Z', ' ', 0x7f, 0x80, 0x8f, 0x90, 0x9f, 0xa0, 0xbf,
+        0xc0, 0xc2, 0xdf, 0xe0, 0xe2, 0xed, 0xef, 0xf0, 0xf4, 0xf5, 0xff };
+    CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+    for (int n = 0; n < 10000; n++) {
+      byte[] input = new byte[random.nextInt(40)];
+      for (int i = 0; i < input.length; i++) {
+        input[i] = (byte) (random.nextInt(3) == 0 ? 'x'
+            : pool[random.nextInt(pool.length)]);
+      }
+      String message = Arrays.toString(input);
+      byte[] output = sanitize(input);
+      // well-formed (throws exception otherwise) and without nulls
+      String decoded = decoder.decode(ByteBuffer.wrap(output)).toString();
+      assertEquals(-1, decoded.indexOf('\u0000'), message);
+      // the JDK decoder replaces the same ill-formed sequences, but not
+      // always by the same number of replacement characters
+      String expected = new String(input, StandardCharsets.UTF_8)
+          .replace("\u0000", "");
+      assertEquals(expected.replaceAll("\ufffd+", "\ufffd"),
+          decoded.replaceAll("\ufffd+", "\ufffd"), message);
+    }
+    // example given in the Unicode standard, section 3.9
+    assertEquals("a\ufffd\ufffd\ufffdb\ufffdc\ufffd\ufffdd",
+        new String(sanitize(bytes(0x61, 0xf1, 0x80, 0x80, 0xe1, 0x80, 0xc2,
+            0x62, 0x80, 0x63, 0x80, 0xbf, 0x64)), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testPutSanitized() {
+    NativeBuffer buffer = new NativeBuffer();
+    try {
+      // invalid bytes only: output three times the input
+      byte[] input = new byte[10000];
+      Arrays.fill(input, (byte) 0xff);
+      ByteBuffer heap = ByteBuffer.wrap(input);
+      int n = buffer.putSanitized(heap, 0, input.length);
+      assertEquals(3 * input.length, n);
+      assertEquals(0, buffer.pointer().getByte(n));
+      ByteBuffer direct = ByteBuffer.allocateDirect(20)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      direct.put("0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII));
+      n = buffer.putSanitized(direct, 1, 18);
+      assertEquals("123456789abcdefghi",
+          new String(buffer.pointer().getByteArray(0, n),
+              StandardCharsets.US_ASCII));
+      assertEquals(0, buffer.pointer().getByte(n));
+    } finally {
+      buffer.close();
+    }
+  }
+
+  @Test
+  public void testPutDecoded() {
+    String text = "Fran\u00e7ais, \u0440\u0443\u0441\u0441\u043a\u0438\u0439, "
+        + "\u65e5\u672c\u8a9e, \u20ac 10";
+    String[] charsets = { "ISO-8859-15", "windows-1252", "KOI8-R", "Shift_JIS",
+        "EUC-JP", "UTF-16LE", "UTF-8" };
+    NativeBuffer buffer = new NativeBuffer();
+    try {
+      for (String name : charsets) {
+        Charset charset = Charset.forName(name);
+        byte[] raw = text.getBytes(charset);
+        // unmappable characters are replaced when encoding, decode the same
+        byte[] expected = new String(raw, charset)
+            .getBytes(StandardCharsets.UTF_8);
+        byte[] padded = concat(bytes('x'), raw, bytes('y'));
+        int n = buffer.putDecoded(padded, 1, raw.length, charset);
+        assertArrayEquals(expected, buffer.pointer().getByteArray(0, n), name);
+        assertEquals(0, buffer.pointer().getByte(n), name);
+      }
+      // malformed input
+      int n = buffer.putDecoded(bytes('a', 0x82, ' ', 'b'), 0, 4,
+          Charset.forName("Shift_JIS"));
+      assertEquals("a\ufffd b", new String(buffer.pointer().getByteArray(0, n),
+          StandardCharsets.UTF_8));
+      // grows the character buffer
+      byte[] large = new byte[100000];
+      Arrays.fill(large, (byte) 0xe9);
+      n = buffer.putDecoded(large, 0, large.length, StandardCharsets.ISO_8859_1);
+      assertEquals(2 * large.length, n);
+    } finally {
+      buffer.close();
+    }
+  }
+
+}
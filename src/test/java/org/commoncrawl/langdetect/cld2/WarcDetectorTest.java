@@ -0,0 +1,261 @@
+/*
+ * Copyright 2018 commoncrawl.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.commoncrawl.langdetect.cld2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WarcDetectorTest {
+
+  @TempDir
+  Path tempDir;
+
+  private final List<String> expected = new ArrayList<>();
+
+  private static byte[] bytes(String s, Charset charset) {
+    return s.getBytes(charset);
+  }
+
+  private static byte[] record(String type, String id, String uri,
+      byte[] block) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(bytes("WARC/1.0\r\nWARC-Type: " + type + "\r\nWARC-Record-ID: "
+        + id + "\r\nWARC-Target-URI: " + uri + "\r\nContent-Length: "
+        + block.length + "\r\n\r\n", StandardCharsets.UTF_8));
+    out.write(block);
+    out.write(bytes("\r\n\r\n", StandardCharsets.UTF_8));
+    return out.toByteArray();
+  }
+
+  private static byte[] response(String contentType, String contentLanguage,
+      byte[] payload) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(bytes("HTTP/1.1 200 OK\r\nContent-Type: " + contentType + "\r\n"
+        + (contentLanguage == null ? ""
+            : "Content-Language: " + contentLanguage + "\r\n")
+        + "\r\n", StandardCharsets.UTF_8));
+    out.write(payload);
+    return out.toByteArray();
+  }
+
+  private static byte[] gzip(byte[] record, int level) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gz = new GZIPOutputStream(out) {
+      {
+        def.setLevel(level);
+      }
+    }) {
+      gz.write(record);
+    }
+    return out.toByteArray();
+  }
+
+  private void expect(String id, String uri, Result res) {
+    expected.add(id + '\t' + uri + '\t'
+        + String.join(",", res.getLanguageCodes()) + '\t' + res.isReliable());
+  }
+
+  /** Write a WARC file and the expected results */
+  private Path writeWarc(boolean compressed) throws IOException {
+    expected.clear();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    List<String> lines = TestData.readTatoebaTexts();
+    int n = 0;
+    for (String text : lines) {
+      n++;
+      String id = "<urn:uuid:" + n + ">";
+      String uri = "http://www.example" + n + (n % 2 == 0 ? ".fr" : ".com")
+          + ":8080/page?n=" + n;
+      byte[] record;
+      switch (n % 5) {
+      case 0: {
+        // WET text conversion
+        byte[] block = bytes(text, StandardCharsets.UTF_8);
+        record = record("conversion", id, uri, block);
+        expect(id, uri, Cld2.detect(block, 0, block.length,
+            StandardCharsets.UTF_8,
+            CLDHints.intern(WarcDetector.host(uri), null),
+            0, true));
+        break;
+      }
+      case 1: {
+        // HTML page in UTF-8, with gzip magic bytes in the stored member
+        ByteArrayOutputStream html = new ByteArrayOutputStream();
+        html.write(bytes("<html><body><p>" + text, StandardCharsets.UTF_8));
+        html.write(new byte[] { 0x1f, (byte) 0x8b, 8, 0, 0, 0 });
+        html.write(bytes("</p></body></html>", StandardCharsets.UTF_8));
+        byte[] payload = html.toByteArray();
+        record = record("response", id, uri,
+            response("text/html", "ja", payload));
+        expect(id, uri, Cld2.detect(payload, 0, payload.length,
+            StandardCharsets.UTF_8,
+            CLDHints.intern(WarcDetector.host(uri), "ja"),
+            0, false));
+        break;
+      }
+      case 2: {
+        // HTML page in a legacy charset
+        Charset charset = StandardCharsets.ISO_8859_1;
+        byte[] payload = bytes("<p>" + text + "</p>", charset);
+        record = record("response", id, uri,
+            response("text/html; charset=\"ISO-8859-1\"", null, payload));
+        expect(id, uri, Cld2.detect(payload, 0, payload.length, charset,
+            CLDHints.intern(WarcDetector.host(uri), null), 0, false));
+        break;
+      }
+      case 3:
+        // skipped: request record and image
+        record = record("request", id, uri,
+            bytes("GET / HTTP/1.1\r\n\r\n", StandardCharsets.UTF_8));
+        out.write(compressed ? gzip(record, Deflater.DEFAULT_COMPRESSION)
+            : record);
+        record = record("response", id, uri,
+            response("image/png", null, new byte[] { 1, 2, 3 }));
+        break;
+      default: {
+        byte[] payload = bytes(text, StandardCharsets.UTF_8);
+        record = record("response", id, uri,
+            response("text/plain;charset=utf-8", null, payload));
+        expect(id, uri, Cld2.detect(payload, 0, payload.length,
+            StandardCharsets.UTF_8,
+            CLDHints.intern(WarcDetector.host(uri), null),
+            0, true));
+      }
+      }
+      out.write(compressed
+          ? gzip(record, n % 5 == 1 ? Deflater.NO_COMPRESSION
+              : Deflater.DEFAULT_COMPRESSION)
+          : record);
+    }
+    Path file = tempDir.resolve(compressed ? "test.warc.gz" : "test.warc");
+    Files.write(file, out.toByteArray());
+    return file;
+  }
+
+  private List<String> run(Path file, int threads, long chunkSize,
+      boolean json) throws IOException {
+    WarcDetector detector = new WarcDetector(threads);
+    detector.setChunkSize(chunkSize);
+    detector.setJson(json);
+    StringWriter writer = new StringWriter();
+    detector.run(file, writer);
+    List<String> res = new ArrayList<>();
+    for (String line : writer.toString().split("\n")) {
+      if (!line.isEmpty()) {
+        res.add(line);
+      }
+    }
+    return res;
+  }
+
+  @Test
+  public void testRun() throws IOException {
+    Path file = writeWarc(true);
+    // chunks containing no member, a single member or many members
+    for (long chunkSize : new long[] { 13, 97, 1000, 1 << 20 }) {
+      assertEquals(expected, run(file, 4, chunkSize, false),
+          "chunk size " + chunkSize);
+    }
+    assertEquals(expected, run(file, 1, 1 << 20, false));
+    assertEquals(expected, run(writeWarc(false), 4, 100, false));
+    List<String> json = run(file, 3, 500, true);
+    assertEquals(expected.size(), json.size());
+    assertEquals("{\"id\":\"<urn:uuid:1>\","
+        + "\"uri\":\"http://www.example1.com:8080/page?n=1\",\"reliable\":",
+        json.get(0).substring(0, json.get(0).indexOf(':', 70) + 1));
+  }
+
+  @Test
+  public void testInvalid() throws IOException {
+    Path file = tempDir.resolve("invalid.warc.gz");
+    byte[] gz = gzip(record("conversion", "<urn:uuid:1>", "http://example.com/",
+        bytes("text", StandardCharsets.UTF_8)), Deflater.DEFAULT_COMPRESSION);
+    // truncated
+    Files.write(file, Arrays.copyOf(gz, gz.length - 5));
+    assertThrows(IOException.class, () -> run(file, 2, 10, false));
+    // corrupt
+    gz[gz.length - 5] ^= 1;
+    Files.write(file, gz);
+    assertThrows(IOException.class, () -> run(file, 2, 10, false));
+    // not WARC
+    Files.write(file, gzip(bytes("<html>", StandardCharsets.UTF_8),
+        Deflater.DEFAULT_COMPRESSION));
+    assertThrows(IOException.class, () -> run(file, 2, 10, false));
+  }
+
+  @Test
+  public void testExtractTextLegacyCharset() throws IOException {
+    // HTML page in windows-1252 with entities and non-ASCII characters
+    Charset charset = Charset.forName("windows-1252");
+    String html = "<html><body><p>Caf&eacute; d\u00e9j\u00e0 vu &#8217;"
+        + " \u2019 na&iuml;ve &amp; s&ucirc;r</p></body></html>";
+    String uri = "http://www.example.com/page";
+    Path file = tempDir.resolve("cp1252.warc");
+    Files.write(file, record("response", "<urn:uuid:1>", uri,
+        response("text/html; charset=windows-1252", null,
+            bytes(html, charset))));
+    HtmlTextExtractor extractor = new HtmlTextExtractor();
+    byte[] utf8 = bytes(html, StandardCharsets.UTF_8);
+    int n = extractor.extract(utf8, 0, utf8.length);
+    String text = new String(extractor.getText(), 0, n,
+        StandardCharsets.UTF_8);
+    assertEquals("Caf\u00e9 d\u00e9j\u00e0 vu \u2019 \u2019 na\u00efve"
+        + " & s\u00fbr", text.trim());
+    Result res = Cld2.detect(extractor.getText(), 0, n,
+        StandardCharsets.UTF_8, CLDHints.withEncodingHint(
+            CLDHints.intern(WarcDetector.host(uri), null), charset),
+        0, true);
+    WarcDetector detector = new WarcDetector(1);
+    detector.setExtractText(true);
+    StringWriter writer = new StringWriter();
+    detector.run(file, writer);
+    assertEquals("<urn:uuid:1>\t" + uri + '\t'
+        + String.join(",", res.getLanguageCodes()) + '\t' + res.isReliable()
+        + '\n', writer.toString());
+  }
+
+  @Test
+  public void testHost() {
+    assertEquals("www.example.com",
+        WarcDetector.host("https://user@www.example.com:443/path"));
+    assertEquals("example.fr", WarcDetector.host("http://example.fr?q=1"));
+    assertEquals("[::1]", WarcDetector.host("http://[::1]/"));
+    assertEquals("[::1]", WarcDetector.host("http://[::1]:8080/"));
+    assertEquals("example.com",
+        WarcDetector.host("http://example.com:80/a]"));
+    assertNull(WarcDetector.host("urn:test"));
+    assertNull(WarcDetector.host(null));
+  }
+
+}